@@ -0,0 +1,117 @@
+package com.nidoham.kaveya.adapter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.nidoham.kaveya.firebase.google.database.model.Messages;
+import com.nidoham.kaveya.testing.FrameRecorder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Frame times while a new message list is applied to {@link ChatAdapter}, comparing the old
+ * path (DiffUtil on the main thread) with {@link ChatAdapter#updateMessages(List, Runnable)},
+ * which diffs in the background. Results are logged under the "ChatAdapterDiffBenchmark" tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ChatAdapterDiffBenchmark {
+    private static final String TAG = "ChatAdapterDiffBenchmark";
+    private static final int[] SIZES = {1_000, 5_000, 20_000};
+    private static final int EDITED_ROWS = 10; // An incoming message plus a few edits and reactions
+    private static final long SETTLE_MILLIS = 150;
+
+    private final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+    private final Context context = instrumentation.getTargetContext();
+
+    @Test
+    public void compareFrameTimes() throws Exception {
+        for (int size : SIZES) {
+            List<Messages> current = conversation(size);
+            List<Messages> next = incoming(current);
+
+            FrameRecorder onMainThread = measure(current, adapter -> {
+                long start = SystemClock.elapsedRealtimeNanos();
+                instrumentation.runOnMainSync(() -> DiffUtil
+                        .calculateDiff(new ChatAdapter.MessageDiffCallback(current, next))
+                        .dispatchUpdatesTo(adapter));
+                return SystemClock.elapsedRealtimeNanos() - start;
+            });
+            FrameRecorder inBackground = measure(current, adapter -> {
+                CountDownLatch committed = new CountDownLatch(1);
+                long start = SystemClock.elapsedRealtimeNanos();
+                instrumentation.runOnMainSync(() -> adapter.updateMessages(new ArrayList<>(next), committed::countDown));
+                assertTrue("Diff was never applied", committed.await(30, TimeUnit.SECONDS));
+                long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+                int[] count = new int[1];
+                instrumentation.runOnMainSync(() -> count[0] = adapter.getItemCount());
+                assertEquals(next.size(), count[0]);
+                return elapsed;
+            });
+
+            Log.i(TAG, size + " messages, main-thread diff: " + onMainThread);
+            Log.i(TAG, size + " messages, background diff: " + inBackground);
+        }
+    }
+
+    private interface Update {
+        long apply(ChatAdapter adapter) throws Exception;
+    }
+
+    private FrameRecorder measure(List<Messages> current, Update update) throws Exception {
+        ChatAdapter[] adapter = new ChatAdapter[1];
+        instrumentation.runOnMainSync(() -> adapter[0] = new ChatAdapter(current, "user", context));
+        FrameRecorder frames = new FrameRecorder();
+        instrumentation.runOnMainSync(frames::start);
+        SystemClock.sleep(SETTLE_MILLIS);
+        long elapsedNanos = update.apply(adapter[0]);
+        SystemClock.sleep(SETTLE_MILLIS);
+        instrumentation.runOnMainSync(() -> {
+            frames.stop();
+            adapter[0].cleanup();
+        });
+        Log.d(TAG, "Update took " + elapsedNanos / 1_000_000 + "ms wall clock");
+        return frames;
+    }
+
+    private static List<Messages> conversation(int size) {
+        long start = System.currentTimeMillis() - size * 1_000L;
+        List<Messages> messages = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            messages.add(new Messages.Builder("user", "character", "Message number " + i)
+                    .id("m" + i)
+                    .isAI(i % 2 == 1)
+                    .timestamp(start + i * 1_000L)
+                    .build());
+        }
+        return messages;
+    }
+
+    private static List<Messages> incoming(List<Messages> current) {
+        List<Messages> next = new ArrayList<>(current);
+        for (int i = next.size() - EDITED_ROWS; i < next.size(); i++) {
+            Messages old = next.get(i);
+            next.set(i, new Messages.Builder(old.getUserId(), old.getCharacterId(), old.getText() + " (edited)")
+                    .id(old.getId())
+                    .isAI(old.isAI())
+                    .timestamp(old.getTimestamp())
+                    .isEdited(true)
+                    .build());
+        }
+        next.add(new Messages.Builder("user", "character", "A new message")
+                .id("m" + current.size())
+                .timestamp(System.currentTimeMillis())
+                .build());
+        return next;
+    }
+}
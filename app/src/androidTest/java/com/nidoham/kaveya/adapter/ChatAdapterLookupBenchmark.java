@@ -0,0 +1,130 @@
+package com.nidoham.kaveya.adapter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.nidoham.kaveya.firebase.google.database.model.MessageDelta;
+import com.nidoham.kaveya.firebase.google.database.model.Messages;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Cost of finding a row by message id in a 10,000-row {@link ChatAdapter}, comparing the id
+ * index with the linear scan it replaced. Lookups are interleaved with new messages arriving at
+ * the tail, as they do while a conversation is live, so the incremental re-indexing is part of
+ * the measurement. Results are logged under the "ChatAdapterLookupBenchmark" tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ChatAdapterLookupBenchmark {
+    private static final String TAG = "ChatAdapterLookupBenchmark";
+    private static final int SIZE = 10_000;
+    private static final int ROUNDS = 500;
+    private static final int LOOKUPS_PER_ROUND = 20; // Edits, reactions and translations of older rows
+
+    private final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+    private final Context context = instrumentation.getTargetContext();
+
+    @Test
+    public void indexedLookupBeatsLinearScan() {
+        List<Messages> conversation = conversation(SIZE);
+        String[] targets = targets(SIZE + ROUNDS);
+
+        long[] indexedNanos = new long[1];
+        instrumentation.runOnMainSync(() -> {
+            ChatAdapter adapter = new ChatAdapter(conversation, "user", context);
+            indexedNanos[0] = run(conversation, targets, (rows, id) -> adapter.indexOfMessageId(id),
+                    (previousId, message) -> adapter.applyDelta(
+                            new MessageDelta(MessageDelta.Type.ADDED, message, previousId)));
+            assertEquals(SIZE + ROUNDS, adapter.getItemCount());
+            adapter.cleanup();
+        });
+
+        List<Messages> rows = new ArrayList<>(conversation);
+        long linearNanos = run(rows, targets, ChatAdapterLookupBenchmark::linearIndexOf,
+                (previousId, message) -> rows.add(message));
+
+        int lookups = ROUNDS * LOOKUPS_PER_ROUND;
+        Log.i(TAG, SIZE + " rows, " + lookups + " lookups and " + ROUNDS + " appends: indexed "
+                + indexedNanos[0] / 1_000_000 + "ms (" + indexedNanos[0] / lookups + "ns per lookup), linear scan "
+                + linearNanos / 1_000_000 + "ms (" + linearNanos / lookups + "ns per lookup)");
+        assertTrue("Indexed lookups (" + indexedNanos[0] + "ns) are slower than a linear scan (" + linearNanos + "ns)",
+                indexedNanos[0] < linearNanos);
+    }
+
+    private interface Lookup {
+        int indexOf(List<Messages> rows, String messageId);
+    }
+
+    private interface Append {
+        void append(String previousId, Messages message);
+    }
+
+    /**
+     * Appends one message per round and looks up a batch of existing ids after each; returns the
+     * total time. Every lookup must find its row.
+     */
+    private static long run(List<Messages> rows, String[] targets, Lookup lookup, Append append) {
+        Random random = new Random(42);
+        int size = SIZE;
+        long sink = 0;
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int round = 0; round < ROUNDS; round++) {
+            append.append("m" + (size - 1), message(size, System.currentTimeMillis()));
+            size++;
+            for (int i = 0; i < LOOKUPS_PER_ROUND; i++) {
+                int expected = random.nextInt(size);
+                int found = lookup.indexOf(rows, targets[expected]);
+                if (found != expected) {
+                    throw new AssertionError("Looked up " + targets[expected] + " at " + found);
+                }
+                sink += found;
+            }
+        }
+        long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+        Log.d(TAG, "Checksum " + sink);
+        return elapsed;
+    }
+
+    private static int linearIndexOf(List<Messages> rows, String messageId) {
+        for (int i = 0; i < rows.size(); i++) {
+            if (messageId.equals(rows.get(i).getId())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String[] targets(int count) {
+        String[] ids = new String[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = "m" + i;
+        }
+        return ids;
+    }
+
+    private static List<Messages> conversation(int size) {
+        long start = System.currentTimeMillis() - size * 1_000L;
+        List<Messages> messages = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            messages.add(message(i, start + i * 1_000L));
+        }
+        return messages;
+    }
+
+    private static Messages message(int i, long timestamp) {
+        return new Messages.Builder("user", "character", "Message number " + i)
+                .id("m" + i)
+                .isAI(i % 2 == 1)
+                .timestamp(timestamp)
+                .build();
+    }
+}
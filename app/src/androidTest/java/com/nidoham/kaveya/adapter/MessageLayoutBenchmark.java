@@ -0,0 +1,217 @@
+package com.nidoham.kaveya.adapter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.View;
+import android.widget.TextView;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.nidoham.kaveya.DebugActivity;
+import com.nidoham.kaveya.firebase.google.database.model.Messages;
+import com.nidoham.kaveya.testing.FrameRecorder;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Main-thread cost of showing message rows with {@link MessageLayoutCache}: binding pre-measured
+ * text against measuring it on bind, cached bubble timestamps against formatting them every
+ * time, and frame times while scrolling a long conversation. Results are logged under the
+ * "MessageLayoutBenchmark" tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MessageLayoutBenchmark {
+    private static final String TAG = "MessageLayoutBenchmark";
+    private static final int TEXTS = 300;
+    private static final int WIDTH_PX = 800;
+    private static final int TIMESTAMPS = 20_000;
+    private static final int CONVERSATION_SIZE = 2_000;
+    private static final int SCROLL_FRAMES = 600;
+    private static final int SCROLL_PX_PER_FRAME = 60;
+
+    private static final String[] LATIN = {"ka", "ve", "ya", "lo", "mi", "ra", "so", "tu", "ne", "di"};
+    private static final String[] BENGALI = {"আমি", "তুমি", "ভালো", "কথা", "সকাল", "রাত", "মন", "গান", "পথ", "আলো"};
+
+    private final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+    private final Context context = instrumentation.getTargetContext();
+
+    @Test
+    public void precomputedTextBindsFasterThanPlainText() {
+        long[] nanos = new long[2];
+        instrumentation.runOnMainSync(() -> {
+            TextView view = new TextView(context);
+            PrecomputedTextCompat.Params params = TextViewCompat.getTextMetricsParams(view);
+
+            List<String> plain = texts(new Random(1));
+            long start = SystemClock.elapsedRealtimeNanos();
+            for (String text : plain) {
+                view.setText(text);
+                measure(view);
+            }
+            nanos[0] = SystemClock.elapsedRealtimeNanos() - start;
+
+            // Measured ahead of time, as the adapter does on its background executor
+            List<PrecomputedTextCompat> precomputed = new ArrayList<>(TEXTS);
+            for (String text : texts(new Random(2))) {
+                precomputed.add(PrecomputedTextCompat.create(text, params));
+            }
+            start = SystemClock.elapsedRealtimeNanos();
+            for (PrecomputedTextCompat text : precomputed) {
+                TextViewCompat.setPrecomputedText(view, text);
+                measure(view);
+            }
+            nanos[1] = SystemClock.elapsedRealtimeNanos() - start;
+        });
+
+        Log.i(TAG, TEXTS + " binds: plain text " + nanos[0] / TEXTS / 1_000 + "us, precomputed "
+                + nanos[1] / TEXTS / 1_000 + "us per row");
+        assertTrue("Precomputed binds (" + nanos[1] + "ns) are slower than plain ones (" + nanos[0] + "ns)",
+                nanos[1] < nanos[0]);
+    }
+
+    @Test
+    public void cachedTimestampsMatchAndAreFaster() {
+        long[] timestamps = new long[TIMESTAMPS];
+        long start = System.currentTimeMillis() - TIMESTAMPS * 20_000L;
+        for (int i = 0; i < TIMESTAMPS; i++) {
+            timestamps[i] = start + i * 20_000L; // A busy conversation: a few messages a minute
+        }
+
+        long[] nanos = new long[2];
+        String[] expected = new String[TIMESTAMPS];
+        String[] cached = new String[TIMESTAMPS];
+        instrumentation.runOnMainSync(() -> {
+            SimpleDateFormat format = new SimpleDateFormat("HH:mm", Locale.getDefault());
+            MessageLayoutCache cache = new MessageLayoutCache();
+            for (int i = 0; i < TIMESTAMPS; i++) {
+                expected[i] = format.format(timestamps[i]);
+                cached[i] = cache.formatTime(timestamps[i]);
+            }
+            cache.clear();
+
+            long begin = SystemClock.elapsedRealtimeNanos();
+            for (long timestamp : timestamps) format.format(timestamp);
+            nanos[0] = SystemClock.elapsedRealtimeNanos() - begin;
+
+            begin = SystemClock.elapsedRealtimeNanos();
+            for (long timestamp : timestamps) cache.formatTime(timestamp);
+            nanos[1] = SystemClock.elapsedRealtimeNanos() - begin;
+        });
+
+        for (int i = 0; i < TIMESTAMPS; i++) {
+            assertEquals(expected[i], cached[i]);
+        }
+        Log.i(TAG, TIMESTAMPS + " timestamps: SimpleDateFormat " + nanos[0] / TIMESTAMPS + "ns, cached "
+                + nanos[1] / TIMESTAMPS + "ns per bind");
+        assertTrue("Cached timestamps (" + nanos[1] + "ns) are slower than formatting (" + nanos[0] + "ns)",
+                nanos[1] < nanos[0]);
+    }
+
+    @Test
+    public void scrollFrameTimes() throws Exception {
+        try (ActivityScenario<DebugActivity> scenario = ActivityScenario.launch(DebugActivity.class)) {
+            RecyclerView[] recycler = new RecyclerView[1];
+            ChatAdapter[] adapter = new ChatAdapter[1];
+            scenario.onActivity(activity -> {
+                adapter[0] = new ChatAdapter(conversation(), "user", activity);
+                recycler[0] = new RecyclerView(activity);
+                recycler[0].setLayoutManager(new LinearLayoutManager(activity));
+                recycler[0].setAdapter(adapter[0]);
+                activity.setContentView(recycler[0]);
+            });
+            instrumentation.waitForIdleSync();
+
+            FrameRecorder frames = new FrameRecorder();
+            CountDownLatch scrolled = new CountDownLatch(1);
+            instrumentation.runOnMainSync(() -> {
+                frames.start();
+                // A steady drag: the same distance every vsync, like a finger moving at constant speed
+                Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+                    private int remaining = SCROLL_FRAMES;
+
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        recycler[0].scrollBy(0, SCROLL_PX_PER_FRAME);
+                        if (--remaining > 0) {
+                            Choreographer.getInstance().postFrameCallback(this);
+                        } else {
+                            scrolled.countDown();
+                        }
+                    }
+                });
+            });
+            assertTrue("Scroll never finished", scrolled.await(60, TimeUnit.SECONDS));
+
+            int[] lastVisible = new int[1];
+            instrumentation.runOnMainSync(() -> {
+                frames.stop();
+                lastVisible[0] = ((LinearLayoutManager) recycler[0].getLayoutManager()).findLastVisibleItemPosition();
+                adapter[0].cleanup();
+            });
+
+            Log.i(TAG, "Scrolled " + SCROLL_FRAMES + " frames through " + (lastVisible[0] + 1) + " rows: " + frames);
+            assertTrue("Nothing was scrolled into view", lastVisible[0] > 0);
+            assertTrue("No frames were recorded", frames.frameCount() > 0);
+        }
+    }
+
+    private static void measure(TextView view) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH_PX, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+    }
+
+    /**
+     * Chat-length messages in English-like and Bengali words; random so the platform's own word
+     * cache does not make every text after the first one free.
+     */
+    private static List<String> texts(Random random) {
+        List<String> texts = new ArrayList<>(TEXTS);
+        for (int i = 0; i < TEXTS; i++) {
+            String[] syllables = i % 2 == 0 ? LATIN : BENGALI;
+            StringBuilder text = new StringBuilder();
+            int words = 10 + random.nextInt(60);
+            for (int w = 0; w < words; w++) {
+                int length = 1 + random.nextInt(3);
+                for (int s = 0; s < length; s++) {
+                    text.append(syllables[random.nextInt(syllables.length)]);
+                }
+                text.append(w % 12 == 11 ? ". " : " ");
+            }
+            texts.add(text.toString().trim());
+        }
+        return texts;
+    }
+
+    private static List<Messages> conversation() {
+        Random random = new Random(3);
+        List<String> texts = texts(random);
+        long start = System.currentTimeMillis() - CONVERSATION_SIZE * 30_000L;
+        List<Messages> messages = new ArrayList<>(CONVERSATION_SIZE);
+        for (int i = 0; i < CONVERSATION_SIZE; i++) {
+            boolean fromAi = i % 2 == 1;
+            messages.add(new Messages.Builder(fromAi ? "character" : "user", "character", texts.get(i % TEXTS))
+                    .id("m" + i)
+                    .isAI(fromAi)
+                    .timestamp(start + i * 30_000L)
+                    .build());
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,85 @@
+package com.nidoham.kaveya.console.google.gemini.template;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.os.SystemClock;
+import android.util.Log;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Render time of the compiled prompt templates against the {@code String.format} path they
+ * replaced, on the device. Both paths must produce identical text. Results are logged under the
+ * "PromptRenderBenchmark" tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PromptRenderBenchmark {
+    private static final String TAG = "PromptRenderBenchmark";
+    private static final int WARMUP_RUNS = 200;
+    private static final int BATCHES = 15;
+    private static final int RUNS_PER_BATCH = 200;
+
+    private static final String[][] INPUTS = {
+        {null, null},
+        {"", "   "},
+        {"How was your day?", "User: hi\nAI: hello!"},
+        {"100% sure? %s %d %n", "User: 50% off\nAI: {braces} $1 \\n"},
+        {"আজ কেমন আছো?", "User: শুভ সকাল\nAI: সুপ্রভাত!"},
+    };
+
+    private final AIGirlfriendPromptTemplate template = new AIGirlfriendPromptTemplate();
+    private final AICompanionTemplate companion = new AICompanionTemplate();
+    private final AIMemoriesTemplate memories = new AIMemoriesTemplate();
+
+    @Test
+    public void compiledOutputMatchesFormat() {
+        for (String[] in : INPUTS) {
+            assertEquals(AIGirlfriendPromptTemplate.formatPrompt(in[0], in[1]), template.generatePrompt(in[0], in[1]));
+            assertEquals(AIMemoriesTemplate.formatPrompt(in[0], in[1]), memories.generatePrompt(in[0], in[1]));
+            assertEquals(AICompanionTemplate.formatPrompt(in[0], in[1], in[1]), companion.generatePrompt(in[0], in[1], in[1]));
+        }
+    }
+
+    @Test
+    public void compiledRenderIsFasterThanFormat() {
+        String input = INPUTS[2][0];
+        String context = conversation(20);
+
+        long formatNanos = medianNanos(() -> AIGirlfriendPromptTemplate.formatPrompt(input, context));
+        long compiledNanos = medianNanos(() -> template.generatePrompt(input, context));
+        long turnNanos = medianNanos(() -> template.generateTurnPrompt(input, context));
+
+        Log.i(TAG, "Full prompt (" + template.generatePrompt(input, context).length() + " chars): format "
+                + formatNanos / 1_000 + "us, compiled " + compiledNanos / 1_000 + "us per render");
+        Log.i(TAG, "Turn prompt: compiled " + turnNanos / 1_000 + "us per render");
+        assertTrue("Compiled render (" + compiledNanos + "ns) is slower than String.format (" + formatNanos + "ns)",
+                compiledNanos < formatNanos);
+    }
+
+    /**
+     * Median time of one render over several batches, after a warmup so both paths are JIT-compiled.
+     */
+    private static long medianNanos(Runnable render) {
+        for (int i = 0; i < WARMUP_RUNS; i++) render.run();
+        long[] perRender = new long[BATCHES];
+        for (int b = 0; b < BATCHES; b++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            for (int i = 0; i < RUNS_PER_BATCH; i++) render.run();
+            perRender[b] = (SystemClock.elapsedRealtimeNanos() - start) / RUNS_PER_BATCH;
+        }
+        Arrays.sort(perRender);
+        return perRender[BATCHES / 2];
+    }
+
+    private static String conversation(int turns) {
+        StringBuilder context = new StringBuilder();
+        for (int i = 0; i < turns; i++) {
+            context.append("User: message ").append(i).append('\n')
+                    .append("AI: reply ").append(i).append('\n');
+        }
+        return context.toString();
+    }
+}
@@ -0,0 +1,70 @@
+package com.nidoham.kaveya.testing;
+
+import android.view.Choreographer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Records the interval between consecutive vsync frames on the main thread. Work that blocks the
+ * main thread shows up as one long interval, so the longest interval is the worst stall a user
+ * would have seen. {@link #start()} and {@link #stop()} must be called on the main thread.
+ */
+public final class FrameRecorder implements Choreographer.FrameCallback {
+    public static final long FRAME_BUDGET_NANOS = 16_666_667L;
+
+    private final List<Long> intervals = new ArrayList<>();
+    private long lastFrameNanos;
+    private boolean running;
+
+    public void start() {
+        intervals.clear();
+        lastFrameNanos = 0;
+        running = true;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    public void stop() {
+        running = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!running) return;
+        if (lastFrameNanos != 0) {
+            intervals.add(frameTimeNanos - lastFrameNanos);
+        }
+        lastFrameNanos = frameTimeNanos;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    public int frameCount() {
+        return intervals.size();
+    }
+
+    public double worstFrameMs() {
+        long worst = 0;
+        for (long interval : intervals) {
+            worst = Math.max(worst, interval);
+        }
+        return worst / 1_000_000.0;
+    }
+
+    /**
+     * Intervals that spanned at least one missed 60 Hz vsync.
+     */
+    public int jankyFrames() {
+        int janky = 0;
+        for (long interval : intervals) {
+            if (interval > FRAME_BUDGET_NANOS * 3 / 2) janky++;
+        }
+        return janky;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "frames=%d janky=%d worst=%.1fms",
+                frameCount(), jankyFrames(), worstFrameMs());
+    }
+}
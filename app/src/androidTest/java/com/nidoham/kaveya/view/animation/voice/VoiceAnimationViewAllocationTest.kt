@@ -0,0 +1,68 @@
+package com.nidoham.kaveya.view.animation.voice
+
+import android.graphics.Bitmap
+import android.graphics.Canvas
+import android.os.Debug
+import android.view.View
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Checks that animation frames of [VoiceAnimationView] allocate nothing once running: feeding
+ * microphone levels, advancing the ripples and drawing.
+ */
+@RunWith(AndroidJUnit4::class)
+class VoiceAnimationViewAllocationTest {
+
+    @Suppress("DEPRECATION") // Per-thread allocation counting is still supported on ART
+    @Test
+    fun framesDoNotAllocate() {
+        val instrumentation = InstrumentationRegistry.getInstrumentation()
+        var allocations = -1
+        var allocatedBytes = -1
+
+        instrumentation.runOnMainSync {
+            val view = VoiceAnimationView(instrumentation.targetContext)
+            val spec = View.MeasureSpec.makeMeasureSpec(SIZE_PX, View.MeasureSpec.EXACTLY)
+            view.measure(spec, spec)
+            view.layout(0, 0, SIZE_PX, SIZE_PX)
+            val canvas = Canvas(Bitmap.createBitmap(SIZE_PX, SIZE_PX, Bitmap.Config.ARGB_8888))
+            view.startUserSpeakingAnimation()
+
+            var playTime = 0L
+            fun frame() {
+                view.offerRmsDb((playTime % 12).toFloat() - 2f)
+                view.onRippleFrame(playTime)
+                val saveCount = canvas.save()
+                view.draw(canvas)
+                canvas.restoreToCount(saveCount)
+                playTime += FRAME_MS
+            }
+
+            // Fill the ripple pool and let one-time setup happen before counting
+            repeat(WARM_UP_FRAMES) { frame() }
+
+            Debug.resetThreadAllocCount()
+            Debug.resetThreadAllocSize()
+            Debug.startAllocCounting()
+            repeat(MEASURED_FRAMES) { frame() }
+            Debug.stopAllocCounting()
+            allocations = Debug.getThreadAllocCount()
+            allocatedBytes = Debug.getThreadAllocSize()
+
+            view.stopAnimation()
+        }
+
+        assertEquals("$MEASURED_FRAMES frames allocated $allocatedBytes bytes", 0, allocations)
+    }
+
+    private companion object {
+        const val SIZE_PX = 400
+        const val FRAME_MS = 16L
+        const val WARM_UP_FRAMES = 120
+        const val MEASURED_FRAMES = 600
+    }
+}
@@ -15,6 +15,7 @@ import com.google.gson.Gson;
 import com.google.common.util.concurrent.RateLimiter;
 import com.nidoham.kaveya.firebase.google.analysis.CrashReport;
 import com.nidoham.kaveya.BuildConfig;
+import com.nidoham.kaveya.platform.voice.SpeechService;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.text.SimpleDateFormat;
@@ -60,6 +61,8 @@ public class AdministrationLogger extends Application {
         initializeComponents();
         setupCrashHandler();
         sendPendingReports();
+        // Bind the shared TTS engine now so the first spoken reply does not wait for it
+        SpeechService.warmUp(this);
 
         if (BuildConfig.DEBUG) {
             Log.i(TAG, "CrashLogger initialized");
@@ -1,6 +1,9 @@
 package com.nidoham.kaveya;
 
 import android.content.Context;
+import android.media.AudioDeviceInfo;
+import android.media.AudioManager;
+import android.media.audiofx.AcousticEchoCanceler;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
@@ -14,9 +17,12 @@ import android.Manifest;
 import com.nidoham.kaveya.databinding.ActivityAssistantBinding;
 import com.nidoham.kaveya.liberies.SketchwareUtil;
 import com.nidoham.kaveya.console.google.gemini.control.GeminiController;
+import com.nidoham.kaveya.platform.voice.RecognitionPolicy;
+import com.nidoham.kaveya.platform.voice.VoiceSession;
 import com.nidoham.kaveya.platform.voice.main.VoiceRecognition;
 import com.nidoham.kaveya.view.animation.control.VoiceAnimationController;
 
+import java.util.Locale;
 import javax.annotation.Nonnull;
 
 /**
@@ -26,15 +32,31 @@ import javax.annotation.Nonnull;
  */
 public class AssistantActivity extends AppCompatActivity {
     private static final String TAG = "AssistantActivity";
-    private static final long FEEDBACK_DELAY = 100; // 100ms delay for smooth transitions
-    private static final long SPEECH_DURATION_PER_WORD = 500; // 500ms per word for AI speech
-    private static final long RESET_DELAY = 200; // 200ms delay to ensure UI reset
     private static final int PERMISSION_REQUEST_CODE = 100;
+    // Keep the recognizer armed while a reply plays so the user can talk over it. Off by default:
+    // on the loudspeaker the reply can leak back into the microphone and interrupt itself. Even
+    // when on, it is only armed with a headset or a platform echo canceller.
+    private static final boolean VOICE_BARGE_IN = false;
+    // Without a headset, speech over a reply only counts once the input is this loud; echo the
+    // canceller let through is much quieter than someone talking into the phone
+    private static final float BARGE_IN_MIN_RMS_DB = 8f;
+    // A partial transcript unchanged for this long is sent to Gemini before the final result
+    private static final long STABLE_PARTIAL_MS = 400;
+    private static final int MAX_SPECULATIONS_PER_TURN = 2;
 
     private VoiceAnimationController animationController;
     private GeminiController geminiController;
     private VoiceRecognition voiceRecognition;
-    private boolean isProcessing = false;
+    private VoiceSession voiceSession;
+    private int turn = 0; // Bumped per turn so callbacks from an abandoned turn are dropped
+    private ReplyRequest reply;
+    private String lastPartial;
+    private int speculationsThisTurn = 0;
+    private boolean speculationHit = false;
+    private final Runnable speculateOnStablePartial = this::speculate;
+    private boolean recognizerArmed = false; // Recognizer is listening for barge-in during a reply
+    private boolean bargeInNeedsLevel = false; // Armed on the loudspeaker, so speech must pass BARGE_IN_MIN_RMS_DB
+    private boolean bargeInSpeechHeard = false; // Speech began over the reply; waiting for the level to confirm it
     private final Handler mainHandler = new Handler(Looper.getMainLooper());
     private ActivityAssistantBinding binding;
     private PermissionHandler permissionHandler;
@@ -77,113 +99,274 @@ public class AssistantActivity extends AppCompatActivity {
 
     private void setupControllers() {
         geminiController = new GeminiController("You are a helpful AI assistant.");
+        voiceSession = new VoiceSession(new VoiceSession.Listener() {
+            @Override
+            public void onStateChanged(@Nonnull VoiceSession.State from, @Nonnull VoiceSession.State to) {
+                onVoiceStateChanged(from, to);
+            }
+
+            @Override
+            public void onTurnFinished(@Nonnull VoiceSession.TurnMetrics metrics) {
+                Log.i(TAG, "Voice turn latency: " + metrics + " speculative=" + speculationHit
+                        + " recognition " + RecognitionPolicy.getInstance().getStats());
+            }
+        });
         voiceRecognition = new VoiceRecognition(this, new VoiceRecognition.VoiceCallback() {
             @Override
             public void onSpeechResult(String text, String language) {
                 runOnMainThread(() -> {
                     Log.d(TAG, "Speech result: " + text);
-                    isProcessing = false;
-                    binding.voiceAnimationView.setEnabled(true);
-                    animationController.stopAnimation();
-                    generateGeminiResponse(text);
+                    // Results from the recognizer armed for barge-in are not a new turn
+                    if (voiceSession.onTranscript()) {
+                        onFinalTranscript(text);
+                    } else {
+                        recognizerArmed = false;
+                    }
                 });
             }
 
             @Override
             public void onSpeechError(String error) {
                 runOnMainThread(() -> {
+                    if (voiceSession.getState() != VoiceSession.State.LISTENING) {
+                        // The barge-in recognizer timing out while a reply plays is expected
+                        Log.d(TAG, "Ignoring speech error outside listening: " + error);
+                        recognizerArmed = false;
+                        return;
+                    }
                     Log.e(TAG, "Speech error: " + error);
                     resetState();
                     SketchwareUtil.showMessage(getApplicationContext(), "Speech recognition failed: " + error);
                 });
             }
 
+            @Override
+            public void onUserSpeechStarted() {
+                runOnMainThread(() -> {
+                    if (!recognizerArmed || voiceSession.getState() != VoiceSession.State.SPEAKING) return;
+                    if (bargeInNeedsLevel) {
+                        // onRmsChanged interrupts once the input is loud enough to be the user
+                        bargeInSpeechHeard = true;
+                        return;
+                    }
+                    Log.d(TAG, "User spoke over the reply");
+                    interruptReply();
+                });
+            }
+
+            @Override
+            public void onUserSpeechEnded() {
+                runOnMainThread(() -> {
+                    voiceSession.onUserSpeechEnded();
+                    // Nothing more is coming, so the last partial is as stable as it gets
+                    speculate();
+                });
+            }
+
+            @Override
+            public void onRmsChanged(float rmsdB) {
+                // Goes straight into the view's ring buffer; posting a Runnable per sample would allocate
+                if (animationController != null) {
+                    animationController.offerRmsDb(rmsdB);
+                }
+                // Recognizer callbacks run on the main thread, so this needs no posting either
+                if (bargeInSpeechHeard && rmsdB >= BARGE_IN_MIN_RMS_DB
+                        && voiceSession.getState() == VoiceSession.State.SPEAKING) {
+                    Log.d(TAG, "User spoke over the reply at " + rmsdB + "dB");
+                    interruptReply();
+                }
+            }
+
+            @Override
+            public void onPartialResult(String text) {
+                runOnMainThread(() -> {
+                    if (voiceSession.getState() != VoiceSession.State.LISTENING) return;
+                    if (text.equals(lastPartial)) return;
+                    lastPartial = text;
+                    mainHandler.removeCallbacks(speculateOnStablePartial);
+                    mainHandler.postDelayed(speculateOnStablePartial, STABLE_PARTIAL_MS);
+                });
+            }
+
+            @Override
+            public void onSpeechStarted() {
+                runOnMainThread(() -> voiceSession.onReplyAudioStarted());
+            }
+
             @Override
             public void onSpeechCompleted(boolean success) {
                 runOnMainThread(() -> {
-                    Log.d(TAG, "Speech completed, success: " + success);
-                    resetState();
-                    SketchwareUtil.showMessage(getApplicationContext(), "Speech recognition " + (success ? "completed" : "failed"));
+                    Log.d(TAG, "Reply spoken, success: " + success);
+                    if (voiceSession.onReplyFinished() && !success) {
+                        SketchwareUtil.showMessage(getApplicationContext(), "Could not speak the response");
+                    }
                 });
             }
         });
+        voiceRecognition.setStreamingEnabled(true);
         animationController.stopAnimation(); // Ensure initial state is off
     }
 
     private void setupClickListener() {
         binding.voiceAnimationView.setOnClickListener(v -> {
-            if (!isProcessing) {
-                if (permissionHandler.checkMicrophonePermission()) {
-                    startSpeechRecognition();
-                } else {
-                    permissionHandler.requestMicrophonePermission();
+            switch (voiceSession.getState()) {
+                case IDLE:
+                    if (permissionHandler.checkMicrophonePermission()) {
+                        startSpeechRecognition();
+                    } else {
+                        permissionHandler.requestMicrophonePermission();
+                    }
+                    break;
+                case SPEAKING:
+                    // Tapping during the reply is a barge-in too
+                    interruptReply();
+                    break;
+                default:
+                    Log.d(TAG, "Stopping ongoing turn");
+                    resetState();
+                    SketchwareUtil.showMessage(getApplicationContext(), "Recognition stopped");
+                    break;
+            }
+        });
+    }
+
+    private void onVoiceStateChanged(VoiceSession.State from, VoiceSession.State to) {
+        if (binding == null) return;
+        if (from == VoiceSession.State.LISTENING) {
+            mainHandler.removeCallbacks(speculateOnStablePartial);
+        }
+        switch (to) {
+            case LISTENING:
+                lastPartial = null;
+                speculationsThisTurn = 0;
+                speculationHit = false;
+                animationController.startUserSpeakingAnimation();
+                break;
+            case THINKING:
+                animationController.stopAnimation();
+                break;
+            case SPEAKING:
+                animationController.startAISpeakingAnimation();
+                if (VOICE_BARGE_IN) {
+                    boolean headset = isHeadsetConnected();
+                    if (headset || AcousticEchoCanceler.isAvailable()) {
+                        bargeInNeedsLevel = !headset;
+                        bargeInSpeechHeard = false;
+                        recognizerArmed = true;
+                        voiceRecognition.startListening();
+                    }
                 }
-            } else {
-                // Stop ongoing processing
-                Log.d(TAG, "Stopping ongoing recognition");
-                isProcessing = false;
-                voiceRecognition.stop();
+                break;
+            case IDLE:
                 animationController.stopAnimation();
-                resetState();
-                SketchwareUtil.showMessage(getApplicationContext(), "Recognition stopped");
+                bargeInSpeechHeard = false;
+                if (recognizerArmed) {
+                    recognizerArmed = false;
+                    voiceRecognition.stopListening();
+                }
+                break;
+        }
+    }
+
+    /**
+     * Whether the reply plays through a headset, where it cannot reach the microphone.
+     */
+    private boolean isHeadsetConnected() {
+        AudioManager audioManager = (AudioManager) getSystemService(Context.AUDIO_SERVICE);
+        if (audioManager == null) return false;
+        for (AudioDeviceInfo device : audioManager.getDevices(AudioManager.GET_DEVICES_OUTPUTS)) {
+            switch (device.getType()) {
+                case AudioDeviceInfo.TYPE_WIRED_HEADSET:
+                case AudioDeviceInfo.TYPE_WIRED_HEADPHONES:
+                case AudioDeviceInfo.TYPE_BLUETOOTH_A2DP:
+                case AudioDeviceInfo.TYPE_BLUETOOTH_SCO:
+                case AudioDeviceInfo.TYPE_USB_HEADSET:
+                    return true;
             }
-        });
+        }
+        return false;
     }
 
     private void startSpeechRecognition() {
         Log.d(TAG, "Starting speech recognition");
-        isProcessing = true;
-        binding.voiceAnimationView.setEnabled(false);
+        if (!voiceSession.startListening()) return;
+        turn++;
         SketchwareUtil.showMessage(getApplicationContext(), "Listening...");
-        animationController.startUserSpeakingAnimation();
         voiceRecognition.startListening();
     }
 
+    /**
+     * Stops the reply that is playing and listens for the user's next request.
+     */
+    private void interruptReply() {
+        turn++;
+        cancelReply();
+        voiceRecognition.stopSpeaking();
+        boolean alreadyListening = recognizerArmed;
+        recognizerArmed = false;
+        bargeInSpeechHeard = false;
+        if (voiceSession.bargeIn() && !alreadyListening) {
+            // No armed recognizer (tap, or it timed out), so start listening here
+            voiceRecognition.startListening();
+        }
+    }
+
+    /**
+     * Starts a Gemini request for the current partial transcript while the user may still be
+     * talking. Its reply is buffered, not spoken, until the final transcript confirms it.
+     */
+    private void speculate() {
+        if (voiceSession.getState() != VoiceSession.State.LISTENING || lastPartial == null) return;
+        if (reply != null && reply.matches(lastPartial)) return;
+        if (speculationsThisTurn >= MAX_SPECULATIONS_PER_TURN) return;
+
+        cancelReply();
+        speculationsThisTurn++;
+        Log.d(TAG, "Speculating on partial transcript: " + lastPartial);
+        reply = new ReplyRequest(lastPartial, false);
+        reply.start();
+    }
+
+    private void onFinalTranscript(String text) {
+        if (reply != null && !reply.failed && reply.matches(text)) {
+            Log.d(TAG, "Final transcript matches the speculative request");
+            speculationHit = true;
+            reply.commit();
+            return;
+        }
+        if (reply != null) {
+            Log.d(TAG, "Final transcript diverged from \"" + reply.prompt + "\", restarting");
+        }
+        cancelReply();
+        generateGeminiResponse(text);
+    }
+
     private void generateGeminiResponse(String prompt) {
         Log.d(TAG, "Generating Gemini response for prompt: " + prompt);
-        geminiController.generateResponse(prompt, new GeminiController.GeminiCallback() {
-            @Override
-            public void onSuccess(@Nonnull String result) {
-                runOnMainThread(() -> {
-                    mainHandler.postDelayed(() -> {
-                        if (!isFinishing()) {
-                            Log.d(TAG, "AI response: " + result);
-                            animationController.startAISpeakingAnimation();
-                            voiceRecognition.speak(result);
-                            long estimatedDuration = result.split(" ").length * SPEECH_DURATION_PER_WORD;
-                            mainHandler.postDelayed(() -> {
-                                runOnMainThread(() -> {
-                                    resetState();
-                                    SketchwareUtil.showMessage(getApplicationContext(), "AI response completed");
-                                });
-                            }, estimatedDuration + RESET_DELAY);
-                            SketchwareUtil.showMessage(getApplicationContext(), result);
-                        } else {
-                            resetState();
-                        }
-                    }, FEEDBACK_DELAY);
-                });
-            }
+        reply = new ReplyRequest(prompt, true);
+        reply.start();
+    }
 
-            @Override
-            public void onError(@Nonnull Throwable error) {
-                runOnMainThread(() -> {
-                    Log.e(TAG, "Gemini error: " + error.getMessage());
-                    resetState();
-                    SketchwareUtil.showMessage(getApplicationContext(), "AI response failed: " + error.getMessage());
-                });
-            }
-        });
+    private void cancelReply() {
+        if (reply != null) {
+            reply.cancel();
+            reply = null;
+        }
     }
 
     private void resetState() {
         Log.d(TAG, "Resetting state");
-        isProcessing = false;
-        binding.voiceAnimationView.setEnabled(true);
-        animationController.stopAnimation();
+        turn++;
+        cancelReply();
         if (voiceRecognition != null) {
             voiceRecognition.stop();
         }
+        if (voiceSession != null) {
+            voiceSession.cancel();
+        }
+        if (animationController != null) {
+            animationController.stopAnimation();
+        }
     }
 
     /**
@@ -222,6 +405,135 @@ public class AssistantActivity extends AppCompatActivity {
         binding = null;
     }
 
+    /**
+     * One streamed Gemini request. A speculative request buffers its reply until {@link #commit()}
+     * (the final transcript matched); a committed one speaks each delta as it arrives.
+     * Callbacks are dropped once the request is no longer the current reply.
+     */
+    private final class ReplyRequest implements GeminiController.GeminiCallback {
+        final String prompt;
+        private final boolean speculative;
+        private final int replyTurn = turn;
+        private long requestId = GeminiController.NO_REQUEST;
+        // Main thread only
+        private boolean committed;
+        private final StringBuilder bufferedText = new StringBuilder();
+        private String result;
+        boolean failed;
+
+        ReplyRequest(String prompt, boolean committed) {
+            this.prompt = prompt;
+            this.committed = committed;
+            this.speculative = !committed;
+        }
+
+        void start() {
+            if (committed) {
+                // Sentences are spoken as soon as they arrive instead of after the whole reply
+                voiceRecognition.beginReply();
+            }
+            // A speculative reply joins the conversation history only once it is committed
+            requestId = speculative
+                    ? geminiController.generateSpeculativeResponseStream(prompt, this)
+                    : geminiController.generateResponseStream(prompt, this);
+        }
+
+        boolean matches(String transcript) {
+            return normalize(prompt).equals(normalize(transcript));
+        }
+
+        void commit() {
+            committed = true;
+            voiceRecognition.beginReply();
+            if (bufferedText.length() > 0) {
+                voiceRecognition.appendReply(bufferedText.toString());
+                bufferedText.setLength(0);
+            }
+            if (result != null) {
+                deliver(result);
+            }
+        }
+
+        void cancel() {
+            if (requestId != GeminiController.NO_REQUEST && geminiController != null) {
+                geminiController.cancelRequest(requestId);
+            }
+            requestId = GeminiController.NO_REQUEST;
+        }
+
+        private boolean isCurrent() {
+            return reply == this && replyTurn == turn && voiceRecognition != null;
+        }
+
+        private void deliver(String text) {
+            Log.d(TAG, "AI response: " + text);
+            if (speculative) {
+                geminiController.recordExchange(prompt, text);
+            }
+            // The session leaves SPEAKING when the last sentence has actually been spoken
+            voiceRecognition.finishReply();
+            SketchwareUtil.showMessage(getApplicationContext(), text);
+        }
+
+        @Override
+        public void onPartial(@Nonnull String delta) {
+            runOnMainThread(() -> {
+                if (!isCurrent()) return;
+                if (committed) {
+                    voiceRecognition.appendReply(delta);
+                } else {
+                    bufferedText.append(delta);
+                }
+            });
+        }
+
+        @Override
+        public void onLatency(long timeToFirstTokenMs, long totalMs) {
+            Log.d(TAG, "Reply streamed: first token " + timeToFirstTokenMs + "ms, total " + totalMs + "ms");
+        }
+
+        @Override
+        public void onSuccess(@Nonnull String text) {
+            runOnMainThread(() -> {
+                if (!isCurrent()) return;
+                requestId = GeminiController.NO_REQUEST;
+                if (committed) {
+                    deliver(text);
+                } else {
+                    result = text;
+                }
+            });
+        }
+
+        @Override
+        public void onError(@Nonnull Throwable error) {
+            runOnMainThread(() -> {
+                if (!isCurrent()) return;
+                requestId = GeminiController.NO_REQUEST;
+                if (!committed) {
+                    // The final transcript will send a fresh request
+                    Log.w(TAG, "Speculative request failed: " + error.getMessage());
+                    failed = true;
+                    return;
+                }
+                Log.e(TAG, "Gemini error: " + error.getMessage());
+                resetState();
+                SketchwareUtil.showMessage(getApplicationContext(), "AI response failed: " + error.getMessage());
+            });
+        }
+    }
+
+    /**
+     * Compares transcripts the way recognizers differ between partial and final results:
+     * case, punctuation and spacing.
+     */
+    private static String normalize(String transcript) {
+        return transcript.toLowerCase(Locale.ROOT)
+                .replaceAll("\\p{P}+", "")
+                .replaceAll("\\s+", " ")
+                .trim();
+    }
+
     public static class PermissionHandler {
         private final Context context;
         private final AppCompatActivity activity;
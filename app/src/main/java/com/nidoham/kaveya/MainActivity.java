@@ -2,8 +2,11 @@ package com.nidoham.kaveya;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.MenuItem;
+import android.view.ViewTreeObserver;
 import android.widget.PopupMenu;
 import android.widget.Toast;
 import androidx.annotation.NonNull;
@@ -13,16 +16,24 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import com.bumptech.glide.Glide;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+import com.google.gson.Gson;
 import com.nidoham.kaveya.adapter.ChatAdapter;
+import com.nidoham.kaveya.console.google.gemini.cache.ResponseCache;
 import com.nidoham.kaveya.console.google.gemini.engine.ChatsEngine;
 import com.nidoham.kaveya.console.google.gemini.engine.MemoriesEngine;
 import com.nidoham.kaveya.databinding.ActivityMainBinding;
 import com.nidoham.kaveya.databinding.NavHeaderBinding;
+import com.nidoham.kaveya.firebase.google.authentication.User;
+import com.nidoham.kaveya.firebase.google.database.model.MessageDelta;
 import com.nidoham.kaveya.firebase.google.database.model.Messages;
 import com.nidoham.kaveya.firebase.google.database.repository.control.ChatRepositoryController;
 import com.nidoham.kaveya.firebase.google.database.repository.control.MemoriesRepositoryController;
 import com.nidoham.kaveya.liberies.SketchwareUtil;
+import com.nidoham.kaveya.platform.translation.TranslationService;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
@@ -31,6 +42,11 @@ public class MainActivity extends AppCompatActivity {
     private static final String TAG = MainActivity.class.getSimpleName();
     private static final String AI_ID = "system";
     private static final String USER_ID = "nifamilyltd4";
+    // Reply and memory list come back from one Gemini call; false runs MemoriesEngine alongside the chat call
+    private static final boolean COMBINED_MEMORY_MODE = true;
+    // Apply per-message deltas instead of re-reading and re-diffing the whole chat on every change
+    private static final boolean INCREMENTAL_SYNC = true;
+    private static final int PAGE_SIZE = 50;
 
     private ActivityMainBinding binding;
     private NavHeaderBinding drawerBinding;
@@ -42,9 +58,15 @@ public class MainActivity extends AppCompatActivity {
     private ChatRepositoryController chatController;
     private MemoriesRepositoryController memoriesController;
 
+    private String translationLanguage = TranslationService.getDefaultTargetLanguage();
+    private long createdAtMs;
+    private boolean networkPageLoaded;
+    private boolean firstMessageReported;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        createdAtMs = SystemClock.elapsedRealtime();
         binding = ActivityMainBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
         initializeComponents();
@@ -59,6 +81,10 @@ public class MainActivity extends AppCompatActivity {
         chatController = new ChatRepositoryController();
         memoriesController = new MemoriesRepositoryController("system");
         setupChatAdapter();
+        setupPaging();
+        // Download the translation model now rather than on the first translate tap
+        TranslationService.getInstance().prefetchModels(translationLanguage);
+        loadPreferredLanguage();
         startListeningToMessages();
         startListeningToMemories();
     }
@@ -71,13 +97,50 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void startListeningToMessages() {
+        if (INCREMENTAL_SYNC) {
+            // Draw the last page from disk right away; the network page below reconciles it
+            chatController.loadCachedPage(PAGE_SIZE, messages -> {
+                if (networkPageLoaded || messages.isEmpty()) return;
+                // Paging waits for the network page, which would replace anything loaded from here
+                chatAdapter.setInitialPage(messages, false);
+                reportFirstMessageRendered("cache");
+            });
+
+            // Open on the newest page only, then stream deltas for that page and anything newer
+            chatController.loadLatestPage(PAGE_SIZE, new ChatRepositoryController.PageCallback() {
+                @Override
+                public void onPageLoaded(List<Messages> messages) {
+                    networkPageLoaded = true;
+                    chatAdapter.setInitialPage(messages, messages.size() >= PAGE_SIZE);
+                    if (!messages.isEmpty()) {
+                        reportFirstMessageRendered("network");
+                    }
+                    ChatRepositoryController.MessageChangesListener listener = createChangesListener();
+                    if (messages.isEmpty()) {
+                        chatController.startListeningToMessageChanges(listener);
+                    } else {
+                        chatController.startListeningToMessageChanges(messages.get(0).getTimestamp(), listener);
+                    }
+                }
+
+                @Override
+                public void onError(DatabaseError error) {
+                    Log.e(TAG, "Error loading messages: " + error.getMessage(), error.toException());
+                    Toast.makeText(MainActivity.this, "Error loading messages", Toast.LENGTH_SHORT).show();
+                }
+            });
+            return;
+        }
+
         chatController.startListeningToMessages(new ChatRepositoryController.MessagesListener() {
             @Override
             public void onMessagesChanged(List<Messages> messages) {
-                chatAdapter.updateMessages(messages); // submitList এর পরিবর্তে updateMessages
-                if (!messages.isEmpty()) {
-                    binding.messagesRecyclerView.scrollToPosition(messages.size() - 1);
-                }
+                // submitList এর পরিবর্তে updateMessages; the diff runs off the main thread
+                chatAdapter.updateMessages(messages, () -> {
+                    if (chatAdapter.getItemCount() > 0) {
+                        binding.messagesRecyclerView.scrollToPosition(chatAdapter.getItemCount() - 1);
+                    }
+                });
             }
 
             @Override
@@ -88,6 +151,78 @@ public class MainActivity extends AppCompatActivity {
         });
     }
     
+    /**
+     * Logs time-to-first-message-rendered once, when the frame showing the first rows is drawn:
+     * measured from process start (the cold-start figure) and from {@link #onCreate}.
+     */
+    private void reportFirstMessageRendered(String source) {
+        if (firstMessageReported) return;
+        firstMessageReported = true;
+        ViewTreeObserver observer = binding.messagesRecyclerView.getViewTreeObserver();
+        observer.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                binding.messagesRecyclerView.getViewTreeObserver().removeOnPreDrawListener(this);
+                long now = SystemClock.elapsedRealtime();
+                Log.i(TAG, "First message rendered from " + source + ": "
+                        + (now - Process.getStartElapsedRealtime()) + "ms since process start, "
+                        + (now - createdAtMs) + "ms since onCreate");
+                return true;
+            }
+        });
+    }
+
+    private ChatRepositoryController.MessageChangesListener createChangesListener() {
+        return new ChatRepositoryController.MessageChangesListener() {
+            @Override
+            public void onMessageDelta(MessageDelta delta) {
+                chatAdapter.applyDelta(delta);
+            }
+
+            @Override
+            public void onError(DatabaseError error) {
+                Log.e(TAG, "Error loading messages: " + error.getMessage(), error.toException());
+                Toast.makeText(MainActivity.this, "Error loading messages", Toast.LENGTH_SHORT).show();
+            }
+        };
+    }
+
+    private void setupPaging() {
+        chatAdapter.setPagingListener(new ChatAdapter.PagingListener() {
+            @Override
+            public void onLoadOlder(Messages oldest) {
+                chatController.loadOlderPage(oldest, PAGE_SIZE, new ChatRepositoryController.PageCallback() {
+                    @Override
+                    public void onPageLoaded(List<Messages> messages) {
+                        chatAdapter.prependOlderPage(messages, messages.size() >= PAGE_SIZE);
+                    }
+
+                    @Override
+                    public void onError(DatabaseError error) {
+                        Log.e(TAG, "Error loading older messages: " + error.getMessage(), error.toException());
+                        chatAdapter.onPageLoadFailed();
+                    }
+                });
+            }
+
+            @Override
+            public void onLoadNewer(Messages newest) {
+                chatController.loadNewerPage(newest, PAGE_SIZE, new ChatRepositoryController.PageCallback() {
+                    @Override
+                    public void onPageLoaded(List<Messages> messages) {
+                        chatAdapter.appendNewerPage(messages, messages.size() >= PAGE_SIZE);
+                    }
+
+                    @Override
+                    public void onError(DatabaseError error) {
+                        Log.e(TAG, "Error loading newer messages: " + error.getMessage(), error.toException());
+                        chatAdapter.onPageLoadFailed();
+                    }
+                });
+            }
+        });
+    }
+
     private void startListeningToMemories() {
         memoriesController.startListeningToMessages(new MemoriesRepositoryController.MemoriesListener() {
             @Override
@@ -113,27 +248,67 @@ public class MainActivity extends AppCompatActivity {
     }
     
 
-    private void sendAIRequest(String messageText) {
+    /**
+     * Sends a message to the chat engine. With a non-null {@code cacheFingerprint} the reply may
+     * be served from the response cache (reactions, greetings); otherwise it always goes to the model.
+     */
+    private void sendAIRequest(String messageText, String cacheFingerprint) {
         if (chatsEngine == null) {
             Log.e(TAG, "Chat engine not initialized");
             Toast.makeText(this, "Chat engine not initialized", Toast.LENGTH_SHORT).show();
             return;
         }
 
-        chatsEngine.sendMessage(messageText, new ChatsEngine.ChatCallback() {
+        Messages aiResponse = createMessage(AI_ID, USER_ID, "", true);
+        chatAdapter.beginStreamingMessage(aiResponse);
+
+        ChatsEngine.MemoryAwareCallback callback = new ChatsEngine.MemoryAwareCallback() {
+            @Override
+            public void onPartial(@NonNull String delta) {
+                runOnUiThread(() -> chatAdapter.appendStreamingDelta(delta));
+            }
+
             @Override
             public void onResponse(@NonNull String response) {
-                Messages aiResponse = createMessage(AI_ID, USER_ID, response, true);
-                saveMessageToFirebase(aiResponse);
-                sendAIMemoriesRequest(messageText);
+                runOnUiThread(() -> {
+                    chatAdapter.finishStreamingMessage(response);
+                    aiResponse.setText(response);
+                    saveMessageToFirebase(aiResponse);
+                });
+            }
+
+            @Override
+            public void onMemoriesUpdated(@NonNull List<String> memories) {
+                runOnUiThread(() -> addMemory(new Gson().toJson(memories)));
+            }
+
+            @Override
+            public void onMemoriesUnavailable() {
+                // Deferred fallback: the reply is already shown, extract memories separately
+                runOnUiThread(() -> sendAIMemoriesRequest(messageText));
             }
 
             @Override
             public void onError(@NonNull Throwable error) {
                 Log.e(TAG, "AI response error: " + error.getMessage(), error);
-                Toast.makeText(MainActivity.this, "Failed to get AI response", Toast.LENGTH_SHORT).show();
+                runOnUiThread(() -> {
+                    chatAdapter.finishStreamingMessage(null);
+                    chatAdapter.removeMessageById(aiResponse.getId());
+                    Toast.makeText(MainActivity.this, "Failed to get AI response", Toast.LENGTH_SHORT).show();
+                });
             }
-        });
+        };
+
+        if (cacheFingerprint != null) {
+            // Reactions and greetings carry nothing worth remembering; skip memory extraction
+            chatsEngine.sendCachedMessage(messageText, cacheFingerprint, callback);
+        } else if (COMBINED_MEMORY_MODE) {
+            chatsEngine.sendMessageWithMemories(messageText, callback);
+        } else {
+            // Extract memories concurrently so it never delays the reply
+            sendAIMemoriesRequest(messageText);
+            chatsEngine.sendMessageStream(messageText, callback);
+        }
     }
     
     private void sendAIMemoriesRequest(String messageText) {
@@ -219,7 +394,7 @@ public class MainActivity extends AppCompatActivity {
 
             @Override
             public void onReactionAdded(Messages message, String reaction) {
-                if (reaction != null) sendAIRequest(reaction);
+                if (reaction != null) sendAIRequest(reaction, "reaction");
             }
 
             @Override
@@ -241,7 +416,7 @@ public class MainActivity extends AppCompatActivity {
         Messages newMessage = createMessage(USER_ID, AI_ID, messageText, false);
         saveMessageToFirebase(newMessage);
         binding.messageInput.setText("");
-        sendAIRequest(messageText);
+        sendAIRequest(messageText, ResponseCache.isGreeting(messageText) ? "greeting" : null);
     }
 
     private Messages createMessage(String senderId, String receiverId, String content, boolean isAI) {
@@ -278,6 +453,8 @@ public class MainActivity extends AppCompatActivity {
         binding.btnMoreOptions.setOnClickListener(v -> {
             PopupMenu popup = new PopupMenu(this, v, GravityCompat.END);
             popup.getMenuInflater().inflate(R.menu.more_options_menu, popup.getMenu());
+            popup.getMenu().findItem(R.id.action_translate_conversation)
+                    .setChecked(chatAdapter.isConversationTranslationEnabled());
             popup.setOnMenuItemClickListener(this::handleMenuItemClick);
             popup.show();
         });
@@ -300,7 +477,10 @@ public class MainActivity extends AppCompatActivity {
 
     private boolean handleMenuItemClick(MenuItem item) {
         int itemId = item.getItemId();
-        if (itemId == R.id.action_update) {
+        if (itemId == R.id.action_translate_conversation) {
+            chatAdapter.setConversationTranslation(
+                    chatAdapter.isConversationTranslationEnabled() ? null : translationLanguage);
+        } else if (itemId == R.id.action_update) {
             Toast.makeText(this, "Update", Toast.LENGTH_SHORT).show();
         } else if (itemId == R.id.action_whats_new) {
             Toast.makeText(this, "What's new", Toast.LENGTH_SHORT).show();
@@ -314,6 +494,30 @@ public class MainActivity extends AppCompatActivity {
         return true;
     }
 
+    /**
+     * Reads {@link User#getPreferredLanguage()}: AI replies in any other language are translated
+     * into it as they arrive, and it becomes the target of "translate conversation".
+     */
+    private void loadPreferredLanguage() {
+        FirebaseUser user = auth.getCurrentUser();
+        if (user == null) return;
+        FirebaseDatabase.getInstance().getReference("users").child(user.getUid()).child("preferredLanguage")
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        String language = snapshot.getValue(String.class);
+                        if (language == null || language.trim().isEmpty()) return;
+                        translationLanguage = language.trim();
+                        chatAdapter.setAutoTranslateLanguage(translationLanguage);
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        Log.w(TAG, "Could not load preferred language: " + error.getMessage());
+                    }
+                });
+    }
+
     private void updateUserInfo() {
         FirebaseUser user = auth.getCurrentUser();
         if (user != null) {
@@ -365,9 +569,17 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        // Cancel in-flight Gemini requests first so none of them calls back into the adapter
+        if (chatsEngine != null) {
+            chatsEngine.close();
+            chatsEngine = null;
+        }
+        if (memoriesEngine != null) {
+            memoriesEngine.close();
+            memoriesEngine = null;
+        }
         chatAdapter.cleanup();
         chatController.cleanup();
-        chatsEngine = null;
         drawerBinding = null;
         binding = null;
     }
@@ -4,17 +4,24 @@ import android.content.ClipData;
 import android.content.ClipboardManager;
 import android.content.Context;
 import android.content.Intent;
-import android.speech.tts.TextToSpeech;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
 import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.ImageView;
 import android.widget.PopupWindow;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 import androidx.core.content.ContextCompat;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
 import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
@@ -22,22 +29,25 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.bumptech.glide.Glide;
 import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.bumptech.glide.request.RequestOptions;
-import com.google.mlkit.nl.translate.Translation;
-import com.google.mlkit.nl.translate.Translator;
-import com.google.mlkit.nl.translate.TranslatorOptions;
 import com.nidoham.kaveya.R;
 import com.nidoham.kaveya.databinding.*;
 import com.nidoham.kaveya.features.ReactionBottomSheetDialog;
+import com.nidoham.kaveya.firebase.google.database.model.MessageDelta;
 import com.nidoham.kaveya.firebase.google.database.model.Messages;
 import com.nidoham.kaveya.liberies.SketchwareUtil;
+import com.nidoham.kaveya.platform.translation.TranslationService;
+import com.nidoham.kaveya.platform.voice.SpeechService;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -57,11 +67,14 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
     private static final int VIEW_TYPE_RECEIVED_VOICE = 6;
     private static final int SMOOTH_SCROLL_THRESHOLD = 5; // Messages threshold for smooth scroll
     private static final int PREFETCH_DISTANCE = 10; // Number of items to prefetch
+    private static final int MAX_RESIDENT_MESSAGES = 300; // Rows kept in memory; the rest is paged back in
+    private static final int PAGE_LOAD_THRESHOLD = 5; // Rows from either end that trigger a page load
+    private static final int MAX_CONCURRENT_TRANSLATIONS = 3; // Messages run through the model at once
+    private static final String TAG = "ChatAdapter";
 
     private List<Messages> messageList;
     private final String currentUserId;
     private final Context context;
-    private final SimpleDateFormat timeFormat;
     private OnMessageClickListener clickListener;
     private final RequestOptions imageRequestOptions;
     private ExecutorService backgroundExecutor;
@@ -69,11 +82,41 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
     private boolean isScrolling = false;
     private boolean pendingScroll = false;
     private boolean suppressScrolling = false;
-    private TextToSpeech textToSpeech;
-    private final Map<String, Translator> translators = new HashMap<>();
+    private boolean deltaScrollPosted = false;
+    private PagingListener pagingListener;
+    private boolean hasOlderMessages = false;
+    private boolean hasNewerMessages = false;
+    private boolean loadingOlder = false;
+    private boolean loadingNewer = false;
+    private final SpeechService speechService;
     private final Map<String, List<String>> messageReactions = new HashMap<>();
 
     private PopupWindow popupWindow;
+    private Messages streamingMessage;
+    private final StringBuilder streamingText = new StringBuilder();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private int diffGeneration = 0; // Latest list submitted to updateMessages
+    private int listVersion = 0; // Bumped by every insert, remove, move, replacement or full refresh
+    private final Map<String, Integer> positionById = new HashMap<>();
+    private final MessageLayoutCache layoutCache = new MessageLayoutCache();
+    private final Map<Integer, PrecomputedTextCompat.Params> textParamsByViewType = new HashMap<>();
+    private int prefetchedStart = -1;
+    private int prefetchedEnd = -1;
+    private String conversationLanguage; // Target of "translate conversation" mode, or null when off
+    private String autoTranslateLanguage; // Target for incoming AI replies, or null
+    private long autoTranslateSince;
+    private TranslationService.Batch translationBatch;
+    private int indexedUpTo = 0; // positionById is exact for rows below this position
+
+    /**
+     * What changed in a row, so a rebind can touch only the affected views.
+     */
+    enum Payload {
+        TEXT,        // Message text, including streamed deltas and soft deletion
+        REACTION,    // Local reactions
+        TRANSLATION, // Translation state
+        EDITED       // Edit flag shown next to the timestamp
+    }
 
     public interface OnMessageClickListener {
         void onMessageClick(Messages message, int position);
@@ -84,37 +127,59 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
         void onVoicePlaybackRequested(Messages message);
     }
 
+    /**
+     * Asked to fetch the page beyond either end of the resident window.
+     */
+    public interface PagingListener {
+        void onLoadOlder(Messages oldest);
+        void onLoadNewer(Messages newest);
+    }
+
     public ChatAdapter(List<Messages> messageList, String currentUserId, Context context) {
         this.messageList = (messageList != null) ? new ArrayList<>(messageList) : new ArrayList<>();
         this.currentUserId = currentUserId;
         this.context = context;
-        this.timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
         this.imageRequestOptions = new RequestOptions()
                 .placeholder(R.drawable.app_icon)
                 .centerCrop()
                 .diskCacheStrategy(DiskCacheStrategy.ALL);
         this.backgroundExecutor = Executors.newFixedThreadPool(2);
-        
-        // Initialize TextToSpeech
-        initTextToSpeech();
-    }
 
-    private void initTextToSpeech() {
-        textToSpeech = new TextToSpeech(context, status -> {
-            if (status == TextToSpeech.SUCCESS) {
-                int result = textToSpeech.setLanguage(Locale.getDefault());
-                if (result == TextToSpeech.LANG_MISSING_DATA || result == TextToSpeech.LANG_NOT_SUPPORTED) {
-                    // Fallback to English if default language is not supported
-                    textToSpeech.setLanguage(Locale.US);
-                }
+        // An in-flight background diff is only valid against the row structure it started from,
+        // and the id index only for rows above the first structural change
+        registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                onStructureChanged(0);
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                onStructureChanged(positionStart);
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                onStructureChanged(positionStart);
+            }
+
+            @Override
+            public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+                onStructureChanged(Math.min(fromPosition, toPosition));
             }
         });
+        
+        speechService = SpeechService.getInstance(context);
     }
 
     public void setOnMessageClickListener(OnMessageClickListener listener) {
         this.clickListener = listener;
     }
 
+    public void setPagingListener(PagingListener listener) {
+        this.pagingListener = listener;
+    }
+
     @Override
     public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
         super.onAttachedToRecyclerView(recyclerView);
@@ -144,16 +209,24 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
                 if (layoutManager != null) {
                     int firstVisible = layoutManager.findFirstVisibleItemPosition();
                     int lastVisible = layoutManager.findLastVisibleItemPosition();
+                    requestPagesNear(firstVisible, lastVisible);
                     
-                    // Prefetch images for items that will soon be visible
+                    // Prefetch images and text layouts for items that will soon be visible
                     int start = Math.max(0, firstVisible - PREFETCH_DISTANCE);
                     int end = Math.min(messageList.size() - 1, lastVisible + PREFETCH_DISTANCE);
+                    if (start == prefetchedStart && end == prefetchedEnd) return;
+                    prefetchedStart = start;
+                    prefetchedEnd = end;
                     
                     for (int i = start; i <= end; i++) {
                         Messages message = messageList.get(i);
                         if (message.getMediaType() == Messages.MediaType.IMAGE && message.getMediaUrl() != null) {
                             Glide.with(context).load(message.getMediaUrl()).preload();
                         }
+                        prefetchText(message, getItemViewType(i));
+                    }
+                    if (conversationLanguage != null) {
+                        translateWindow(start, end);
                     }
                 }
             }
@@ -300,7 +373,10 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
         List<String> reactions = messageReactions.get(messageId);
         if (reactions != null && !reactions.contains(reaction)) {
             reactions.add(reaction);
-            notifyDataSetChanged(); // Update to show the reaction
+            int position = indexOfMessageId(messageId);
+            if (position >= 0) {
+                notifyItemChanged(position, Payload.REACTION);
+            }
             
             if (clickListener != null) {
                 clickListener.onReactionAdded(message, reaction);
@@ -308,69 +384,163 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
         }
     }
     
-    private void translateMessage(Messages message, int position) {
-        // Get user's preferred language from settings or device
-        String targetLanguage = Locale.getDefault().getLanguage();
-        if (targetLanguage.equals("en")) {
-            // If device is in English, translate to Bengali as fallback
-            targetLanguage = "bn";
+    /**
+     * Turns "translate conversation" mode on, translating the visible rows and those just beyond
+     * them into {@code targetLanguage} as the user scrolls, or off (null) and restores the originals.
+     */
+    public void setConversationTranslation(String targetLanguage) {
+        if (Objects.equals(conversationLanguage, targetLanguage)) return;
+        conversationLanguage = targetLanguage;
+        if (translationBatch != null) {
+            translationBatch.cancel();
+            translationBatch = null;
+        }
+
+        if (targetLanguage == null) {
+            for (int i = 0; i < messageList.size(); i++) {
+                if (messageList.get(i).getTranslatedText() != null) {
+                    replaceAt(i, messageList.get(i).withoutTranslation(), false);
+                }
+            }
+            return;
+        }
+
+        TranslationService.getInstance().prefetchModels(targetLanguage);
+        if (recyclerView != null && recyclerView.getLayoutManager() instanceof LinearLayoutManager) {
+            LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+            int start = Math.max(0, layoutManager.findFirstVisibleItemPosition() - PREFETCH_DISTANCE);
+            int end = Math.min(messageList.size() - 1, layoutManager.findLastVisibleItemPosition() + PREFETCH_DISTANCE);
+            translateWindow(start, end);
         }
-        
-        // Get or create translator
-        Translator translator = getTranslator("en", targetLanguage);
-        
-        // Show translation in progress
-        Toast.makeText(context, "অনুবাদ করা হচ্ছে...", Toast.LENGTH_SHORT).show();
-        
-        // Perform translation in background
-        backgroundExecutor.execute(() -> {
-            translator.translate(message.getText())
-                    .addOnSuccessListener(translatedText -> {
-                        // Update UI on main thread
-                        recyclerView.post(() -> {
-                            // Create a temporary message with translated text
-                            message.setText(translatedText+ " (Translated)");
-                            message.setTranslated(true);
-                            overrideMessage(message, position);
-                                
-                            // Scroll to show the translation
-                            scrollToBottom(true);
-                        });
-                    })
-                    .addOnFailureListener(e -> {
-                        // Show error on main thread
-                        recyclerView.post(() -> {
-                            Toast.makeText(context, "Translation failed: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                        });
-                    });
-        });
     }
-    
-    private Translator getTranslator(String sourceLanguage, String targetLanguage) {
-        String key = sourceLanguage + "_" + targetLanguage;
-        if (!translators.containsKey(key)) {
-            TranslatorOptions options = new TranslatorOptions.Builder()
-                    .setSourceLanguage(sourceLanguage)
-                    .setTargetLanguage(targetLanguage)
-                    .build();
-            Translator translator = Translation.getClient(options);
-            
-            // Download translation model if needed
-            translator.downloadModelIfNeeded()
-                    .addOnFailureListener(e -> {
-                        Toast.makeText(context, "Failed to download translation model", Toast.LENGTH_SHORT).show();
-                    });
-            
-            translators.put(key, translator);
+
+    public boolean isConversationTranslationEnabled() {
+        return conversationLanguage != null;
+    }
+
+    /**
+     * Translates AI replies that arrive from now on into {@code targetLanguage} when they are
+     * written in another language, or stops doing so (null). History is left as it is.
+     */
+    public void setAutoTranslateLanguage(String targetLanguage) {
+        autoTranslateLanguage = targetLanguage;
+        autoTranslateSince = System.currentTimeMillis();
+        if (targetLanguage != null) {
+            TranslationService.getInstance().prefetchModels(targetLanguage);
         }
-        
-        return translators.get(key);
+    }
+
+    /**
+     * Queues the untranslated rows in [start, end] as one bounded-concurrency batch, replacing the
+     * batch for the previous window. Rows already being translated are shared, not repeated.
+     */
+    private void translateWindow(int start, int end) {
+        String targetLanguage = conversationLanguage;
+        if (targetLanguage == null || start < 0 || end < start) return;
+
+        List<TranslationService.BatchItem> items = new ArrayList<>();
+        for (int i = start; i <= end && i < messageList.size(); i++) {
+            Messages message = messageList.get(i);
+            if (needsTranslation(message, targetLanguage)) {
+                items.add(new TranslationService.BatchItem(message.getId(), message.getText()));
+            }
+        }
+        if (items.isEmpty()) return;
+
+        if (translationBatch != null) {
+            translationBatch.cancel();
+        }
+        translationBatch = TranslationService.getInstance().translateBatch(items, targetLanguage,
+                MAX_CONCURRENT_TRANSLATIONS, new TranslationService.BatchCallback() {
+                    @Override
+                    public void onItemTranslated(String messageId, String translatedText,
+                                                 String sourceLanguage, long latencyMillis) {
+                        applyTranslation(messageId, translatedText, sourceLanguage, targetLanguage);
+                    }
+
+                    @Override
+                    public void onBatchFinished(TranslationService.BatchStats stats) {
+                        Log.d(TAG, "Translated window [" + start + ", " + end + "]: " + stats);
+                    }
+                });
+    }
+
+    private void autoTranslate(Messages message) {
+        String targetLanguage = conversationLanguage != null ? conversationLanguage : autoTranslateLanguage;
+        if (targetLanguage == null || !message.isAI() || message == streamingMessage
+                || message.getTimestamp() < autoTranslateSince
+                || !needsTranslation(message, targetLanguage)) {
+            return;
+        }
+
+        String messageId = message.getId();
+        long startMillis = SystemClock.elapsedRealtime();
+        TranslationService.getInstance().translate(messageId, message.getText(), targetLanguage,
+                new TranslationService.TranslationCallback() {
+                    @Override
+                    public void onTranslated(String translatedText, String sourceLanguage) {
+                        Log.d(TAG, "Auto-translated reply in " + (SystemClock.elapsedRealtime() - startMillis) + "ms");
+                        applyTranslation(messageId, translatedText, sourceLanguage, targetLanguage);
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        // The original stays on screen
+                    }
+                });
+    }
+
+    private boolean needsTranslation(Messages message, String targetLanguage) {
+        return message.getId() != null && message != streamingMessage && !message.isDeleted()
+                && message.getText() != null && !message.getText().isEmpty()
+                && !(message.getTranslatedText() != null && targetLanguage.equals(message.getTranslatedLanguage()));
+    }
+
+    /**
+     * Shows a finished translation as a partial rebind, unless the text was already in the target
+     * language or the row has changed since.
+     */
+    private void applyTranslation(String messageId, String translatedText, String sourceLanguage, String targetLanguage) {
+        int position = indexOfMessageId(messageId);
+        if (position < 0 || targetLanguage.equals(sourceLanguage)) return;
+        Messages current = messageList.get(position);
+        if (translatedText == null || translatedText.equals(current.getText())) return;
+        if (!translatedText.equals(TranslationService.getInstance().getCached(messageId, current.getText(), targetLanguage))) {
+            return; // Edited while the model ran
+        }
+        replaceAt(position, current.withTranslation(translatedText, sourceLanguage, targetLanguage));
+    }
+
+    private void translateMessage(Messages message, int position) {
+        String messageId = message.getId();
+        String text = message.getText();
+        if (messageId == null || text == null || text.isEmpty()) return;
+
+        String targetLanguage = TranslationService.getDefaultTargetLanguage();
+        TranslationService translationService = TranslationService.getInstance();
+        if (translationService.getCached(messageId, text, targetLanguage) == null) {
+            // Show translation in progress; cached results appear immediately instead
+            Toast.makeText(context, "অনুবাদ করা হচ্ছে...", Toast.LENGTH_SHORT).show();
+        }
+
+        translationService.translate(messageId, text, targetLanguage, new TranslationService.TranslationCallback() {
+            @Override
+            public void onTranslated(String translatedText, String sourceLanguage) {
+                // The row may have moved or been edited while the model ran
+                int current = indexOfMessageId(messageId);
+                if (current < 0 || !text.equals(messageList.get(current).getText())) return;
+                replaceAt(current, messageList.get(current).withTranslation(translatedText, sourceLanguage, targetLanguage));
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Toast.makeText(context, "Translation failed: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            }
+        });
     }
     
     private void speakText(String text) {
-        if (textToSpeech != null) {
-            textToSpeech.speak(text, TextToSpeech.QUEUE_FLUSH, null, "message_tts");
-        }
+        speechService.speak(this, text, Locale.getDefault(), true);
     }
 
     private void copyToClipboard(String text) {
@@ -390,21 +560,8 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
     
     @Override
     public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
-        Messages message = messageList.get(position);
-        
-        // Bind based on view holder type
-        if (holder instanceof SentMessageViewHolder) {
-            ((SentMessageViewHolder) holder).bind(message, position);
-        } else if (holder instanceof ReceivedMessageViewHolder) {
-            ((ReceivedMessageViewHolder) holder).bind(message, position);
-        } else if (holder instanceof SentMediaViewHolder) {
-            ((SentMediaViewHolder) holder).bind(message, position);
-        } else if (holder instanceof ReceivedMediaViewHolder) {
-            ((ReceivedMediaViewHolder) holder).bind(message, position);
-        } else if (holder instanceof SentVoiceViewHolder) {
-            ((SentVoiceViewHolder) holder).bind(message, position);
-        } else if (holder instanceof ReceivedVoiceViewHolder) {
-            ((ReceivedVoiceViewHolder) holder).bind(message, position);
+        if (holder instanceof MessageViewHolder) {
+            ((MessageViewHolder) holder).bind(messageList.get(position));
         }
     }
 
@@ -471,17 +628,24 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
 
     @Override
     public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position, @NonNull List<Object> payloads) {
-        if (payloads.isEmpty()) {
+        if (payloads.isEmpty() || !(holder instanceof MessageViewHolder)) {
             super.onBindViewHolder(holder, position, payloads);
             return;
         }
 
-        Messages message = messageList.get(position);
-        if (holder instanceof SentMessageViewHolder) {
-            ((SentMessageViewHolder) holder).updateText(message.getText());
-        } else if (holder instanceof ReceivedMessageViewHolder) {
-            ((ReceivedMessageViewHolder) holder).updateText(message.getText());
+        // Payloads queued before the next layout pass arrive together
+        EnumSet<Payload> changes = EnumSet.noneOf(Payload.class);
+        for (Object payload : payloads) {
+            if (payload instanceof Payload) {
+                changes.add((Payload) payload);
+            } else if (payload instanceof PayloadSet) {
+                changes.addAll(((PayloadSet) payload).changes);
+            } else {
+                onBindViewHolder(holder, position);
+                return;
+            }
         }
+        ((MessageViewHolder) holder).bindChanges(messageList.get(position), changes);
     }
 
     @Override
@@ -489,7 +653,8 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
         return messageList.size();
     }
 
-    private static class MessageDiffCallback extends DiffUtil.Callback {
+    @VisibleForTesting
+    static class MessageDiffCallback extends DiffUtil.Callback {
         private final List<Messages> oldList;
         private final List<Messages> newList;
 
@@ -517,32 +682,188 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
 
         @Override
         public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
-            Messages oldMessage = oldList.get(oldItemPosition);
-            Messages newMessage = newList.get(newItemPosition);
-
-            return Objects.equals(oldMessage.getText(), newMessage.getText()) &&
-                   Objects.equals(oldMessage.getMediaUrl(), newMessage.getMediaUrl()) &&
-                   Objects.equals(oldMessage.getMediaType(), newMessage.getMediaType()) &&
-                   oldMessage.getTimestamp() == newMessage.getTimestamp() &&
-                   oldMessage.isAI() == newMessage.isAI();
+            return changePayload(oldList.get(oldItemPosition), newList.get(newItemPosition)) == NO_CHANGE;
         }
 
         @Override
         public Object getChangePayload(int oldItemPosition, int newItemPosition) {
-            return new Object();
+            return changePayload(oldList.get(oldItemPosition), newList.get(newItemPosition));
+        }
+    }
+
+    /**
+     * Several {@link Payload}s for one change notification.
+     */
+    private static final class PayloadSet {
+        final EnumSet<Payload> changes;
+
+        PayloadSet(EnumSet<Payload> changes) {
+            this.changes = changes;
+        }
+    }
+
+    private static final PayloadSet NO_CHANGE = new PayloadSet(EnumSet.noneOf(Payload.class));
+
+    /**
+     * Returns the partial rebind needed to turn {@code oldMessage}'s row into {@code newMessage}'s:
+     * {@link #NO_CHANGE}, a {@link PayloadSet}, or null when the row needs a full rebind (media,
+     * timestamp or sender changed).
+     */
+    private static PayloadSet changePayload(Messages oldMessage, Messages newMessage) {
+        if (!Objects.equals(oldMessage.getMediaUrl(), newMessage.getMediaUrl())
+                || !Objects.equals(oldMessage.getMediaType(), newMessage.getMediaType())
+                || oldMessage.getTimestamp() != newMessage.getTimestamp()
+                || oldMessage.isAI() != newMessage.isAI()) {
+            return null;
+        }
+
+        EnumSet<Payload> changes = EnumSet.noneOf(Payload.class);
+        if (!Objects.equals(oldMessage.getText(), newMessage.getText())
+                || oldMessage.isDeleted() != newMessage.isDeleted()) {
+            changes.add(Payload.TEXT);
+        }
+        if (oldMessage.isTranslated() != newMessage.isTranslated()
+                || !Objects.equals(oldMessage.getTranslatedLanguage(), newMessage.getTranslatedLanguage())
+                || !Objects.equals(oldMessage.getTranslatedText(), newMessage.getTranslatedText())) {
+            changes.add(Payload.TRANSLATION);
+        }
+        if (oldMessage.isEdited() != newMessage.isEdited()
+                || oldMessage.getEditTimestamp() != newMessage.getEditTimestamp()) {
+            changes.add(Payload.EDITED);
+        }
+        return changes.isEmpty() ? NO_CHANGE : new PayloadSet(changes);
+    }
+
+    /**
+     * Replaces the row at {@code index} with {@code message}, rebinding only what changed. A
+     * translation already shown for the same text is carried over to the new copy.
+     */
+    private void replaceAt(int index, Messages message) {
+        replaceAt(index, message, true);
+    }
+
+    private void replaceAt(int index, Messages message, boolean keepTranslation) {
+        Messages current = messageList.get(index);
+        if (keepTranslation && current != message && current.getTranslatedText() != null
+                && message.getTranslatedText() == null && Objects.equals(current.getText(), message.getText())) {
+            message = message.withTranslation(current.getTranslatedText(),
+                    current.getOriginalLanguage(), current.getTranslatedLanguage());
+        }
+        Messages previous = messageList.set(index, message);
+        listVersion++;
+        if (previous == message) {
+            // Mutated in place, so there is nothing to compare against
+            notifyItemChanged(index);
+            return;
+        }
+        PayloadSet payload = changePayload(previous, message);
+        if (payload != NO_CHANGE) {
+            notifyItemChanged(index, payload);
         }
     }
 
+    /**
+     * Replaces the list with {@code newMessages}, diffing on a background thread the way
+     * {@code AsyncListDiffer} does. The adapter takes ownership of the list, so the caller must
+     * not modify it afterwards. If another list is submitted before the diff finishes, the older
+     * result is discarded; if the rows changed underneath it (a delta or page load), those changes
+     * are carried over onto the new list and it is diffed again.
+     */
     public void updateMessages(List<Messages> newMessages) {
+        updateMessages(newMessages, null);
+    }
+
+    /**
+     * Like {@link #updateMessages(List)}, running {@code commitCallback} on the main thread once the
+     * new list is displayed. It does not run if a newer list replaces this one first.
+     */
+    public void updateMessages(List<Messages> newMessages, Runnable commitCallback) {
         if (newMessages == null) return;
 
+        // Keep the in-flight streamed reply visible until its final copy arrives from Firebase
+        if (streamingMessage != null && !containsMessageId(newMessages, streamingMessage.getId())) {
+            List<Messages> merged = new ArrayList<>(newMessages);
+            merged.add(streamingMessage);
+            newMessages = merged;
+        }
+        submitDiff(newMessages, ++diffGeneration, commitCallback);
+    }
+
+    private void submitDiff(List<Messages> newMessages, int generation, Runnable commitCallback) {
+        if (backgroundExecutor == null) return;
+
+        // The diff thread only ever sees this copy, never the live list. Any change made to the
+        // rows while it runs bumps listVersion, and the page is then rebased onto them.
+        final List<Messages> snapshot = new ArrayList<>(messageList);
+        final int version = listVersion;
+        backgroundExecutor.execute(() -> {
+            long diffStart = SystemClock.elapsedRealtimeNanos();
+            DiffUtil.DiffResult result = DiffUtil.calculateDiff(new MessageDiffCallback(snapshot, newMessages));
+            long diffNanos = SystemClock.elapsedRealtimeNanos() - diffStart;
+            List<Messages> owned = new ArrayList<>(newMessages);
+            mainHandler.post(() -> {
+                if (generation != diffGeneration) return; // Superseded by a newer list
+                if (version != listVersion) {
+                    submitDiff(rebase(snapshot, newMessages), generation, commitCallback);
+                    return;
+                }
+                long applyStart = SystemClock.elapsedRealtimeNanos();
+                applyDiff(owned, result);
+                Log.d(TAG, "Diffed " + snapshot.size() + " -> " + newMessages.size() + " rows in "
+                        + diffNanos / 1_000_000 + "ms off the main thread, applied in "
+                        + (SystemClock.elapsedRealtimeNanos() - applyStart) / 1_000 + "us");
+                if (commitCallback != null) {
+                    commitCallback.run();
+                }
+            });
+        });
+    }
+
+    /**
+     * Carries the changes made to the rows since {@code base} was copied over to
+     * {@code incoming}: rows inserted or replaced since then win over the incoming copies and
+     * rows removed since then stay removed. Anything the delta listener applied while the page
+     * was being diffed is newer than the page.
+     */
+    private List<Messages> rebase(List<Messages> base, List<Messages> incoming) {
+        Map<String, Messages> baseById = new HashMap<>(base.size() * 2);
+        for (Messages message : base) {
+            baseById.put(message.getId(), message);
+        }
+        Map<String, Messages> currentById = new HashMap<>(messageList.size() * 2);
+        for (Messages message : messageList) {
+            currentById.put(message.getId(), message);
+        }
+
+        List<Messages> rebased = new ArrayList<>(incoming.size() + 8);
+        Set<String> kept = new HashSet<>(incoming.size() * 2);
+        for (Messages message : incoming) {
+            Messages before = baseById.get(message.getId());
+            Messages now = currentById.get(message.getId());
+            if (before != null && now == null) continue; // Removed since
+            rebased.add(now != null && now != before ? now : message);
+            kept.add(message.getId());
+        }
+        boolean inserted = false;
+        for (Messages message : messageList) {
+            if (!baseById.containsKey(message.getId()) && !kept.contains(message.getId())) {
+                rebased.add(message);
+                inserted = true;
+            }
+        }
+        if (inserted) {
+            // Stable, so rows with equal timestamps keep the page's order
+            Collections.sort(rebased, (a, b) -> Long.compare(a.getTimestamp(), b.getTimestamp()));
+        }
+        return rebased;
+    }
+
+    private void applyDiff(List<Messages> newMessages, DiffUtil.DiffResult diffResult) {
         boolean wasAtBottom = isNearBottom();
-        List<Messages> oldList = new ArrayList<>(messageList);
-        DiffUtil.DiffResult diffResult = DiffUtil.calculateDiff(new MessageDiffCallback(oldList, newMessages));
 
         suppressScrolling = true;
-        messageList.clear();
-        messageList.addAll(newMessages);
+        messageList = newMessages;
+        invalidateIndexFrom(0);
         diffResult.dispatchUpdatesTo(this);
         suppressScrolling = false;
 
@@ -551,6 +872,345 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
         }
     }
     
+    /**
+     * Replaces the list with the newest page of the conversation. If a cached copy of the page is
+     * showing, the two are diffed so edited, deleted and new messages update in place.
+     *
+     * @param hasOlder Whether older messages exist beyond this page
+     */
+    public void setInitialPage(List<Messages> page, boolean hasOlder) {
+        if (!messageList.isEmpty() && page != null && !page.isEmpty()) {
+            // Rows restored from the on-device cache are already on screen: only touch what changed
+            hasOlderMessages = hasOlder;
+            hasNewerMessages = false;
+            loadingOlder = false;
+            loadingNewer = false;
+            updateMessages(page);
+            return;
+        }
+        diffGeneration++; // Any diff still running is for a list this page replaces
+        messageList.clear();
+        invalidateIndexFrom(0);
+        if (page != null) {
+            messageList.addAll(page);
+        }
+        if (streamingMessage != null && indexOfMessageId(streamingMessage.getId()) < 0) {
+            messageList.add(streamingMessage);
+        }
+        hasOlderMessages = hasOlder;
+        hasNewerMessages = false;
+        loadingOlder = false;
+        loadingNewer = false;
+        notifyDataSetChanged();
+        if (recyclerView != null && !messageList.isEmpty()) {
+            recyclerView.scrollToPosition(messageList.size() - 1);
+        }
+    }
+
+    /**
+     * Prepends a page fetched by {@link PagingListener#onLoadOlder}, then trims the newest rows
+     * if the window has grown past {@link #MAX_RESIDENT_MESSAGES}.
+     *
+     * @param hasMore Whether even older messages exist
+     */
+    public void prependOlderPage(List<Messages> page, boolean hasMore) {
+        loadingOlder = false;
+        hasOlderMessages = hasMore;
+        if (page == null || page.isEmpty()) return;
+
+        List<Messages> fresh = new ArrayList<>(page.size());
+        for (Messages message : page) {
+            if (indexOfMessageId(message.getId()) < 0) {
+                fresh.add(message);
+            }
+        }
+        messageList.addAll(0, fresh);
+        notifyItemRangeInserted(0, fresh.size());
+
+        int excess = messageList.size() - MAX_RESIDENT_MESSAGES;
+        // Never trim away an in-flight streamed reply
+        if (excess > 0 && streamingMessage == null) {
+            int from = messageList.size() - excess;
+            messageList.subList(from, messageList.size()).clear();
+            notifyItemRangeRemoved(from, excess);
+            hasNewerMessages = true;
+        }
+    }
+
+    /**
+     * Appends a page fetched by {@link PagingListener#onLoadNewer}, then trims the oldest rows
+     * if the window has grown past {@link #MAX_RESIDENT_MESSAGES}.
+     *
+     * @param hasMore Whether messages newer than this page exist beyond the window
+     */
+    public void appendNewerPage(List<Messages> page, boolean hasMore) {
+        loadingNewer = false;
+        hasNewerMessages = hasMore;
+        if (page != null && !page.isEmpty()) {
+            int start = messageList.size();
+            int added = 0;
+            for (Messages message : page) {
+                if (indexOfMessageId(message.getId()) < 0) {
+                    messageList.add(message);
+                    added++;
+                }
+            }
+            notifyItemRangeInserted(start, added);
+        }
+        trimOldest();
+    }
+
+    /**
+     * Clears the loading flag after a failed page fetch so it can be retried on the next scroll.
+     */
+    public void onPageLoadFailed() {
+        loadingOlder = false;
+        loadingNewer = false;
+    }
+
+    private void requestPagesNear(int firstVisible, int lastVisible) {
+        if (pagingListener == null || messageList.isEmpty() || firstVisible < 0) return;
+
+        if (hasOlderMessages && !loadingOlder && firstVisible <= PAGE_LOAD_THRESHOLD) {
+            loadingOlder = true;
+            Messages oldest = messageList.get(0);
+            // Defer out of the scroll callback; the page arrives asynchronously anyway
+            recyclerView.post(() -> pagingListener.onLoadOlder(oldest));
+        }
+        if (hasNewerMessages && !loadingNewer && lastVisible >= messageList.size() - 1 - PAGE_LOAD_THRESHOLD) {
+            loadingNewer = true;
+            Messages newest = messageList.get(messageList.size() - 1);
+            recyclerView.post(() -> pagingListener.onLoadNewer(newest));
+        }
+    }
+
+    /**
+     * Drops the oldest rows beyond {@link #MAX_RESIDENT_MESSAGES} while the user is at the bottom;
+     * they can be paged back in from the top.
+     */
+    private void trimOldest() {
+        int excess = messageList.size() - MAX_RESIDENT_MESSAGES;
+        if (excess <= 0 || !isNearBottom()) return;
+
+        messageList.subList(0, excess).clear();
+        notifyItemRangeRemoved(0, excess);
+        hasOlderMessages = true;
+    }
+
+    /**
+     * Applies one incremental change with a targeted notification instead of a full diff.
+     */
+    public void applyDelta(MessageDelta delta) {
+        if (delta == null) return;
+
+        Messages message = delta.getMessage();
+        int existingIndex = indexOfMessageId(message.getId());
+
+        switch (delta.getType()) {
+            case ADDED:
+                if (existingIndex >= 0) {
+                    // Our own write echoed back, e.g. the final copy of a streamed reply
+                    replaceAt(existingIndex, message);
+                    autoTranslate(message);
+                    return;
+                }
+                int insertAt = insertionPosition(message, delta.getPreviousMessageId());
+                if (insertAt < 0) {
+                    // Falls outside the resident window; it will be paged in if the user scrolls there
+                    return;
+                }
+                boolean shouldScroll = isNearBottom();
+                messageList.add(insertAt, message);
+                notifyItemInserted(insertAt);
+                trimOldest();
+                autoTranslate(message);
+                if (shouldScroll && recyclerView != null && !deltaScrollPosted) {
+                    // The initial burst delivers every message as ADDED; scroll once after it
+                    deltaScrollPosted = true;
+                    recyclerView.post(() -> {
+                        deltaScrollPosted = false;
+                        scrollToBottom(true);
+                    });
+                }
+                break;
+
+            case CHANGED:
+                if (existingIndex >= 0) {
+                    replaceAt(existingIndex, message);
+                }
+                break;
+
+            case REMOVED:
+                if (existingIndex >= 0) {
+                    messageList.remove(existingIndex);
+                    notifyItemRemoved(existingIndex);
+                }
+                break;
+
+            case MOVED:
+                if (existingIndex < 0) return;
+                messageList.remove(existingIndex);
+                int moveTo = insertionPosition(message, delta.getPreviousMessageId());
+                if (moveTo < 0) {
+                    notifyItemRemoved(existingIndex);
+                    return;
+                }
+                messageList.add(moveTo, message);
+                notifyItemMoved(existingIndex, moveTo);
+                break;
+        }
+    }
+
+    /**
+     * Returns where {@code message} belongs: directly after {@code previousId} if that row is
+     * resident, or -1 if the message lies outside the resident window.
+     */
+    private int insertionPosition(Messages message, String previousId) {
+        if (previousId != null) {
+            int previousIndex = indexOfMessageId(previousId);
+            if (previousIndex < 0) return -1;
+            if (previousIndex == messageList.size() - 1 && hasNewerMessages) return -1;
+            return previousIndex + 1;
+        }
+        // First in the listener's range: place it by timestamp unless older rows are paged out
+        if (hasOlderMessages && !messageList.isEmpty()
+                && message.getTimestamp() < messageList.get(0).getTimestamp()) {
+            return -1;
+        }
+        int position = 0;
+        while (position < messageList.size() && messageList.get(position).getTimestamp() < message.getTimestamp()) {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Returns the position of {@code messageId}, or -1. Amortised O(1): the index is exact up to
+     * {@link #indexedUpTo} and only the rows after the earliest structural change are re-indexed,
+     * which for a chat is almost always just the tail.
+     */
+    @VisibleForTesting
+    int indexOfMessageId(String messageId) {
+        if (messageId == null) return -1;
+
+        Integer cached = positionById.get(messageId);
+        if (cached != null && cached < indexedUpTo && isAt(cached, messageId)) {
+            return cached;
+        }
+        if (cached == null && indexedUpTo >= messageList.size()) {
+            return -1;
+        }
+        if (cached != null && cached < indexedUpTo) {
+            // A change that has not been notified yet moved it; start over
+            invalidateIndexFrom(0);
+        }
+        reindexTail();
+        Integer position = positionById.get(messageId);
+        return position != null && isAt(position, messageId) ? position : -1;
+    }
+
+    private boolean isAt(int position, String messageId) {
+        return position < messageList.size() && messageId.equals(messageList.get(position).getId());
+    }
+
+    private void onStructureChanged(int fromPosition) {
+        listVersion++;
+        invalidateIndexFrom(fromPosition);
+        // The same positions may now hold different messages
+        prefetchedStart = -1;
+        prefetchedEnd = -1;
+    }
+
+    private void invalidateIndexFrom(int position) {
+        if (position <= 0) {
+            positionById.clear();
+            indexedUpTo = 0;
+        } else if (position < indexedUpTo) {
+            indexedUpTo = position;
+        }
+    }
+
+    private void reindexTail() {
+        for (int i = indexedUpTo; i < messageList.size(); i++) {
+            String id = messageList.get(i).getId();
+            if (id != null) {
+                positionById.put(id, i);
+            }
+        }
+        indexedUpTo = messageList.size();
+    }
+
+    private static boolean containsMessageId(List<Messages> messages, String messageId) {
+        if (messageId == null) return false;
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (messageId.equals(messages.get(i).getId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds a placeholder row for an AI reply that is still being streamed.
+     * Subsequent deltas are appended with {@link #appendStreamingDelta(String)}.
+     */
+    public void beginStreamingMessage(Messages message) {
+        if (message == null) return;
+
+        streamingMessage = message;
+        streamingText.setLength(0);
+        if (message.getText() != null) {
+            streamingText.append(message.getText());
+        }
+        addMessage(message);
+    }
+
+    /**
+     * Appends a text delta to the in-flight streamed message and rebinds only its text.
+     */
+    public void appendStreamingDelta(String delta) {
+        if (streamingMessage == null || delta == null || delta.isEmpty()) return;
+
+        streamingText.append(delta);
+        streamingMessage.setText(streamingText.toString());
+
+        int position = findStreamingPosition();
+        if (position < 0) return;
+
+        boolean shouldScroll = isNearBottom();
+        notifyItemChanged(position, Payload.TEXT);
+        if (shouldScroll && recyclerView != null) {
+            recyclerView.post(() -> scrollToBottom(false));
+        }
+    }
+
+    /**
+     * Ends streaming for the current in-flight message, optionally replacing its text with the final reply.
+     */
+    public void finishStreamingMessage(String finalText) {
+        if (streamingMessage == null) return;
+
+        if (finalText != null && !finalText.contentEquals(streamingText)) {
+            streamingMessage.setText(finalText);
+            int position = findStreamingPosition();
+            if (position >= 0) {
+                notifyItemChanged(position, Payload.TEXT);
+            }
+        }
+        streamingMessage = null;
+        streamingText.setLength(0);
+    }
+
+    private int findStreamingPosition() {
+        // The streamed reply is almost always the last row, so scan from the end
+        for (int i = messageList.size() - 1; i >= 0; i--) {
+            if (messageList.get(i) == streamingMessage) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     /**
      * Override message content at specific position
      */
@@ -558,8 +1218,7 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
         if (message == null || position < 0 || position >= messageList.size()) {
             return;
         }
-        messageList.set(position, message);
-        notifyItemChanged(position);
+        replaceAt(position, message);
     }
     
     public void addMessage(Messages message) {
@@ -567,17 +1226,10 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
 
         boolean shouldScroll = isNearBottom();
 
-        int existingIndex = -1;
-        for (int i = 0; i < messageList.size(); i++) {
-            if (messageList.get(i).getId() != null && messageList.get(i).getId().equals(message.getId())) {
-                existingIndex = i;
-                break;
-            }
-        }
+        int existingIndex = indexOfMessageId(message.getId());
 
         if (existingIndex >= 0) {
-            messageList.set(existingIndex, message);
-            notifyItemChanged(existingIndex);
+            replaceAt(existingIndex, message);
         } else {
             messageList.add(message);
             notifyItemInserted(messageList.size() - 1);
@@ -595,120 +1247,206 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
             return;
         }
 
-        // Remove message at the specified position
+        // Remove message at the specified position. Rows below keep their binding: their
+        // listeners resolve the position when clicked, so they need no rebind.
         messageList.remove(position);
         notifyItemRemoved(position);
-        // Notify about changes in subsequent items
-        notifyItemRangeChanged(position, messageList.size());
     }
     
     public void removeMessageById(String messageId) {
+        removeMessage(indexOfMessageId(messageId));
+    }
     
-        if (messageId == null || messageList == null) {
-            return;
+    /**
+     * Measures a row's text in the background once a holder of its type has reported its metrics.
+     * The streamed reply changes with every delta, so it is never worth measuring ahead.
+     */
+    private void prefetchText(Messages message, int viewType) {
+        PrecomputedTextCompat.Params params = textParamsByViewType.get(viewType);
+        if (params == null || message == streamingMessage) return;
+        layoutCache.prefetch(message.getId(), displayText(message), params, backgroundExecutor);
+    }
+
+    private String displayText(Messages message) {
+        if (message.isDeleted()) {
+            return "This message was deleted";
         }
+        if (message.isTranslated() && message.getTranslatedText() != null) {
+            return message.getTranslatedText() + " (Translated)";
+        }
+        return message.getText();
+    }
 
-        for (int i = 0; i < messageList.size(); i++) {
-            Messages message = messageList.get(i);
-            if (message != null && messageId.equals(message.getId())) {
-                messageList.remove(i);
-                notifyItemRemoved(i);
-                // Notify about changes in subsequent items
-                notifyItemRangeChanged(i, messageList.size());
-                break; // Exit loop after removing the message
+    private String displayTimestamp(Messages message) {
+        String time = layoutCache.formatTime(message.getTimestamp());
+        return message.isEdited() ? time + " · edited" : time;
+    }
+
+    /**
+     * Common binding for every message row. Listeners are attached once per holder and look up the
+     * row's current message when they fire, so partial rebinds never leave them holding a stale copy.
+     */
+    abstract class MessageViewHolder extends RecyclerView.ViewHolder {
+        private PrecomputedTextCompat.Params textParams;
+
+        MessageViewHolder(View itemView) {
+            super(itemView);
+        }
+
+        abstract TextView textView();
+
+        abstract TextView timestampView();
+
+        abstract View reactionContainer();
+
+        abstract TextView reactionText();
+
+        /**
+         * Full bind: everything the row shows.
+         */
+        void bind(Messages message) {
+            bindText(message);
+            bindTimestamp(message);
+            bindReactions(message);
+            itemView.setTransitionName("message_" + message.getId());
+        }
+
+        /**
+         * Partial bind: only the views affected by {@code changes}.
+         */
+        void bindChanges(Messages message, Set<Payload> changes) {
+            if (changes.contains(Payload.TEXT) || changes.contains(Payload.TRANSLATION)) {
+                bindText(message);
+            }
+            if (changes.contains(Payload.EDITED)) {
+                bindTimestamp(message);
+            }
+            if (changes.contains(Payload.REACTION)) {
+                bindReactions(message);
             }
         }
-    }
-    
-    class SentMessageViewHolder extends RecyclerView.ViewHolder {
-        private final ItemSentMessageBinding binding;
 
-        SentMessageViewHolder(ItemSentMessageBinding binding) {
-            super(binding.getRoot());
-            this.binding = binding;
+        void bindText(Messages message) {
+            TextView view = textView();
+            String text = displayText(message);
+            if (textParams == null) {
+                textParams = TextViewCompat.getTextMetricsParams(view);
+                textParamsByViewType.put(getItemViewType(), textParams);
+            }
+            PrecomputedTextCompat precomputed = message == streamingMessage
+                    ? null : layoutCache.getLayout(message.getId(), text, textParams);
+            if (precomputed != null) {
+                try {
+                    TextViewCompat.setPrecomputedText(view, precomputed);
+                    return;
+                } catch (IllegalArgumentException e) {
+                    // The view's metrics changed since it was measured
+                }
+            }
+            view.setText(text);
         }
 
-        void bind(final Messages message, final int position) {
-            binding.messageText.setText(message.getText());
-            binding.messageTimestamp.setText(timeFormat.format(message.getTimestamp()));
-            
-            // Show reactions if any
-            if (messageReactions.containsKey(message.getId()) && !messageReactions.get(message.getId()).isEmpty()) {
-                binding.reactionContainer.setVisibility(View.VISIBLE);
-                binding.reactionText.setText(String.join(" ", messageReactions.get(message.getId())));
+        void bindTimestamp(Messages message) {
+            timestampView().setText(displayTimestamp(message));
+        }
+
+        void bindReactions(Messages message) {
+            List<String> reactions = messageReactions.get(message.getId());
+            if (reactions != null && !reactions.isEmpty()) {
+                reactionContainer().setVisibility(View.VISIBLE);
+                reactionText().setText(String.join(" ", reactions));
             } else {
-                binding.reactionContainer.setVisibility(View.GONE);
+                reactionContainer().setVisibility(View.GONE);
             }
+        }
 
-            binding.messageCard.setOnClickListener(v -> {
-                if (clickListener != null) {
-                    clickListener.onMessageClick(message, position);
+        /**
+         * Returns the message this row currently shows, or null while it is being removed.
+         */
+        Messages boundMessage() {
+            int position = getAdapterPosition();
+            return position == RecyclerView.NO_POSITION ? null : messageList.get(position);
+        }
+
+        void setUpClicks(View card, boolean showReactions) {
+            card.setOnClickListener(v -> {
+                Messages message = boundMessage();
+                if (message != null && clickListener != null) {
+                    if (showReactions) {
+                        showReactionBottomSheet(message);
+                    }
+                    clickListener.onMessageClick(message, getAdapterPosition());
                 }
             });
 
-            binding.messageCard.setOnLongClickListener(v -> {
-                showMessageOptions(message, position, binding.messageCard);
+            card.setOnLongClickListener(v -> {
+                Messages message = boundMessage();
+                if (message != null) {
+                    showMessageOptions(message, getAdapterPosition(), card);
+                }
                 return true;
             });
-
-            binding.messageCard.setTransitionName("message_" + message.getId());
         }
 
-        void updateText(String text) {
-            binding.messageText.setText(text);
+        void setUpPlayButton(ImageView btnPlay) {
+            btnPlay.setOnClickListener(v -> {
+                Messages message = boundMessage();
+                if (message != null && clickListener != null) {
+                    clickListener.onVoicePlaybackRequested(message);
+
+                    // Toggle play/pause UI
+                    boolean isPlaying = btnPlay.getTag() != null &&
+                                       (boolean) btnPlay.getTag();
+                    btnPlay.setTag(!isPlaying);
+                    btnPlay.setImageResource(isPlaying ?
+                            R.drawable.ic_play : R.drawable.ic_pause);
+                }
+            });
         }
     }
 
-    class ReceivedMessageViewHolder extends RecyclerView.ViewHolder {
-        private final ItemReceivedMessageBinding binding;
+    class SentMessageViewHolder extends MessageViewHolder {
+        private final ItemSentMessageBinding binding;
 
-        ReceivedMessageViewHolder(ItemReceivedMessageBinding binding) {
+        SentMessageViewHolder(ItemSentMessageBinding binding) {
             super(binding.getRoot());
             this.binding = binding;
+            setUpClicks(binding.messageCard, false);
         }
 
-        void bind(final Messages message, final int position) {
-            binding.messageText.setText(message.getText());
-            binding.messageTimestamp.setText(timeFormat.format(message.getTimestamp()));
-            
-            // Show reactions if any
-            if (messageReactions.containsKey(message.getId()) && !messageReactions.get(message.getId()).isEmpty()) {
-                binding.reactionContainer.setVisibility(View.VISIBLE);
-                binding.reactionText.setText(String.join(" ", messageReactions.get(message.getId())));
-            } else {
-                binding.reactionContainer.setVisibility(View.GONE);
-            }
-
-            binding.messageCard.setOnClickListener(v -> {
-                if (clickListener != null) {
-                    showReactionBottomSheet(message);
-                    clickListener.onMessageClick(message, position);
-                }
-            });
+        @Override TextView textView() { return binding.messageText; }
+        @Override TextView timestampView() { return binding.messageTimestamp; }
+        @Override View reactionContainer() { return binding.reactionContainer; }
+        @Override TextView reactionText() { return binding.reactionText; }
+    }
 
-            binding.messageCard.setOnLongClickListener(v -> {
-                showMessageOptions(message, position, binding.messageCard);
-                return true;
-            });
+    class ReceivedMessageViewHolder extends MessageViewHolder {
+        private final ItemReceivedMessageBinding binding;
 
-            binding.messageCard.setTransitionName("message_" + message.getId());
+        ReceivedMessageViewHolder(ItemReceivedMessageBinding binding) {
+            super(binding.getRoot());
+            this.binding = binding;
+            setUpClicks(binding.messageCard, true);
         }
 
-        void updateText(String text) {
-            binding.messageText.setText(text);
-        }
+        @Override TextView textView() { return binding.messageText; }
+        @Override TextView timestampView() { return binding.messageTimestamp; }
+        @Override View reactionContainer() { return binding.reactionContainer; }
+        @Override TextView reactionText() { return binding.reactionText; }
     }
     
-    class SentMediaViewHolder extends RecyclerView.ViewHolder {
+    class SentMediaViewHolder extends MessageViewHolder {
         private final ItemSentMediaMessageBinding binding;
 
         SentMediaViewHolder(ItemSentMediaMessageBinding binding) {
             super(binding.getRoot());
             this.binding = binding;
+            setUpClicks(binding.mediaCard, false);
         }
 
-        void bind(final Messages message, final int position) {
-            // Load image with Glide
+        @Override
+        void bind(Messages message) {
+            // Load image with Glide; only on full binds, never for text or reaction changes
             if (message.getMediaUrl() != null && !message.getMediaUrl().isEmpty()) {
                 Glide.with(context)
                     .load(message.getMediaUrl())
@@ -716,43 +1454,27 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
                     .error(R.drawable.default_background)
                     .into(binding.mediaImage);
             }
-            
-            binding.messageCaption.setText(message.getText());
-            binding.messageTimestamp.setText(timeFormat.format(message.getTimestamp()));
-            
-            // Show reactions if any
-            if (messageReactions.containsKey(message.getId()) && !messageReactions.get(message.getId()).isEmpty()) {
-                binding.reactionContainer.setVisibility(View.VISIBLE);
-                binding.reactionText.setText(String.join(" ", messageReactions.get(message.getId())));
-            } else {
-                binding.reactionContainer.setVisibility(View.GONE);
-            }
-
-            binding.mediaCard.setOnClickListener(v -> {
-                if (clickListener != null) {
-                    clickListener.onMessageClick(message, position);
-                }
-            });
-
-            binding.mediaCard.setOnLongClickListener(v -> {
-                showMessageOptions(message, position, binding.mediaCard);
-                return true;
-            });
-
-            binding.mediaCard.setTransitionName("message_" + message.getId());
+            super.bind(message);
         }
+
+        @Override TextView textView() { return binding.messageCaption; }
+        @Override TextView timestampView() { return binding.messageTimestamp; }
+        @Override View reactionContainer() { return binding.reactionContainer; }
+        @Override TextView reactionText() { return binding.reactionText; }
     }
     
-    class ReceivedMediaViewHolder extends RecyclerView.ViewHolder {
+    class ReceivedMediaViewHolder extends MessageViewHolder {
         private final ItemReceivedMediaMessageBinding binding;
 
         ReceivedMediaViewHolder(ItemReceivedMediaMessageBinding binding) {
             super(binding.getRoot());
             this.binding = binding;
+            setUpClicks(binding.mediaCard, false);
         }
 
-        void bind(final Messages message, final int position) {
-            // Load image with Glide
+        @Override
+        void bind(Messages message) {
+            // Load image with Glide; only on full binds, never for text or reaction changes
             if (message.getMediaUrl() != null && !message.getMediaUrl().isEmpty()) {
                 Glide.with(context)
                     .load(message.getMediaUrl())
@@ -760,134 +1482,55 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
                     .error(R.drawable.default_background)
                     .into(binding.mediaImage);
             }
-            
-            binding.messageCaption.setText(message.getText());
-            binding.messageTimestamp.setText(timeFormat.format(message.getTimestamp()));
-            
-            // Show reactions if any
-            if (messageReactions.containsKey(message.getId()) && !messageReactions.get(message.getId()).isEmpty()) {
-                binding.reactionContainer.setVisibility(View.VISIBLE);
-                binding.reactionText.setText(String.join(" ", messageReactions.get(message.getId())));
-            } else {
-                binding.reactionContainer.setVisibility(View.GONE);
-            }
-
-            binding.mediaCard.setOnClickListener(v -> {
-                if (clickListener != null) {
-                    clickListener.onMessageClick(message, position);
-                }
-            });
-
-            binding.mediaCard.setOnLongClickListener(v -> {
-                showMessageOptions(message, position, binding.mediaCard);
-                return true;
-            });
-
-            binding.mediaCard.setTransitionName("message_" + message.getId());
+            super.bind(message);
         }
+
+        @Override TextView textView() { return binding.messageCaption; }
+        @Override TextView timestampView() { return binding.messageTimestamp; }
+        @Override View reactionContainer() { return binding.reactionContainer; }
+        @Override TextView reactionText() { return binding.reactionText; }
     }
     
-    class SentVoiceViewHolder extends RecyclerView.ViewHolder {
+    class SentVoiceViewHolder extends MessageViewHolder {
         private final ItemSentVoiceMessageBinding binding;
 
         SentVoiceViewHolder(ItemSentVoiceMessageBinding binding) {
             super(binding.getRoot());
             this.binding = binding;
+            setUpClicks(binding.voiceCard, false);
+            setUpPlayButton(binding.btnPlay);
         }
 
-        void bind(final Messages message, final int position) {
-            binding.messageText.setText(message.getText());
-            binding.messageTimestamp.setText(timeFormat.format(message.getTimestamp()));
-            
-            // Set up play button
-            binding.btnPlay.setOnClickListener(v -> {
-                if (clickListener != null) {
-                    clickListener.onVoicePlaybackRequested(message);
-                    
-                    // Toggle play/pause UI
-                    boolean isPlaying = binding.btnPlay.getTag() != null && 
-                                       (boolean) binding.btnPlay.getTag();
-                    binding.btnPlay.setTag(!isPlaying);
-                    binding.btnPlay.setImageResource(isPlaying ? 
-                            R.drawable.ic_play : R.drawable.ic_pause);
-                }
-            });
-            
-            // Show reactions if any
-            if (messageReactions.containsKey(message.getId()) && !messageReactions.get(message.getId()).isEmpty()) {
-                binding.reactionContainer.setVisibility(View.VISIBLE);
-                binding.reactionText.setText(String.join(" ", messageReactions.get(message.getId())));
-            } else {
-                binding.reactionContainer.setVisibility(View.GONE);
-            }
-
-            binding.voiceCard.setOnClickListener(v -> {
-                if (clickListener != null) {
-                    clickListener.onMessageClick(message, position);
-                }
-            });
-
-            binding.voiceCard.setOnLongClickListener(v -> {
-                showMessageOptions(message, position, binding.voiceCard);
-                return true;
-            });
-
-            binding.voiceCard.setTransitionName("message_" + message.getId());
-        }
+        @Override TextView textView() { return binding.messageText; }
+        @Override TextView timestampView() { return binding.messageTimestamp; }
+        @Override View reactionContainer() { return binding.reactionContainer; }
+        @Override TextView reactionText() { return binding.reactionText; }
     }
     
-    class ReceivedVoiceViewHolder extends RecyclerView.ViewHolder {
+    class ReceivedVoiceViewHolder extends MessageViewHolder {
         private final ItemReceivedVoiceMessageBinding binding;
 
         ReceivedVoiceViewHolder(ItemReceivedVoiceMessageBinding binding) {
             super(binding.getRoot());
             this.binding = binding;
+            setUpClicks(binding.voiceCard, false);
+            setUpPlayButton(binding.btnPlay);
         }
 
-        void bind(final Messages message, final int position) {
-            binding.messageText.setText(message.getText());
-            binding.messageTimestamp.setText(timeFormat.format(message.getTimestamp()));
-            
-            // Set up play button
-            binding.btnPlay.setOnClickListener(v -> {
-                if (clickListener != null) {
-                    clickListener.onVoicePlaybackRequested(message);
-                    
-                    // Toggle play/pause UI
-                    boolean isPlaying = binding.btnPlay.getTag() != null && 
-                                       (boolean) binding.btnPlay.getTag();
-                    binding.btnPlay.setTag(!isPlaying);
-                    binding.btnPlay.setImageResource(isPlaying ? 
-                            R.drawable.ic_play : R.drawable.ic_pause);
-                }
-            });
-            
-            // Show reactions if any
-            if (messageReactions.containsKey(message.getId()) && !messageReactions.get(message.getId()).isEmpty()) {
-                binding.reactionContainer.setVisibility(View.VISIBLE);
-                binding.reactionText.setText(String.join(" ", messageReactions.get(message.getId())));
-            } else {
-                binding.reactionContainer.setVisibility(View.GONE);
-            }
-
-            binding.voiceCard.setOnClickListener(v -> {
-                if (clickListener != null) {
-                    clickListener.onMessageClick(message, position);
-                }
-            });
-
-            binding.voiceCard.setOnLongClickListener(v -> {
-                showMessageOptions(message, position, binding.voiceCard);
-                return true;
-            });
-
-            binding.voiceCard.setTransitionName("message_" + message.getId());
-        }
+        @Override TextView textView() { return binding.messageText; }
+        @Override TextView timestampView() { return binding.messageTimestamp; }
+        @Override View reactionContainer() { return binding.reactionContainer; }
+        @Override TextView reactionText() { return binding.reactionText; }
     }
 
     public void cleanup() {
         dismissPopup();
 
+        if (translationBatch != null) {
+            translationBatch.cancel();
+            translationBatch = null;
+        }
+
         if (backgroundExecutor != null && !backgroundExecutor.isShutdown()) {
             backgroundExecutor.shutdownNow();
             backgroundExecutor = null;
@@ -898,16 +1541,9 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
             recyclerView = null;
         }
         
-        if (textToSpeech != null) {
-            textToSpeech.stop();
-            textToSpeech.shutdown();
-            textToSpeech = null;
-        }
+        speechService.stop(this);
         
-        // Clean up translators
-        for (Translator translator : translators.values()) {
-            translator.close();
-        }
-        translators.clear();
+        layoutCache.clear();
+
     }
 }
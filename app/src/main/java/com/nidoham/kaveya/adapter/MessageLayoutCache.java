@@ -0,0 +1,83 @@
+package com.nidoham.kaveya.adapter;
+
+import android.util.LruCache;
+import androidx.core.text.PrecomputedTextCompat;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Pre-measured message text and pre-formatted timestamps for {@link ChatAdapter} rows.
+ *
+ * Rows about to scroll into view have their text measured on a background thread with
+ * {@link PrecomputedTextCompat}, so binding them only lays out glyphs that are already shaped.
+ * Entries are keyed by message id, the text view's metrics and the text itself, so an edit,
+ * translation or font change simply misses instead of showing stale text.
+ */
+class MessageLayoutCache {
+    private static final int MAX_LAYOUTS = 200;
+    private static final int MAX_TIMESTAMPS = 512;
+    private static final long MINUTE_MILLIS = 60_000;
+
+    private final LruCache<String, PrecomputedTextCompat> layouts = new LruCache<>(MAX_LAYOUTS);
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    // "HH:mm" only depends on the minute, so one entry serves every message sent in it
+    private final LruCache<Long, String> timestamps = new LruCache<>(MAX_TIMESTAMPS);
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
+
+    /**
+     * Returns the measured text for this message, or null if it has not been precomputed.
+     */
+    PrecomputedTextCompat getLayout(String messageId, CharSequence text, PrecomputedTextCompat.Params params) {
+        if (messageId == null || text == null) return null;
+        return layouts.get(key(messageId, text, params));
+    }
+
+    /**
+     * Measures {@code text} on {@code executor} unless it is cached or already being measured.
+     */
+    void prefetch(String messageId, CharSequence text, PrecomputedTextCompat.Params params, Executor executor) {
+        if (messageId == null || text == null || text.length() == 0 || executor == null) return;
+
+        String key = key(messageId, text, params);
+        if (layouts.get(key) != null || !pending.add(key)) return;
+        try {
+            executor.execute(() -> {
+                try {
+                    layouts.put(key, PrecomputedTextCompat.create(text, params));
+                } finally {
+                    pending.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The adapter is being torn down
+            pending.remove(key);
+        }
+    }
+
+    /**
+     * Returns the bubble timestamp for {@code timestamp}, formatting it at most once per minute.
+     * Main thread only.
+     */
+    String formatTime(long timestamp) {
+        long minute = Math.floorDiv(timestamp, MINUTE_MILLIS);
+        String formatted = timestamps.get(minute);
+        if (formatted == null) {
+            formatted = timeFormat.format(timestamp);
+            timestamps.put(minute, formatted);
+        }
+        return formatted;
+    }
+
+    void clear() {
+        layouts.evictAll();
+        timestamps.evictAll();
+    }
+
+    private static String key(String messageId, CharSequence text, PrecomputedTextCompat.Params params) {
+        return messageId + ':' + params.hashCode() + ':' + text.length() + ':' + text.toString().hashCode();
+    }
+}
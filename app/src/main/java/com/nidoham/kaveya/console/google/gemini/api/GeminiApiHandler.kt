@@ -2,17 +2,20 @@ package com.nidoham.kaveya.console.google.gemini.api
 
 import android.util.Log
 import com.google.ai.client.generativeai.GenerativeModel
-import com.google.ai.client.generativeai.java.ChatFutures
 import com.google.ai.client.generativeai.java.GenerativeModelFutures
 import com.google.ai.client.generativeai.type.Content
 import com.google.ai.client.generativeai.type.GenerateContentResponse
 import com.google.common.util.concurrent.FutureCallback
 import com.google.common.util.concurrent.Futures
 import com.google.common.util.concurrent.ListenableFuture
+import com.google.common.util.concurrent.MoreExecutors
 import com.nidoham.kaveya.BuildConfig
-import java.util.concurrent.ExecutorService
-import java.util.concurrent.Executors
+import com.nidoham.kaveya.console.google.gemini.context.ContextWindow
+import org.reactivestreams.Subscriber
+import org.reactivestreams.Subscription
+import java.util.concurrent.Executor
 import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicReference
 
 // Keep the original extension function since it's needed for your implementation
 fun Content.Builder.addText(text: String): Content.Builder {
@@ -20,17 +23,31 @@ fun Content.Builder.addText(text: String): Content.Builder {
     return method.invoke(this, text) as Content.Builder
 }
 
-class GeminiApiHandler(systemInstruction: String) {
-    private val executor: ExecutorService = Executors.newCachedThreadPool()
-    private val chat: ChatFutures
+/**
+ * [executor] delivers every callback, unary and streamed; stream callbacks run one at a time
+ * in arrival order. It is owned by the caller (normally the shared GeminiDispatcher worker pool)
+ * and is not shut down by [shutdown].
+ */
+class GeminiApiHandler(systemInstruction: String, private val executor: Executor) {
+    private val model: GenerativeModelFutures
     private val maxHistorySize = 10
     private var memories: MutableList<String> = mutableListOf()
-    private var shortTermHistory: MutableList<String> = mutableListOf()
+    private val history = ContextWindow()
+    @Volatile private var historyEnabled = true
     private val isShutdown = AtomicBoolean(false)
 
     companion object {
         private const val AI_MODEL = "gemini-2.5-flash-preview-04-17"
         private const val TAG = "GeminiHandlerKt"
+
+        private val NO_OP_HANDLE = RequestHandle { }
+    }
+
+    /**
+     * Handle to an in-flight request. [cancel] stops the underlying SDK future or stream.
+     */
+    fun interface RequestHandle {
+        fun cancel()
     }
 
     interface GeminiResponseCallback {
@@ -38,6 +55,16 @@ class GeminiApiHandler(systemInstruction: String) {
         fun onError(throwable: Throwable)
     }
 
+    /**
+     * Streaming variant of [GeminiResponseCallback]. [onPartial] receives each text delta in
+     * arrival order, [onSuccess] the full concatenated reply, and [onLatency] the
+     * time-to-first-token and total latency of the request in milliseconds.
+     */
+    interface GeminiStreamCallback : GeminiResponseCallback {
+        fun onPartial(delta: String)
+        fun onLatency(timeToFirstTokenMs: Long, totalMs: Long)
+    }
+
     init {
         val basePrompt = buildString {
             appendLine(systemInstruction)
@@ -47,46 +74,36 @@ class GeminiApiHandler(systemInstruction: String) {
         }
         
         val systemContent = Content.Builder().apply {
+            role = "system"
             addText(basePrompt)
         }.build()
         
-        val generativeModel = GenerativeModel(AI_MODEL, BuildConfig.GEMINI_API_KEY)
-        chat = GenerativeModelFutures.from(generativeModel).startChat(listOf(systemContent))
+        // Sent once per request as the real system instruction instead of as a chat turn
+        val generativeModel = GenerativeModel(
+            modelName = AI_MODEL,
+            apiKey = BuildConfig.GEMINI_API_KEY,
+            systemInstruction = systemContent
+        )
+        // Stateless calls: the ContextWindow carries history, so prompt size stays flat instead of
+        // replaying an ever-growing chat session on every request
+        model = GenerativeModelFutures.from(generativeModel)
     }
 
-    fun generateResponse(userInput: String, callback: GeminiResponseCallback) {
+    fun generateResponse(userInput: String, callback: GeminiResponseCallback): RequestHandle {
         if (isShutdown.get()) {
             callback.onError(IllegalStateException("GeminiApiHandler has been shut down"))
-            return
+            return NO_OP_HANDLE
         }
         
         if (userInput.trim().isEmpty()) {
             callback.onError(IllegalArgumentException("ইউজার ইনপুট খালি হতে পারে না"))
-            return
-        }
-
-        // Add to history before making the request
-        synchronized(shortTermHistory) {
-            shortTermHistory.add(userInput)
-            if (shortTermHistory.size > maxHistorySize) {
-                shortTermHistory = shortTermHistory.takeLast(maxHistorySize).toMutableList()
-            }
+            return NO_OP_HANDLE
         }
 
         try {
-            val contextText = buildContextText()
-            
-            val content = Content.Builder().apply {
-                // Add context information if available
-                if (contextText.isNotEmpty()) {
-                    addText("$contextText\n\n")
-                }
-                
-                // Add the user input
-                addText(userInput)
-            }.build()
+            val content = buildContent(userInput)
 
-            val response: ListenableFuture<GenerateContentResponse> = chat.sendMessage(content)
+            val response: ListenableFuture<GenerateContentResponse> = model.generateContent(content)
             
             Futures.addCallback(response, object : FutureCallback<GenerateContentResponse> {
                 override fun onSuccess(result: GenerateContentResponse?) {
@@ -119,6 +136,8 @@ class GeminiApiHandler(systemInstruction: String) {
                     }
                 }
             }, executor)
+
+            return RequestHandle { response.cancel(true) }
         } catch (e: Exception) {
             Log.e(TAG, "কনটেন্ট জেনারেশনের সময় ত্রুটি: ", e)
             try {
@@ -126,9 +145,140 @@ class GeminiApiHandler(systemInstruction: String) {
             } catch (callbackError: Exception) {
                 Log.e(TAG, "Error in exception callback", callbackError)
             }
+            return NO_OP_HANDLE
         }
     }
 
+    fun generateResponseStream(userInput: String, callback: GeminiStreamCallback): RequestHandle {
+        if (isShutdown.get()) {
+            callback.onError(IllegalStateException("GeminiApiHandler has been shut down"))
+            return NO_OP_HANDLE
+        }
+
+        if (userInput.trim().isEmpty()) {
+            callback.onError(IllegalArgumentException("ইউজার ইনপুট খালি হতে পারে না"))
+            return NO_OP_HANDLE
+        }
+
+        try {
+            val content = buildContent(userInput)
+            val startNanos = System.nanoTime()
+            val subscriptionRef = AtomicReference<Subscription>()
+            val cancelled = AtomicBoolean(false)
+
+            // Delivered on [executor] like unary callbacks, one at a time so deltas keep their order
+            val delivery = MoreExecutors.newSequentialExecutor(executor)
+
+            model.generateContentStream(content).subscribe(object : Subscriber<GenerateContentResponse> {
+                // Only touched from tasks on [delivery]
+                private val fullText = StringBuilder()
+                private var firstTokenNanos = 0L
+
+                override fun onSubscribe(subscription: Subscription) {
+                    subscriptionRef.set(subscription)
+                    if (cancelled.get()) {
+                        subscription.cancel()
+                        return
+                    }
+                    subscription.request(Long.MAX_VALUE)
+                }
+
+                override fun onNext(chunk: GenerateContentResponse) {
+                    val arrivedNanos = System.nanoTime()
+                    val delta = chunk.text
+                    if (delta.isNullOrEmpty()) return
+
+                    delivery.execute {
+                        if (isShutdown.get() || cancelled.get()) return@execute
+
+                        if (firstTokenNanos == 0L) {
+                            firstTokenNanos = arrivedNanos
+                        }
+                        fullText.append(delta)
+                        try {
+                            callback.onPartial(delta)
+                        } catch (e: Exception) {
+                            Log.e(TAG, "Error in partial callback", e)
+                        }
+                    }
+                }
+
+                override fun onError(t: Throwable) {
+                    delivery.execute {
+                        if (isShutdown.get() || cancelled.get()) return@execute
+
+                        Log.e(TAG, "স্ট্রিমিং রেসপন্সে ত্রুটি: ", t)
+                        try {
+                            callback.onError(t)
+                        } catch (e: Exception) {
+                            Log.e(TAG, "Error in failure callback", e)
+                        }
+                    }
+                }
+
+                override fun onComplete() {
+                    val endNanos = System.nanoTime()
+                    delivery.execute {
+                        if (isShutdown.get() || cancelled.get()) return@execute
+
+                        try {
+                            if (fullText.isEmpty()) {
+                                callback.onError(IllegalStateException("জেনারেটেড কনটেন্টে কোনো টেক্সট নেই"))
+                                return@execute
+                            }
+                            val ttftMs = (firstTokenNanos - startNanos) / 1_000_000
+                            val totalMs = (endNanos - startNanos) / 1_000_000
+                            Log.d(TAG, "Stream finished: ttft=${ttftMs}ms total=${totalMs}ms")
+                            callback.onLatency(ttftMs, totalMs)
+                            callback.onSuccess(fullText.toString())
+                        } catch (e: Exception) {
+                            Log.e(TAG, "Error in success callback", e)
+                        }
+                    }
+                }
+            })
+
+            return RequestHandle {
+                if (cancelled.compareAndSet(false, true)) {
+                    subscriptionRef.get()?.cancel()
+                }
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "কনটেন্ট জেনারেশনের সময় ত্রুটি: ", e)
+            try {
+                callback.onError(e)
+            } catch (callbackError: Exception) {
+                Log.e(TAG, "Error in exception callback", callbackError)
+            }
+            return NO_OP_HANDLE
+        }
+    }
+
+    /**
+     * Adds an answered exchange to the history. Requests never record themselves: the caller
+     * records the one reply it actually uses, so failed, cancelled, hedged-away and discarded
+     * speculative requests leave no turn behind.
+     */
+    fun recordExchange(userInput: String, reply: String) {
+        if (isShutdown.get() || !historyEnabled) return
+
+        history.addExchange(userInput, reply)
+    }
+
+    private fun buildContent(userInput: String): Content {
+        val contextText = buildContextText()
+
+        return Content.Builder().apply {
+            // Add context information if available
+            if (contextText.isNotEmpty()) {
+                addText("$contextText\n\n")
+            }
+
+            // Add the user input
+            addText(userInput)
+        }.build()
+    }
+
     private fun buildContextText(): String {
         return buildString {
             synchronized(memories) {
@@ -139,11 +289,10 @@ class GeminiApiHandler(systemInstruction: String) {
                 }
             }
             
-            synchronized(shortTermHistory) {
-                if (shortTermHistory.size > 1) { // Don't include the current message
-                    appendLine("Recent Conversation:")
-                    shortTermHistory.dropLast(1).forEach { appendLine("- $it") }
-                }
+            val conversation = history.render()
+            if (conversation.isNotEmpty()) {
+                appendLine("Recent Conversation:")
+                appendLine(conversation)
             }
         }.trim()
     }
@@ -151,11 +300,17 @@ class GeminiApiHandler(systemInstruction: String) {
     fun addToConversationHistory(history: List<String>) {
         if (isShutdown.get()) return
         
-        synchronized(shortTermHistory) {
-            shortTermHistory.addAll(history.takeLast(maxHistorySize))
-            if (shortTermHistory.size > maxHistorySize) {
-                shortTermHistory = shortTermHistory.takeLast(maxHistorySize).toMutableList()
-            }
+        this.history.addFormattedTurns(history)
+    }
+
+    /**
+     * Enables or disables the handler's own conversation history. Callers that render their
+     * own context into each prompt should disable it so turns are not sent twice.
+     */
+    fun setHistoryEnabled(enabled: Boolean) {
+        historyEnabled = enabled
+        if (!enabled) {
+            history.clear()
         }
     }
 
@@ -180,16 +335,6 @@ class GeminiApiHandler(systemInstruction: String) {
     }
 
     fun shutdown() {
-        if (isShutdown.compareAndSet(false, true)) {
-            try {
-                executor.shutdown()
-                if (!executor.awaitTermination(5, java.util.concurrent.TimeUnit.SECONDS)) {
-                    executor.shutdownNow()
-                }
-            } catch (e: InterruptedException) {
-                executor.shutdownNow()
-                Thread.currentThread().interrupt()
-            }
-        }
+        isShutdown.set(true)
     }
 }
\ No newline at end of file
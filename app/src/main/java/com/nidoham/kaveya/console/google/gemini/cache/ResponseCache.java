@@ -0,0 +1,179 @@
+package com.nidoham.kaveya.console.google.gemini.cache;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * LRU cache of model replies for small, idempotent prompts such as reaction taps and greetings.
+ *
+ * Keys combine the normalized user input with a caller-supplied context fingerprint, so the same
+ * reaction emoji on any message, or the same greeting, under the same persona hits the cache.
+ * Entries are evicted by size (least recently used first) and by TTL.
+ */
+public class ResponseCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 64;
+    public static final long DEFAULT_TTL_MILLIS = 10 * 60 * 1000L;
+
+    private static final char KEY_SEPARATOR = '\u0001';
+
+    private static final Set<String> GREETINGS = new HashSet<>(Arrays.asList(
+        "hi", "hii", "hello", "hey", "heyy", "hola", "yo",
+        "good morning", "good afternoon", "good evening", "good night", "gm", "gn",
+        "assalamualaikum", "salam", "হাই", "হ্যালো", "শুভ সকাল", "শুভ রাত্রি"
+    ));
+
+    private static final class Entry {
+        final String response;
+        final long expiresAt;
+
+        Entry(String response, long expiresAt) {
+            this.response = response;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> entries;
+    private volatile boolean enabled = true;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public ResponseCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS);
+    }
+
+    public ResponseCache(int maxEntries, long ttlMillis) {
+        if (maxEntries <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("Cache size and TTL must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > ResponseCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Normalizes user input for use in a cache key: trims, lower-cases, collapses whitespace and
+     * drops trailing punctuation, so "Hi!!" and " hi " share an entry.
+     */
+    @Nonnull
+    public static String normalize(@Nonnull String input) {
+        String collapsed = input.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+        int end = collapsed.length();
+        while (end > 0 && isTrailingPunctuation(collapsed.charAt(end - 1))) {
+            end--;
+        }
+        return end > 0 ? collapsed.substring(0, end) : collapsed;
+    }
+
+    /**
+     * Builds the cache key for an input under a context fingerprint.
+     */
+    @Nonnull
+    public static String key(@Nonnull String input, @Nullable String contextFingerprint) {
+        return normalize(input) + KEY_SEPARATOR + (contextFingerprint != null ? contextFingerprint : "");
+    }
+
+    /**
+     * Returns whether the input is a short greeting whose reply does not depend on the conversation.
+     */
+    public static boolean isGreeting(@Nonnull String input) {
+        return GREETINGS.contains(normalize(input));
+    }
+
+    /**
+     * Returns the cached response for {@code key}, or null on a miss or when the cache is disabled.
+     */
+    @Nullable
+    public synchronized String get(@Nonnull String key) {
+        if (!enabled) return null;
+
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            entries.remove(key);
+            evictions++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.response;
+    }
+
+    /**
+     * Stores a response under {@code key}.
+     */
+    public synchronized void put(@Nonnull String key, @Nonnull String response) {
+        if (!enabled || key == null || response == null || response.isEmpty()) return;
+
+        long now = System.currentTimeMillis();
+        purgeExpired(now);
+        entries.put(key, new Entry(response, now + ttlMillis));
+    }
+
+    /**
+     * Enables or disables the cache. While disabled every lookup bypasses it.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    private void purgeExpired(long now) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expiresAt <= now) {
+                iterator.remove();
+                evictions++;
+            }
+        }
+    }
+
+    private static boolean isTrailingPunctuation(char c) {
+        return c == '!' || c == '?' || c == '.' || c == ',' || c == '~' || c == '।';
+    }
+}
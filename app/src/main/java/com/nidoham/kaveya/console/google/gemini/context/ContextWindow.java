@@ -0,0 +1,277 @@
+package com.nidoham.kaveya.console.google.gemini.context;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import javax.annotation.Nonnull;
+
+/**
+ * Token-budgeted conversation window.
+ *
+ * Recent turns are kept verbatim while they fit {@code maxRecentTokens}. Older turns are
+ * folded into a rolling extractive summary capped at {@code maxSummaryTokens}, so the rendered
+ * context stays roughly the same size however long the conversation runs. Consecutive
+ * duplicate turns and re-sent history are ignored.
+ *
+ * All methods are thread-safe.
+ */
+public class ContextWindow {
+
+    public static final String USER = "User";
+    public static final String AI = "AI";
+
+    public static final int DEFAULT_MAX_RECENT_TOKENS = 1500;
+    public static final int DEFAULT_MAX_SUMMARY_TOKENS = 300;
+
+    private static final int SUMMARY_LINE_CHARS = 160;
+    private static final String SUMMARY_HEADER = "Earlier in the conversation:";
+    private static final String RECENT_HEADER = "Recent conversation:";
+
+    /**
+     * Counts tokens for a piece of text.
+     */
+    public interface TokenCounter {
+        int countTokens(@Nonnull String text);
+    }
+
+    /**
+     * Offline estimate: roughly four ASCII characters per token and two characters per token
+     * for other scripts such as Bengali, which the Gemini tokenizer splits more finely.
+     */
+    public static final TokenCounter ESTIMATING_COUNTER = text -> {
+        int ascii = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) < 0x80) {
+                ascii++;
+            } else {
+                other++;
+            }
+        }
+        return (ascii + 3) / 4 + (other + 1) / 2;
+    };
+
+    private static final class Turn {
+        final String speaker;
+        final String text;
+        final int tokens;
+
+        Turn(String speaker, String text, int tokens) {
+            this.speaker = speaker;
+            this.text = text;
+            this.tokens = tokens;
+        }
+
+        boolean sameAs(String otherSpeaker, String otherText) {
+            return speaker.equals(otherSpeaker) && text.equals(otherText);
+        }
+    }
+
+    private final int maxRecentTokens;
+    private final int maxSummaryTokens;
+    private final TokenCounter tokenCounter;
+    private final Deque<Turn> recentTurns = new ArrayDeque<>();
+    private final Deque<String> summaryLines = new ArrayDeque<>();
+    private final Deque<Integer> summaryLineTokens = new ArrayDeque<>();
+    private int recentTokens = 0;
+    private int summaryTokens = 0;
+
+    public ContextWindow() {
+        this(DEFAULT_MAX_RECENT_TOKENS, DEFAULT_MAX_SUMMARY_TOKENS, ESTIMATING_COUNTER);
+    }
+
+    public ContextWindow(int maxRecentTokens, int maxSummaryTokens) {
+        this(maxRecentTokens, maxSummaryTokens, ESTIMATING_COUNTER);
+    }
+
+    public ContextWindow(int maxRecentTokens, int maxSummaryTokens, @Nonnull TokenCounter tokenCounter) {
+        if (maxRecentTokens <= 0 || maxSummaryTokens < 0) {
+            throw new IllegalArgumentException("Token budgets must be positive");
+        }
+        if (tokenCounter == null) {
+            throw new IllegalArgumentException("Token counter cannot be null");
+        }
+        this.maxRecentTokens = maxRecentTokens;
+        this.maxSummaryTokens = maxSummaryTokens;
+        this.tokenCounter = tokenCounter;
+    }
+
+    /**
+     * Adds a user turn.
+     */
+    public void addUserTurn(@Nonnull String text) {
+        addTurn(USER, text);
+    }
+
+    /**
+     * Adds a model turn.
+     */
+    public void addAiTurn(@Nonnull String text) {
+        addTurn(AI, text);
+    }
+
+    /**
+     * Adds an answered user turn and its reply together, so turns of concurrent requests
+     * cannot interleave between them.
+     */
+    public synchronized void addExchange(@Nonnull String userText, @Nonnull String aiText) {
+        addTurn(USER, userText);
+        addTurn(AI, aiText);
+    }
+
+    /**
+     * Adds a turn, ignoring it if it repeats the most recent turn.
+     */
+    public synchronized void addTurn(@Nonnull String speaker, @Nonnull String text) {
+        if (speaker == null || text == null) return;
+        String trimmed = text.trim();
+        if (trimmed.isEmpty()) return;
+
+        Turn last = recentTurns.peekLast();
+        if (last != null && last.sameAs(speaker, trimmed)) {
+            return;
+        }
+
+        Turn turn = new Turn(speaker, trimmed, tokenCounter.countTokens(speaker + ": " + trimmed) + 1);
+        recentTurns.addLast(turn);
+        recentTokens += turn.tokens;
+        evictOverBudget();
+    }
+
+    /**
+     * Appends lines in {@code "Speaker: text"} form. If the lines re-send history already held
+     * in the window, only the part after the overlap is added.
+     */
+    public synchronized void addFormattedTurns(@Nonnull List<String> lines) {
+        if (lines == null || lines.isEmpty()) return;
+
+        List<Turn> parsed = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            if (line == null || line.trim().isEmpty()) continue;
+            parsed.add(parse(line));
+        }
+
+        int skip = overlapWithTail(parsed);
+        for (int i = skip; i < parsed.size(); i++) {
+            addTurn(parsed.get(i).speaker, parsed.get(i).text);
+        }
+    }
+
+    /**
+     * Renders the summary and recent turns as prompt context, or an empty string if the
+     * window is empty.
+     */
+    @Nonnull
+    public synchronized String render() {
+        StringBuilder out = new StringBuilder();
+        if (!summaryLines.isEmpty()) {
+            out.append(SUMMARY_HEADER).append('\n');
+            for (String line : summaryLines) {
+                out.append("- ").append(line).append('\n');
+            }
+            out.append('\n');
+        }
+        if (!recentTurns.isEmpty()) {
+            if (out.length() > 0) {
+                out.append(RECENT_HEADER).append('\n');
+            }
+            for (Turn turn : recentTurns) {
+                out.append(turn.speaker).append(": ").append(turn.text).append('\n');
+            }
+        }
+        return out.toString().trim();
+    }
+
+    /**
+     * Returns the verbatim turns currently in the window as {@code "Speaker: text"} lines.
+     */
+    @Nonnull
+    public synchronized List<String> getRecentTurns() {
+        List<String> lines = new ArrayList<>(recentTurns.size());
+        for (Turn turn : recentTurns) {
+            lines.add(turn.speaker + ": " + turn.text);
+        }
+        return lines;
+    }
+
+    /**
+     * Returns the estimated token count of everything {@link #render()} would emit.
+     */
+    public synchronized int getTokenCount() {
+        return recentTokens + summaryTokens;
+    }
+
+    public synchronized boolean isEmpty() {
+        return recentTurns.isEmpty() && summaryLines.isEmpty();
+    }
+
+    public synchronized void clear() {
+        recentTurns.clear();
+        summaryLines.clear();
+        summaryLineTokens.clear();
+        recentTokens = 0;
+        summaryTokens = 0;
+    }
+
+    private void evictOverBudget() {
+        // Always keep the newest turn verbatim, even if it alone exceeds the budget
+        while (recentTokens > maxRecentTokens && recentTurns.size() > 1) {
+            Turn evicted = recentTurns.removeFirst();
+            recentTokens -= evicted.tokens;
+            foldIntoSummary(evicted);
+        }
+    }
+
+    private void foldIntoSummary(Turn turn) {
+        if (maxSummaryTokens == 0) return;
+
+        String text = turn.text.replace('\n', ' ');
+        if (text.length() > SUMMARY_LINE_CHARS) {
+            text = text.substring(0, SUMMARY_LINE_CHARS).trim() + "…";
+        }
+        String line = turn.speaker + ": " + text;
+        int tokens = tokenCounter.countTokens(line) + 1;
+
+        summaryLines.addLast(line);
+        summaryLineTokens.addLast(tokens);
+        summaryTokens += tokens;
+
+        while (summaryTokens > maxSummaryTokens && !summaryLines.isEmpty()) {
+            summaryLines.removeFirst();
+            summaryTokens -= summaryLineTokens.removeFirst();
+        }
+    }
+
+    /**
+     * Returns how many leading entries of {@code incoming} are already in the window, by finding
+     * the latest point where the window's tail lines up with the incoming list.
+     */
+    private int overlapWithTail(List<Turn> incoming) {
+        if (recentTurns.isEmpty()) return 0;
+
+        List<Turn> held = new ArrayList<>(recentTurns);
+        for (int end = incoming.size(); end > 0; end--) {
+            int length = Math.min(end, held.size());
+            boolean matches = true;
+            for (int i = 1; i <= length && matches; i++) {
+                Turn heldTurn = held.get(held.size() - i);
+                Turn newTurn = incoming.get(end - i);
+                matches = heldTurn.sameAs(newTurn.speaker, newTurn.text);
+            }
+            if (matches) {
+                return end;
+            }
+        }
+        return 0;
+    }
+
+    private static Turn parse(String line) {
+        String trimmed = line.trim();
+        int separator = trimmed.indexOf(": ");
+        if (separator > 0 && separator <= 10) {
+            return new Turn(trimmed.substring(0, separator), trimmed.substring(separator + 2).trim(), 0);
+        }
+        return new Turn(USER, trimmed, 0);
+    }
+}
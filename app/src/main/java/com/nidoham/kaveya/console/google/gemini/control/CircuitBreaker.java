@@ -0,0 +1,110 @@
+package com.nidoham.kaveya.console.google.gemini.control;
+
+import android.util.Log;
+
+/**
+ * Fails Gemini calls fast while the API is degraded.
+ *
+ * After {@code failureThreshold} consecutive retryable failures the breaker opens and rejects
+ * calls for {@code openMillis}. It then lets a single probe through (half-open); the probe's
+ * outcome closes the breaker or opens it again.
+ */
+public class CircuitBreaker {
+    private static final String TAG = "CircuitBreaker";
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openedAt = 0;
+    private boolean probeInFlight = false;
+    private long rejectedCount = 0;
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        if (failureThreshold <= 0 || openMillis <= 0) {
+            throw new IllegalArgumentException("Failure threshold and open duration must be positive");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * What {@link #acquire()} granted.
+     */
+    public enum Permit {
+        REJECTED,
+        ALLOWED,
+        /** The single half-open probe; its holder must record an outcome or {@link #releaseProbe()}. */
+        PROBE
+    }
+
+    /**
+     * Returns whether a call may go out now. In the half-open state only one probe is allowed.
+     */
+    public boolean allowRequest() {
+        return acquire() != Permit.REJECTED;
+    }
+
+    /**
+     * Like {@link #allowRequest()}, also telling the caller whether it was given the half-open probe.
+     */
+    public synchronized Permit acquire() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+            state = State.HALF_OPEN;
+            probeInFlight = false;
+        }
+        switch (state) {
+            case CLOSED:
+                return Permit.ALLOWED;
+            case HALF_OPEN:
+                if (!probeInFlight) {
+                    probeInFlight = true;
+                    return Permit.PROBE;
+                }
+                rejectedCount++;
+                return Permit.REJECTED;
+            default:
+                rejectedCount++;
+                return Permit.REJECTED;
+        }
+    }
+
+    public synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            Log.i(TAG, "Circuit closed");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        probeInFlight = false;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            if (state != State.OPEN) {
+                Log.w(TAG, "Circuit opened after " + consecutiveFailures + " failures");
+            }
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            probeInFlight = false;
+        }
+    }
+
+    /**
+     * Releases a half-open probe slot without counting an outcome, e.g. when the probe was
+     * cancelled. Only the holder of the {@link Permit#PROBE} may call this.
+     */
+    public synchronized void releaseProbe() {
+        probeInFlight = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+}
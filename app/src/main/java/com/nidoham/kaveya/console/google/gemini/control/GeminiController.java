@@ -2,14 +2,17 @@ package com.nidoham.kaveya.console.google.gemini.control;
 
 import android.util.Log;
 import com.nidoham.kaveya.console.google.gemini.api.GeminiApiHandler;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nonnull;
 
 /**
@@ -20,12 +23,16 @@ import javax.annotation.Nonnull;
 public class GeminiController implements AutoCloseable {
     private static final String TAG = "GeminiController";
     public static final long DEFAULT_TIMEOUT_SECONDS = 30;
+    public static final long NO_REQUEST = -1;
 
     private final GeminiApiHandler handler;
+    private final GeminiTransport transport;
+    private final ResiliencePolicy policy;
     private final long timeoutSeconds;
     private final AtomicBoolean isShutdown = new AtomicBoolean(false);
-    private final ScheduledExecutorService timeoutExecutor;
-    private final AtomicReference<ScheduledFuture<?>> currentTimeoutTask = new AtomicReference<>();
+    private final GeminiDispatcher dispatcher;
+    private final AtomicLong nextRequestId = new AtomicLong(1);
+    private final Map<Long, PendingRequest> pendingRequests = new ConcurrentHashMap<>();
 
     /**
      * Simple callback interface for Gemini operations
@@ -33,6 +40,16 @@ public class GeminiController implements AutoCloseable {
     public interface GeminiCallback {
         void onSuccess(@Nonnull String result);
         void onError(@Nonnull Throwable error);
+
+        /**
+         * Called with each text delta when the response is streamed.
+         */
+        default void onPartial(@Nonnull String delta) {}
+
+        /**
+         * Called once a streamed response finishes, before {@link #onSuccess(String)}.
+         */
+        default void onLatency(long timeToFirstTokenMs, long totalMs) {}
     }
 
     /**
@@ -46,65 +63,104 @@ public class GeminiController implements AutoCloseable {
      * Creates a new GeminiController with specified timeout.
      */
     public GeminiController(@Nonnull String systemInstruction, long timeoutSeconds) {
+        this(systemInstruction, timeoutSeconds, ResiliencePolicy.DEFAULT);
+    }
+
+    /**
+     * Creates a new GeminiController with specified timeout and retry/breaker policy.
+     */
+    public GeminiController(@Nonnull String systemInstruction, long timeoutSeconds,
+                            @Nonnull ResiliencePolicy policy) {
+        this(systemInstruction, timeoutSeconds, policy, null);
+    }
+
+    /**
+     * Creates a new GeminiController that sends attempts through {@code transport} instead of
+     * the Gemini SDK, e.g. a fake backend in tests.
+     */
+    public GeminiController(@Nonnull String systemInstruction, long timeoutSeconds,
+                            @Nonnull ResiliencePolicy policy, GeminiTransport transport) {
         validateParameters(systemInstruction, timeoutSeconds);
-        this.handler = new GeminiApiHandler(systemInstruction);
+        if (policy == null) {
+            throw new IllegalArgumentException("Resilience policy cannot be null");
+        }
+        this.dispatcher = GeminiDispatcher.getInstance();
+        this.handler = new GeminiApiHandler(systemInstruction, dispatcher.getWorkerExecutor());
+        this.transport = transport != null ? transport : (input, callback, streaming) -> streaming
+                ? handler.generateResponseStream(input, callback)
+                : handler.generateResponse(input, callback);
+        this.policy = policy;
         this.timeoutSeconds = timeoutSeconds;
-        this.timeoutExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
-            Thread t = new Thread(r, "GeminiTimeout");
-            t.setDaemon(true);
-            return t;
-        });
     }
 
     /**
      * Generates an AI response with callback.
+     *
+     * @return The ID of the registered request, usable with {@link #cancelRequest(long)},
+     *         or {@link #NO_REQUEST} if the call was rejected. Calls are rejected with a
+     *         {@link RejectedExecutionException} while the shared dispatcher is at capacity.
+     */
+    public long generateResponse(@Nonnull String userInput, @Nonnull GeminiCallback callback) {
+        return dispatch(userInput, callback, false, true);
+    }
+
+    /**
+     * Generates an AI response as a token stream. Deltas are delivered through
+     * {@link GeminiCallback#onPartial(String)} and the complete text through
+     * {@link GeminiCallback#onSuccess(String)}.
+     *
+     * @return The ID of the registered request, or {@link #NO_REQUEST} if the call was rejected
+     */
+    public long generateResponseStream(@Nonnull String userInput, @Nonnull GeminiCallback callback) {
+        return dispatch(userInput, callback, true, true);
+    }
+
+    /**
+     * Like {@link #generateResponseStream(String, GeminiCallback)}, for a speculative request
+     * whose reply may be thrown away. The exchange is not added to the conversation history;
+     * call {@link #recordExchange(String, String)} once the reply is actually used.
+     *
+     * @return The ID of the registered request, or {@link #NO_REQUEST} if the call was rejected
+     */
+    public long generateSpeculativeResponseStream(@Nonnull String userInput, @Nonnull GeminiCallback callback) {
+        return dispatch(userInput, callback, true, false);
+    }
+
+    /**
+     * Registers a request with its own deadline on the shared timer and sends its first attempt.
      */
-    public void generateResponse(@Nonnull String userInput, @Nonnull GeminiCallback callback) {
+    private long dispatch(String userInput, GeminiCallback callback, boolean streaming, boolean recordHistory) {
+        PendingRequest request = null;
         try {
             checkShutdown();
             validateUserInput(userInput);
+            if (!dispatcher.tryAcquire()) {
+                throw new RejectedExecutionException("Too many Gemini requests in flight: "
+                        + dispatcher.getStats());
+            }
 
-            // Create a wrapper callback to handle timeout cancellation
-            final AtomicBoolean completed = new AtomicBoolean(false);
-            
-            GeminiApiHandler.GeminiResponseCallback wrappedCallback = new GeminiApiHandler.GeminiResponseCallback() {
-                @Override
-                public void onSuccess(@Nonnull String result) {
-                    if (completed.compareAndSet(false, true)) {
-                        cancelCurrentTimeout();
-                        try {
-                            callback.onSuccess(result);
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error in success callback", e);
-                        }
-                    }
-                }
+            request = new PendingRequest(nextRequestId.getAndIncrement(), userInput, callback, streaming, recordHistory);
+            pendingRequests.put(request.id, request);
 
-                @Override
-                public void onError(@Nonnull Throwable throwable) {
-                    if (completed.compareAndSet(false, true)) {
-                        cancelCurrentTimeout();
-                        try {
-                            callback.onError(throwable);
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error in error callback", e);
-                        }
-                    }
-                }
-            };
+            // Schedule the deadline before making the request; it covers every retry
+            PendingRequest scheduled = request;
+            request.timeoutTask = dispatcher.schedule(scheduled::timeout, timeoutSeconds, TimeUnit.SECONDS);
 
-            // Schedule timeout before making the request
-            scheduleTimeout(callback, completed);
-            
-            // Make the request
-            handler.generateResponse(userInput, wrappedCallback);
+            request.start();
 
+            return request.id;
         } catch (Exception e) {
+            if (request != null) {
+                // Unregisters the request and clears its deadline before reporting
+                request.fail(e);
+                return NO_REQUEST;
+            }
             try {
                 callback.onError(e);
             } catch (Exception callbackError) {
                 Log.e(TAG, "Error in exception callback", callbackError);
             }
+            return NO_REQUEST;
         }
     }
 
@@ -121,6 +177,32 @@ public class GeminiController implements AutoCloseable {
         }
     }
 
+    /**
+     * Adds a reply the caller used to the conversation history, for requests sent with
+     * {@link #generateSpeculativeResponseStream(String, GeminiCallback)}.
+     */
+    public void recordExchange(@Nonnull String userInput, @Nonnull String reply) {
+        try {
+            checkShutdown();
+            handler.recordExchange(userInput, reply);
+        } catch (Exception e) {
+            Log.e(TAG, "Error recording exchange", e);
+        }
+    }
+
+    /**
+     * Enables or disables the handler's own conversation history. Disable it when the caller
+     * already renders conversation context into each prompt.
+     */
+    public void setHistoryEnabled(boolean enabled) {
+        try {
+            checkShutdown();
+            handler.setHistoryEnabled(enabled);
+        } catch (Exception e) {
+            Log.e(TAG, "Error changing history mode", e);
+        }
+    }
+
     /**
      * Adds memories.
      */
@@ -149,35 +231,6 @@ public class GeminiController implements AutoCloseable {
         }
     }
 
-    /**
-     * Schedules a timeout for the current operation.
-     */
-    private void scheduleTimeout(GeminiCallback callback, AtomicBoolean completed) {
-        if (isShutdown.get()) return;
-        
-        ScheduledFuture<?> timeoutTask = timeoutExecutor.schedule(() -> {
-            if (completed.compareAndSet(false, true)) {
-                try {
-                    callback.onError(new TimeoutException("Operation timed out after " + timeoutSeconds + " seconds"));
-                } catch (Exception e) {
-                    Log.e(TAG, "Error in timeout callback", e);
-                }
-            }
-        }, timeoutSeconds, TimeUnit.SECONDS);
-        
-        currentTimeoutTask.set(timeoutTask);
-    }
-
-    /**
-     * Cancels the current timeout task.
-     */
-    private void cancelCurrentTimeout() {
-        ScheduledFuture<?> task = currentTimeoutTask.getAndSet(null);
-        if (task != null && !task.isDone()) {
-            task.cancel(false);
-        }
-    }
-
     /**
      * Validates the constructor parameters.
      */
@@ -218,10 +271,55 @@ public class GeminiController implements AutoCloseable {
     }
 
     /**
-     * Cancels any ongoing operations.
+     * Cancels a single in-flight request. Its SDK call is cancelled and its callback
+     * receives a {@link CancellationException}.
+     *
+     * @return true if the request was still in flight
+     */
+    public boolean cancelRequest(long requestId) {
+        PendingRequest request = pendingRequests.get(requestId);
+        return request != null && request.cancel();
+    }
+
+    /**
+     * Cancels all ongoing operations.
      */
     public void cancelOperation() {
-        cancelCurrentTimeout();
+        for (PendingRequest request : new ArrayList<>(pendingRequests.values())) {
+            request.cancel();
+        }
+    }
+
+    /**
+     * Cancels all in-flight requests without notifying their callbacks.
+     */
+    private void discardAll() {
+        for (PendingRequest request : new ArrayList<>(pendingRequests.values())) {
+            request.discard();
+        }
+    }
+
+    /**
+     * Returns the number of requests that have not yet completed, failed or timed out.
+     */
+    public int getInFlightCount() {
+        return pendingRequests.size();
+    }
+
+    /**
+     * Returns the retry, breaker and hedging policy applied to this controller's requests.
+     */
+    @Nonnull
+    public ResiliencePolicy getResiliencePolicy() {
+        return policy;
+    }
+
+    /**
+     * Returns the metrics of the dispatcher shared by all controllers.
+     */
+    @Nonnull
+    public static GeminiDispatcher.Stats getDispatcherStats() {
+        return GeminiDispatcher.getInstance().getStats();
     }
 
     /**
@@ -231,25 +329,11 @@ public class GeminiController implements AutoCloseable {
     public void close() {
         if (isShutdown.compareAndSet(false, true)) {
             try {
-                // Cancel any pending timeout
-                cancelCurrentTimeout();
+                // Cancel every in-flight request and its deadline; callers are going away
+                discardAll();
                 
-                // Shutdown handler
+                // Shutdown handler; the shared dispatcher threads outlive this controller
                 handler.shutdown();
-                
-                // Shutdown timeout executor
-                timeoutExecutor.shutdown();
-                try {
-                    if (!timeoutExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
-                        timeoutExecutor.shutdownNow();
-                        if (!timeoutExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
-                            Log.w(TAG, "Timeout executor did not terminate gracefully");
-                        }
-                    }
-                } catch (InterruptedException e) {
-                    timeoutExecutor.shutdownNow();
-                    Thread.currentThread().interrupt();
-                }
             } catch (Exception e) {
                 Log.e(TAG, "Error during shutdown", e);
             }
@@ -270,4 +354,297 @@ public class GeminiController implements AutoCloseable {
     public boolean isShutdown() {
         return isShutdown.get();
     }
-}
\ No newline at end of file
+
+    /**
+     * A registered in-flight request. Exactly one of success, error, timeout or cancellation
+     * reaches the caller; whichever happens first unregisters the request, clears its timers
+     * and cancels every attempt still running.
+     */
+    private final class PendingRequest {
+        final long id;
+        private final String userInput;
+        private final GeminiCallback callback;
+        private final boolean streaming;
+        private final boolean recordHistory;
+        private final long deadlineNanos;
+        private final AtomicBoolean completed = new AtomicBoolean(false);
+        private final AtomicBoolean streamStarted = new AtomicBoolean(false);
+        // One of this request's attempts holds the breaker's half-open probe and has no outcome yet
+        private final AtomicBoolean holdsProbe = new AtomicBoolean(false);
+        private final List<Attempt> outstanding = new ArrayList<>();
+        private int attemptCount = 0;
+        volatile ScheduledFuture<?> timeoutTask;
+        private volatile ScheduledFuture<?> retryTask;
+        private volatile ScheduledFuture<?> hedgeTask;
+
+        PendingRequest(long id, String userInput, GeminiCallback callback, boolean streaming,
+                       boolean recordHistory) {
+            this.id = id;
+            this.userInput = userInput;
+            this.callback = callback;
+            this.streaming = streaming;
+            this.recordHistory = recordHistory;
+            this.deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        }
+
+        void start() {
+            sendAttempt();
+            // Hedging duplicates the whole call, so it is limited to non-streaming requests
+            if (!streaming && policy.isHedgingEnabled() && policy.getMaxAttempts() > 1) {
+                hedgeTask = dispatcher.schedule(this::hedge, policy.getHedgeDelayMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        /**
+         * Sends one more attempt through the transport.
+         *
+         * @throws RejectedExecutionException if the circuit breaker is open
+         */
+        private void sendAttempt() {
+            if (completed.get()) return;
+            CircuitBreaker breaker = policy.getCircuitBreaker();
+            if (breaker != null) {
+                CircuitBreaker.Permit permit = breaker.acquire();
+                if (permit == CircuitBreaker.Permit.REJECTED) {
+                    throw new RejectedExecutionException("Gemini circuit breaker is open");
+                }
+                if (permit == CircuitBreaker.Permit.PROBE) {
+                    holdsProbe.set(true);
+                }
+            }
+            Attempt attempt = new Attempt();
+            synchronized (this) {
+                attemptCount++;
+                outstanding.add(attempt);
+            }
+            attempt.attach(transport.send(userInput, attempt, streaming));
+        }
+
+        private void hedge() {
+            synchronized (this) {
+                if (completed.get() || outstanding.isEmpty() || attemptCount >= policy.getMaxAttempts()) {
+                    return;
+                }
+            }
+            try {
+                Log.d(TAG, "Request " + id + " is slow, sending hedged attempt");
+                sendAttempt();
+            } catch (RejectedExecutionException e) {
+                // Breaker is open; keep waiting on the attempt already in flight
+            } catch (Exception e) {
+                Log.e(TAG, "Error sending hedged attempt", e);
+            }
+        }
+
+        private void retry(Throwable previous) {
+            if (completed.get()) return;
+            try {
+                sendAttempt();
+            } catch (RejectedExecutionException e) {
+                fail(previous);
+            } catch (Exception e) {
+                fail(e);
+            }
+        }
+
+        void timeout() {
+            CircuitBreaker breaker = policy.getCircuitBreaker();
+            if (!completed.get() && breaker != null) {
+                holdsProbe.set(false);
+                breaker.recordFailure();
+            }
+            fail(new TimeoutException("Operation timed out after " + timeoutSeconds + " seconds"));
+        }
+
+        boolean cancel() {
+            if (!completed.get()) {
+                releaseProbe();
+            }
+            return fail(new CancellationException("Request " + id + " was cancelled"));
+        }
+
+        void discard() {
+            if (finish()) {
+                releaseProbe();
+                cancelOutstanding();
+            }
+        }
+
+        /**
+         * Gives the half-open probe back if this request holds it, so a request that ends without
+         * an outcome does not keep the breaker half-open forever. Other requests leave it alone.
+         */
+        private void releaseProbe() {
+            CircuitBreaker breaker = policy.getCircuitBreaker();
+            if (breaker != null && holdsProbe.getAndSet(false)) {
+                breaker.releaseProbe();
+            }
+        }
+
+        private boolean finish() {
+            if (!completed.compareAndSet(false, true)) {
+                return false;
+            }
+            pendingRequests.remove(id);
+            dispatcher.release();
+            cancelTask(timeoutTask);
+            cancelTask(retryTask);
+            cancelTask(hedgeTask);
+            return true;
+        }
+
+        private void cancelTask(ScheduledFuture<?> task) {
+            if (task != null) {
+                task.cancel(false);
+            }
+        }
+
+        private void cancelOutstanding() {
+            List<Attempt> running;
+            synchronized (this) {
+                running = new ArrayList<>(outstanding);
+                outstanding.clear();
+            }
+            for (Attempt attempt : running) {
+                attempt.cancel();
+            }
+        }
+
+        boolean fail(Throwable error) {
+            if (!finish()) {
+                return false;
+            }
+            cancelOutstanding();
+            try {
+                callback.onError(error);
+            } catch (Exception e) {
+                Log.e(TAG, "Error in error callback", e);
+            }
+            return true;
+        }
+
+        void onAttemptPartial(String delta) {
+            if (completed.get()) return;
+            streamStarted.set(true);
+            try {
+                callback.onPartial(delta);
+            } catch (Exception e) {
+                Log.e(TAG, "Error in partial callback", e);
+            }
+        }
+
+        void onAttemptLatency(long timeToFirstTokenMs, long totalMs) {
+            if (completed.get()) return;
+            try {
+                callback.onLatency(timeToFirstTokenMs, totalMs);
+            } catch (Exception e) {
+                Log.e(TAG, "Error in latency callback", e);
+            }
+        }
+
+        void onAttemptSuccess(Attempt winner, String result) {
+            synchronized (this) {
+                outstanding.remove(winner);
+            }
+            if (!finish()) return;
+            CircuitBreaker breaker = policy.getCircuitBreaker();
+            if (breaker != null) {
+                holdsProbe.set(false);
+                breaker.recordSuccess();
+            }
+            // A hedged copy may still be running
+            cancelOutstanding();
+            if (recordHistory) {
+                // Only the winning attempt's reply becomes part of the conversation
+                handler.recordExchange(userInput, result);
+            }
+            try {
+                callback.onSuccess(result);
+            } catch (Exception e) {
+                Log.e(TAG, "Error in success callback", e);
+            }
+        }
+
+        void onAttemptError(Attempt attempt, Throwable error) {
+            boolean retryable = policy.isRetryable(error);
+            CircuitBreaker breaker = policy.getCircuitBreaker();
+            if (breaker != null) {
+                holdsProbe.set(false);
+                if (retryable) {
+                    breaker.recordFailure();
+                } else {
+                    // The API answered, so it is not degraded; the request itself was bad
+                    breaker.recordSuccess();
+                }
+            }
+
+            int attempts;
+            synchronized (this) {
+                outstanding.remove(attempt);
+                if (completed.get() || !outstanding.isEmpty()) {
+                    // Already settled, or a hedged copy can still succeed
+                    return;
+                }
+                attempts = attemptCount;
+            }
+
+            if (!retryable || attempts >= policy.getMaxAttempts() || streamStarted.get()) {
+                fail(error);
+                return;
+            }
+            long delayMillis = policy.getRetryDelayMillis(attempts, error);
+            if (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis) >= deadlineNanos) {
+                fail(error);
+                return;
+            }
+            Log.w(TAG, "Request " + id + " attempt " + attempts + " failed, retrying in "
+                    + delayMillis + "ms: " + error.getMessage());
+            retryTask = dispatcher.schedule(() -> retry(error), delayMillis, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * One transport call made on behalf of the request. Callbacks from a cancelled attempt are dropped.
+         */
+        private final class Attempt implements GeminiApiHandler.GeminiStreamCallback {
+            private final AtomicBoolean cancelled = new AtomicBoolean(false);
+            private volatile GeminiApiHandler.RequestHandle handle;
+
+            void attach(GeminiApiHandler.RequestHandle handle) {
+                this.handle = handle;
+                // The attempt may have been cancelled before the handle existed
+                if (cancelled.get()) {
+                    handle.cancel();
+                }
+            }
+
+            void cancel() {
+                if (cancelled.compareAndSet(false, true)) {
+                    GeminiApiHandler.RequestHandle current = handle;
+                    if (current != null) {
+                        current.cancel();
+                    }
+                }
+            }
+
+            @Override
+            public void onPartial(@Nonnull String delta) {
+                if (!cancelled.get()) onAttemptPartial(delta);
+            }
+
+            @Override
+            public void onLatency(long timeToFirstTokenMs, long totalMs) {
+                if (!cancelled.get()) onAttemptLatency(timeToFirstTokenMs, totalMs);
+            }
+
+            @Override
+            public void onSuccess(@Nonnull String result) {
+                if (!cancelled.get()) onAttemptSuccess(this, result);
+            }
+
+            @Override
+            public void onError(@Nonnull Throwable throwable) {
+                if (!cancelled.get()) onAttemptError(this, throwable);
+            }
+        }
+    }
+}
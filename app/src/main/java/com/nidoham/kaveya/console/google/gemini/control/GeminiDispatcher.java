@@ -0,0 +1,169 @@
+package com.nidoham.kaveya.console.google.gemini.control;
+
+import android.util.Log;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+
+/**
+ * Process-wide threads for every Gemini handler and controller.
+ *
+ * One bounded worker pool delivers SDK callbacks and one timer thread runs all request
+ * deadlines, however many engines and screens exist. Requests are admitted against a global
+ * in-flight limit; once it is reached new requests are rejected instead of queueing without
+ * bound. The threads are daemons and live for the whole process, so nothing here is ever shut down.
+ */
+public final class GeminiDispatcher {
+    private static final String TAG = "GeminiDispatcher";
+
+    public static final int MAX_WORKER_THREADS = 4;
+    public static final int MAX_IN_FLIGHT = 16;
+    private static final long WORKER_KEEP_ALIVE_SECONDS = 30;
+
+    private static final class Holder {
+        static final GeminiDispatcher INSTANCE = new GeminiDispatcher(MAX_WORKER_THREADS, MAX_IN_FLIGHT);
+    }
+
+    /**
+     * Point-in-time dispatcher metrics.
+     */
+    public static final class Stats {
+        public final int inFlight;
+        public final int peakInFlight;
+        public final long admitted;
+        public final long rejected;
+        public final int workerThreads;
+        public final int workerQueueDepth;
+        public final int pendingTimers;
+
+        Stats(int inFlight, int peakInFlight, long admitted, long rejected,
+              int workerThreads, int workerQueueDepth, int pendingTimers) {
+            this.inFlight = inFlight;
+            this.peakInFlight = peakInFlight;
+            this.admitted = admitted;
+            this.rejected = rejected;
+            this.workerThreads = workerThreads;
+            this.workerQueueDepth = workerQueueDepth;
+            this.pendingTimers = pendingTimers;
+        }
+
+        @Override
+        public String toString() {
+            return "inFlight=" + inFlight + " peak=" + peakInFlight + " admitted=" + admitted
+                    + " rejected=" + rejected + " workers=" + workerThreads
+                    + " queued=" + workerQueueDepth + " timers=" + pendingTimers;
+        }
+    }
+
+    private final int maxInFlight;
+    private final ThreadPoolExecutor workers;
+    private final ScheduledThreadPoolExecutor timer;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    private GeminiDispatcher(int maxWorkerThreads, int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        // Every admitted request delivers at most a few callbacks, so a queue twice the
+        // in-flight limit is never outgrown; if it ever is, the submitting thread runs the task
+        this.workers = new ThreadPoolExecutor(
+                maxWorkerThreads, maxWorkerThreads,
+                WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(maxInFlight * 2),
+                daemonFactory("GeminiWorker"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.workers.allowCoreThreadTimeOut(true);
+
+        this.timer = new ScheduledThreadPoolExecutor(1, daemonFactory("GeminiTimer"));
+        // Cancelled deadlines are dropped from the queue right away instead of lingering until they fire
+        this.timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Returns the shared dispatcher.
+     */
+    @Nonnull
+    public static GeminiDispatcher getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Returns the bounded executor that delivers SDK callbacks.
+     */
+    @Nonnull
+    public Executor getWorkerExecutor() {
+        return workers;
+    }
+
+    /**
+     * Schedules {@code task} on the shared timer.
+     */
+    @Nonnull
+    public ScheduledFuture<?> schedule(@Nonnull Runnable task, long delay, @Nonnull TimeUnit unit) {
+        return timer.schedule(task, delay, unit);
+    }
+
+    /**
+     * Reserves an in-flight slot for a new request. Every successful call must be paired with
+     * exactly one {@link #release()}.
+     *
+     * @return false if the in-flight limit has been reached and the request should be rejected
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= maxInFlight) {
+                rejected.incrementAndGet();
+                Log.w(TAG, "Rejecting request, " + current + " already in flight");
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                admitted.incrementAndGet();
+                peakInFlight.accumulateAndGet(current + 1, Math::max);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases a slot reserved by {@link #tryAcquire()}.
+     */
+    public void release() {
+        if (inFlight.decrementAndGet() < 0) {
+            inFlight.set(0);
+            Log.w(TAG, "Released more requests than were admitted");
+        }
+    }
+
+    /**
+     * Returns the current metrics.
+     */
+    @Nonnull
+    public Stats getStats() {
+        return new Stats(
+                inFlight.get(),
+                peakInFlight.get(),
+                admitted.get(),
+                rejected.get(),
+                workers.getPoolSize(),
+                workers.getQueue().size(),
+                timer.getQueue().size());
+    }
+
+    private static ThreadFactory daemonFactory(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,32 @@
+package com.nidoham.kaveya.console.google.gemini.control;
+
+/**
+ * A failed Gemini call with a known HTTP status and an optional server retry hint.
+ */
+public class GeminiStatusException extends RuntimeException {
+    public static final long NO_RETRY_HINT = -1;
+
+    private final int statusCode;
+    private final long retryAfterMillis;
+
+    public GeminiStatusException(int statusCode, String message) {
+        this(statusCode, NO_RETRY_HINT, message);
+    }
+
+    public GeminiStatusException(int statusCode, long retryAfterMillis, String message) {
+        super("HTTP " + statusCode + ": " + message);
+        this.statusCode = statusCode;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Returns how long the server asked callers to wait, or {@link #NO_RETRY_HINT}.
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
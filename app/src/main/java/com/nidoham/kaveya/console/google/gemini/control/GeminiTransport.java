@@ -0,0 +1,16 @@
+package com.nidoham.kaveya.console.google.gemini.control;
+
+import com.nidoham.kaveya.console.google.gemini.api.GeminiApiHandler;
+import javax.annotation.Nonnull;
+
+/**
+ * Sends one attempt of a Gemini request. The default transport is the SDK-backed
+ * {@link GeminiApiHandler}; the unit tests replace it with a scripted fake backend to exercise
+ * the resilience policy offline.
+ */
+public interface GeminiTransport {
+    @Nonnull
+    GeminiApiHandler.RequestHandle send(@Nonnull String userInput,
+                                        @Nonnull GeminiApiHandler.GeminiStreamCallback callback,
+                                        boolean streaming);
+}
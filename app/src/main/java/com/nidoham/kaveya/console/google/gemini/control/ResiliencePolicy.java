@@ -0,0 +1,195 @@
+package com.nidoham.kaveya.console.google.gemini.control;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.Nonnull;
+
+/**
+ * Retry, backoff, circuit breaker and hedging settings for {@link GeminiController}.
+ *
+ * Retryable failures (429, 5xx, SDK quota/timeout/server errors, network I/O) are retried with
+ * exponential backoff and full jitter, waiting at least as long as any retry-after hint the
+ * server sent. All attempts share the controller's overall timeout. Streams are only retried
+ * before their first delta, so text is never delivered twice.
+ */
+public class ResiliencePolicy {
+
+    /** The policy used by default; its circuit breaker is shared by every controller using it. */
+    public static final ResiliencePolicy DEFAULT = new Builder().build();
+
+    /** A single attempt with no breaker and no hedging. */
+    public static final ResiliencePolicy NONE = new Builder()
+            .setMaxAttempts(1)
+            .setCircuitBreaker(null)
+            .build();
+
+    private static final Pattern RETRY_DELAY_PATTERN =
+            Pattern.compile("\"?retryDelay\"?\\s*[:=]\\s*\"?(\\d+(?:\\.\\d+)?)s");
+    private static final Pattern RETRY_AFTER_PATTERN =
+            Pattern.compile("(?i)retry-after\\s*[:=]\\s*(\\d+)");
+    private static final Pattern STATUS_PATTERN =
+            Pattern.compile("\"code\"\\s*:\\s*(\\d{3})|HTTP (\\d{3})");
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final long hedgeDelayMillis;
+    private final CircuitBreaker circuitBreaker;
+
+    private ResiliencePolicy(Builder builder) {
+        this.maxAttempts = builder.maxAttempts;
+        this.baseDelayMillis = builder.baseDelayMillis;
+        this.maxDelayMillis = builder.maxDelayMillis;
+        this.hedgeDelayMillis = builder.hedgeDelayMillis;
+        this.circuitBreaker = builder.circuitBreaker;
+    }
+
+    public static class Builder {
+        private int maxAttempts = 3;
+        private long baseDelayMillis = 500;
+        private long maxDelayMillis = 8000;
+        private long hedgeDelayMillis = 0;
+        private CircuitBreaker circuitBreaker = new CircuitBreaker(5, 30_000);
+
+        /**
+         * Total attempts including the first. 1 disables retries.
+         */
+        public Builder setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        public Builder setBackoff(long baseDelayMillis, long maxDelayMillis) {
+            this.baseDelayMillis = baseDelayMillis;
+            this.maxDelayMillis = maxDelayMillis;
+            return this;
+        }
+
+        /**
+         * Sends a second copy of a non-streaming request if the first has not answered after
+         * {@code hedgeDelayMillis}; the first reply wins. 0 disables hedging.
+         */
+        public Builder setHedgeDelay(long hedgeDelayMillis) {
+            this.hedgeDelayMillis = hedgeDelayMillis;
+            return this;
+        }
+
+        /**
+         * Sets the breaker consulted before every attempt, or null for none.
+         */
+        public Builder setCircuitBreaker(CircuitBreaker circuitBreaker) {
+            this.circuitBreaker = circuitBreaker;
+            return this;
+        }
+
+        /**
+         * Returns a new policy; the builder can keep being changed and reused afterwards.
+         */
+        public ResiliencePolicy build() {
+            if (maxAttempts < 1) {
+                throw new IllegalStateException("At least one attempt is required");
+            }
+            if (baseDelayMillis < 0 || maxDelayMillis < baseDelayMillis) {
+                throw new IllegalStateException("Invalid backoff delays");
+            }
+            if (hedgeDelayMillis < 0) {
+                throw new IllegalStateException("Hedge delay cannot be negative");
+            }
+            return new ResiliencePolicy(this);
+        }
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getHedgeDelayMillis() {
+        return hedgeDelayMillis;
+    }
+
+    public boolean isHedgingEnabled() {
+        return hedgeDelayMillis > 0;
+    }
+
+    /**
+     * Returns the circuit breaker, or null if none is configured.
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Returns whether {@code error} is worth retrying: throttling, server-side failures,
+     * timeouts and network I/O. Client errors, blocked prompts and cancellations are not.
+     */
+    public boolean isRetryable(@Nonnull Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof GeminiStatusException) {
+                return isRetryableStatus(((GeminiStatusException) t).getStatusCode());
+            }
+            if (t instanceof IOException) {
+                return true;
+            }
+            // Matched by name so the policy does not depend on the SDK's exception hierarchy
+            String name = t.getClass().getSimpleName();
+            if (name.equals("QuotaExceededException") || name.equals("RequestTimeoutException")) {
+                return true;
+            }
+            if (name.equals("ServerException")) {
+                int status = parseStatus(t.getMessage());
+                return status < 0 || isRetryableStatus(status);
+            }
+            if (t.getCause() == t) break;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the delay before attempt {@code attempt} (1-based count of attempts already made):
+     * full-jitter exponential backoff, but never less than the server's retry-after hint.
+     */
+    public long getRetryDelayMillis(int attempt, @Nonnull Throwable error) {
+        long exponential = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 20));
+        long jittered = exponential > 0 ? ThreadLocalRandom.current().nextLong(exponential + 1) : 0;
+        return Math.max(jittered, getRetryAfterMillis(error));
+    }
+
+    /**
+     * Returns the retry-after hint carried by {@code error}, or 0 if there is none.
+     */
+    public static long getRetryAfterMillis(@Nonnull Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof GeminiStatusException) {
+                long hint = ((GeminiStatusException) t).getRetryAfterMillis();
+                if (hint > 0) return hint;
+            }
+            String message = t.getMessage();
+            if (message != null) {
+                Matcher delay = RETRY_DELAY_PATTERN.matcher(message);
+                if (delay.find()) {
+                    return (long) (Double.parseDouble(delay.group(1)) * 1000);
+                }
+                Matcher after = RETRY_AFTER_PATTERN.matcher(message);
+                if (after.find()) {
+                    return Long.parseLong(after.group(1)) * 1000;
+                }
+            }
+            if (t.getCause() == t) break;
+        }
+        return 0;
+    }
+
+    private static boolean isRetryableStatus(int status) {
+        return status == 408 || status == 429 || status == 500 || status == 502
+                || status == 503 || status == 504;
+    }
+
+    private static int parseStatus(String message) {
+        if (message == null) return -1;
+        Matcher matcher = STATUS_PATTERN.matcher(message);
+        if (!matcher.find()) return -1;
+        return Integer.parseInt(matcher.group(1) != null ? matcher.group(1) : matcher.group(2));
+    }
+}
@@ -1,10 +1,20 @@
 package com.nidoham.kaveya.console.google.gemini.engine;
 
 import android.util.Log;
+import androidx.annotation.VisibleForTesting;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
 import com.nidoham.kaveya.AdministrationLogger;
+import com.nidoham.kaveya.console.google.gemini.cache.ResponseCache;
+import com.nidoham.kaveya.console.google.gemini.context.ContextWindow;
 import com.nidoham.kaveya.console.google.gemini.control.GeminiController;
+import com.nidoham.kaveya.console.google.gemini.prompt.memories.MemoriesUpdate;
+import com.nidoham.kaveya.console.google.gemini.template.AICompanionTemplate;
 import com.nidoham.kaveya.console.google.gemini.template.AIGirlfriendPromptTemplate;
 import com.nidoham.kaveya.liberies.SketchwareUtil;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import javax.annotation.Nonnull;
@@ -19,10 +29,33 @@ public class ChatsEngine implements AutoCloseable {
     
     private static final String TAG = "ChatsEngine";
     private static final String DEFAULT_SYSTEM_INSTRUCTION = "**AI Girlfriend Chatbot Prompt Template**";
+
+    /**
+     * Returned by {@link #sendCachedMessage} when the reply was served from the response cache
+     * and no request was sent.
+     */
+    public static final long CACHED_REQUEST = 0;
+    
+    /**
+     * Where the static persona/constraints sections of the prompt travel.
+     */
+    public enum PromptMode {
+        /** Full template (static and per-turn sections) resent inside every user message. */
+        INLINE,
+        /** Static sections set once as the model's system instruction; only task and context per turn. */
+        SYSTEM_INSTRUCTION
+    }
     
     private final GeminiController controller;
-    private final List<String> conversationHistory;
+    private final ContextWindow contextWindow;
     private final AIGirlfriendPromptTemplate promptTemplate;
+    private final AICompanionTemplate companionTemplate;
+    private final Gson gson = new Gson();
+    private static final Type MEMORY_LIST_TYPE = new TypeToken<List<String>>() {}.getType();
+    private volatile String currentMemories = "";
+    private final PromptMode promptMode;
+    private volatile int lastPromptBytes = 0;
+    private final ResponseCache responseCache = new ResponseCache();
 
     /**
      * Callback interface for chat operations.
@@ -30,41 +63,79 @@ public class ChatsEngine implements AutoCloseable {
     public interface ChatCallback {
         void onResponse(@Nonnull String response);
         void onError(@Nonnull Throwable error);
+
+        /**
+         * Called with each text delta when using {@link #sendMessageStream}.
+         */
+        default void onPartial(@Nonnull String delta) {}
+    }
+
+    /**
+     * Callback for {@link #sendMessageWithMemories}, which returns the reply and the
+     * updated memory list from a single model call.
+     */
+    public interface MemoryAwareCallback extends ChatCallback {
+        void onMemoriesUpdated(@Nonnull List<String> memories);
+
+        /**
+         * Called when the response carried no parsable memory list, so the caller can
+         * fall back to a separate extraction off the reply's critical path.
+         */
+        void onMemoriesUnavailable();
     }
     
     /**
      * Creates a new ChatsEngine with AI girlfriend functionality.
      */
     public ChatsEngine() {
+        this(PromptMode.SYSTEM_INSTRUCTION);
+    }
+
+    /**
+     * Creates a new ChatsEngine that sends the static prompt sections according to {@code promptMode}.
+     */
+    public ChatsEngine(@Nonnull PromptMode promptMode) {
+        this(promptMode, new GeminiController(promptMode == PromptMode.SYSTEM_INSTRUCTION
+                ? AIGirlfriendPromptTemplate.getSystemInstruction()
+                : DEFAULT_SYSTEM_INSTRUCTION, 30)); // timeout 30s
+    }
+
+    /**
+     * Creates a ChatsEngine on top of {@code controller}, e.g. one backed by a fake transport in tests.
+     */
+    @VisibleForTesting
+    ChatsEngine(@Nonnull PromptMode promptMode, @Nonnull GeminiController controller) {
+        this.promptMode = promptMode;
         this.promptTemplate = new AIGirlfriendPromptTemplate();
-        this.controller = new GeminiController(DEFAULT_SYSTEM_INSTRUCTION, 30); // timeout 30s
-        this.conversationHistory = new ArrayList<>();
+        this.companionTemplate = new AICompanionTemplate();
+        this.controller = controller;
+        this.contextWindow = new ContextWindow();
+        // The context window is rendered into every prompt, so the handler must not add its own copy
+        this.controller.setHistoryEnabled(false);
     }
 
     /**
      * Sends a user message and receives an AI response using the girlfriend prompt template.
+     *
+     * @return The request ID, usable with {@link #cancel(long)}
      */
-    public void sendMessage(@Nonnull String message, @Nonnull ChatCallback callback) {
+    public long sendMessage(@Nonnull String message, @Nonnull ChatCallback callback) {
         try {
             validateInput(message);
             
-            // Add user message to history
-            conversationHistory.add("User: " + message);
-            
-            // Generate context from conversation history
+            // Generate context from conversation history; the message itself goes in the task
+            // section and joins the history only once it has been answered
             String context = buildConversationContext();
             
             // Generate the AI girlfriend prompt
-            String enhancedPrompt = promptTemplate.generatePrompt(message, context);
+            String enhancedPrompt = buildPrompt(message, context);
 
             // Generate response using GeminiController
-            controller.generateResponse(enhancedPrompt, new GeminiController.GeminiCallback() {
+            return controller.generateResponse(enhancedPrompt, new GeminiController.GeminiCallback() {
                 @Override
                 public void onSuccess(@Nonnull String result) {
-                    // Add AI response to history
-                    conversationHistory.add("AI: " + result);
-                    // Update controller's conversation history
-                    controller.addToConversationHistory(conversationHistory);
+                    // Add the exchange to history
+                    contextWindow.addExchange(message, result);
                     callback.onResponse(result);
                 }
 
@@ -77,35 +148,319 @@ public class ChatsEngine implements AutoCloseable {
         } catch (Exception e) {
             Log.e(TAG, "Error sending message", e);
             callback.onError(e);
+            return GeminiController.NO_REQUEST;
+        }
+    }
+
+    /**
+     * Sends a user message and streams the AI response back through
+     * {@link ChatCallback#onPartial(String)} before delivering the full reply.
+     *
+     * @return The request ID, usable with {@link #cancel(long)}
+     */
+    public long sendMessageStream(@Nonnull String message, @Nonnull ChatCallback callback) {
+        try {
+            validateInput(message);
+            
+            String context = buildConversationContext();
+            String enhancedPrompt = buildPrompt(message, context);
+
+            return controller.generateResponseStream(enhancedPrompt, new GeminiController.GeminiCallback() {
+                @Override
+                public void onPartial(@Nonnull String delta) {
+                    callback.onPartial(delta);
+                }
+
+                @Override
+                public void onLatency(long timeToFirstTokenMs, long totalMs) {
+                    Log.d(TAG, "Streamed response: first token " + timeToFirstTokenMs
+                            + "ms, total " + totalMs + "ms");
+                }
+
+                @Override
+                public void onSuccess(@Nonnull String result) {
+                    contextWindow.addExchange(message, result);
+                    callback.onResponse(result);
+                }
+
+                @Override
+                public void onError(@Nonnull Throwable error) {
+                    Log.e(TAG, "Error streaming response", error);
+                    callback.onError(error);
+                }
+            });
+        } catch (Exception e) {
+            Log.e(TAG, "Error sending message", e);
+            callback.onError(e);
+            return GeminiController.NO_REQUEST;
+        }
+    }
+
+    /**
+     * Sends a short, idempotent message such as a reaction or greeting, answering from the
+     * response cache when the same input was seen under the same context fingerprint. A hit is
+     * delivered synchronously as a single {@link ChatCallback#onPartial(String)} followed by
+     * {@link ChatCallback#onResponse(String)}; a miss streams like {@link #sendMessageStream}
+     * and caches the reply.
+     *
+     * @param contextFingerprint What kind of canned turn this is, e.g. "reaction" or "greeting";
+     *                           the reply depends on it and the input, not on the conversation
+     * @return The request ID, or {@link #CACHED_REQUEST} on a cache hit
+     */
+    public long sendCachedMessage(@Nonnull String message, @Nonnull String contextFingerprint,
+                                  @Nonnull ChatCallback callback) {
+        try {
+            validateInput(message);
+
+            String key = ResponseCache.key(message, buildCacheFingerprint(contextFingerprint));
+            String cached = responseCache.get(key);
+            if (cached != null) {
+                Log.d(TAG, "Response cache hit (" + responseCache.getHitCount() + " hits, "
+                        + responseCache.getMissCount() + " misses)");
+                contextWindow.addExchange(message, cached);
+                callback.onPartial(cached);
+                callback.onResponse(cached);
+                return CACHED_REQUEST;
+            }
+
+            return sendMessageStream(message, new ChatCallback() {
+                @Override
+                public void onPartial(@Nonnull String delta) {
+                    callback.onPartial(delta);
+                }
+
+                @Override
+                public void onResponse(@Nonnull String response) {
+                    responseCache.put(key, response);
+                    callback.onResponse(response);
+                }
+
+                @Override
+                public void onError(@Nonnull Throwable error) {
+                    callback.onError(error);
+                }
+            });
+        } catch (Exception e) {
+            Log.e(TAG, "Error sending cached message", e);
+            callback.onError(e);
+            return GeminiController.NO_REQUEST;
+        }
+    }
+
+    /**
+     * Combines the caller's fingerprint with the prompt mode. The memory list is left out on
+     * purpose: it can change after every turn, and a reaction or greeting reply does not depend
+     * on it enough to justify a fresh model call each time.
+     */
+    private String buildCacheFingerprint(String contextFingerprint) {
+        return promptMode.name() + ':' + contextFingerprint;
+    }
+
+    /**
+     * Returns the response cache, for hit/miss metrics or to bypass it with
+     * {@link ResponseCache#setEnabled(boolean)}.
+     */
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Sends a user message and streams back the reply together with the updated memory
+     * list in one round trip. Only the reply part is forwarded to
+     * {@link ChatCallback#onPartial(String)}; the memory list after
+     * {@link MemoriesUpdate#MEMORY_MARKER} is parsed once the response completes.
+     *
+     * @return The request ID, usable with {@link #cancel(long)}
+     */
+    public long sendMessageWithMemories(@Nonnull String message, @Nonnull MemoryAwareCallback callback) {
+        try {
+            validateInput(message);
+            
+            String context = buildConversationContext();
+            String enhancedPrompt = buildPromptWithMemories(message, context);
+            MemoryMarkerFilter filter = new MemoryMarkerFilter();
+
+            return controller.generateResponseStream(enhancedPrompt, new GeminiController.GeminiCallback() {
+                @Override
+                public void onPartial(@Nonnull String delta) {
+                    String visible = filter.accept(delta);
+                    if (!visible.isEmpty()) {
+                        callback.onPartial(visible);
+                    }
+                }
+
+                @Override
+                public void onLatency(long timeToFirstTokenMs, long totalMs) {
+                    Log.d(TAG, "Combined response: first token " + timeToFirstTokenMs
+                            + "ms, total " + totalMs + "ms");
+                }
+
+                @Override
+                public void onSuccess(@Nonnull String result) {
+                    int markerIndex = result.indexOf(MemoriesUpdate.MEMORY_MARKER);
+                    String reply = (markerIndex >= 0 ? result.substring(0, markerIndex) : result).trim();
+                    List<String> memories = markerIndex >= 0
+                            ? parseMemories(result.substring(markerIndex + MemoriesUpdate.MEMORY_MARKER.length()))
+                            : null;
+
+                    contextWindow.addExchange(message, reply);
+                    callback.onResponse(reply);
+
+                    if (memories != null) {
+                        callback.onMemoriesUpdated(memories);
+                    } else {
+                        callback.onMemoriesUnavailable();
+                    }
+                }
+
+                @Override
+                public void onError(@Nonnull Throwable error) {
+                    Log.e(TAG, "Error generating combined response", error);
+                    callback.onError(error);
+                }
+            });
+        } catch (Exception e) {
+            Log.e(TAG, "Error sending message", e);
+            callback.onError(e);
+            return GeminiController.NO_REQUEST;
+        }
+    }
+
+    /**
+     * Parses the JSON memory list that follows the memory marker, or returns null if it is malformed.
+     */
+    private List<String> parseMemories(String raw) {
+        String json = raw.trim();
+        if (json.startsWith("```")) {
+            int start = json.indexOf('[');
+            int end = json.lastIndexOf(']');
+            json = (start >= 0 && end > start) ? json.substring(start, end + 1) : "";
+        }
+        if (json.isEmpty()) {
+            return null;
+        }
+        try {
+            List<String> memories = gson.fromJson(json, MEMORY_LIST_TYPE);
+            return memories != null ? memories : new ArrayList<>();
+        } catch (JsonParseException e) {
+            Log.w(TAG, "Could not parse memory list from response", e);
+            return null;
         }
     }
 
     /**
-     * Builds conversation context from recent history.
+     * Holds back streamed text that could be the start of the memory marker so that the
+     * memory list never reaches the UI.
+     */
+    private static final class MemoryMarkerFilter {
+        private final StringBuilder raw = new StringBuilder();
+        private int emitted = 0;
+        private boolean markerSeen = false;
+
+        String accept(String delta) {
+            if (markerSeen) return "";
+            raw.append(delta);
+
+            int searchFrom = Math.max(0, emitted - MemoriesUpdate.MEMORY_MARKER.length());
+            int markerIndex = raw.indexOf(MemoriesUpdate.MEMORY_MARKER, searchFrom);
+            int safeEnd;
+            if (markerIndex >= 0) {
+                markerSeen = true;
+                safeEnd = markerIndex;
+            } else {
+                safeEnd = Math.max(emitted, raw.length() - MemoriesUpdate.MEMORY_MARKER.length() + 1);
+            }
+
+            String visible = raw.substring(emitted, safeEnd);
+            emitted = safeEnd;
+            return visible;
+        }
+    }
+
+    /**
+     * Builds the per-message prompt for the current {@link PromptMode}.
+     */
+    private String buildPrompt(String message, String context) {
+        String prompt = promptMode == PromptMode.SYSTEM_INSTRUCTION
+                ? promptTemplate.generateTurnPrompt(message, context)
+                : promptTemplate.generatePrompt(message, context);
+        String memories = currentMemories;
+        if (!memories.isEmpty()) {
+            // This template has no memory section, so the memories lead the prompt
+            prompt = "Memories:\n- " + memories + "\n\n" + prompt;
+        }
+        recordPromptSize(prompt);
+        return prompt;
+    }
+
+    /**
+     * Builds the per-message prompt including the memory update section.
+     */
+    private String buildPromptWithMemories(String message, String context) {
+        String prompt = promptMode == PromptMode.SYSTEM_INSTRUCTION
+                ? companionTemplate.generateTurnPrompt(message, context, currentMemories)
+                : companionTemplate.generatePrompt(message, context, currentMemories);
+        recordPromptSize(prompt);
+        return prompt;
+    }
+
+    private void recordPromptSize(String prompt) {
+        int bytes = prompt.getBytes(StandardCharsets.UTF_8).length;
+        lastPromptBytes = bytes;
+        if (promptMode == PromptMode.SYSTEM_INSTRUCTION) {
+            Log.d(TAG, "Prompt bytes this turn: " + bytes + " (inline mode would add "
+                    + getStaticPromptBytes() + " bytes of static sections)");
+        } else {
+            Log.d(TAG, "Prompt bytes this turn: " + bytes);
+        }
+    }
+
+    /**
+     * Returns the UTF-8 size of the prompt sent with the most recent message.
+     */
+    public int getLastPromptBytes() {
+        return lastPromptBytes;
+    }
+
+    /**
+     * Returns the UTF-8 size of the static sections that {@link PromptMode#SYSTEM_INSTRUCTION}
+     * sends once instead of on every turn.
+     */
+    public static int getStaticPromptBytes() {
+        return StaticPromptSize.BYTES;
+    }
+
+    private static final class StaticPromptSize {
+        static final int BYTES = AIGirlfriendPromptTemplate.getSystemInstruction()
+                .getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /**
+     * Returns how the static prompt sections are sent.
+     */
+    public PromptMode getPromptMode() {
+        return promptMode;
+    }
+
+    /**
+     * Builds conversation context from the token-budgeted window: a rolling summary of
+     * older turns followed by the recent turns verbatim.
      */
     private String buildConversationContext() {
-        if (conversationHistory.isEmpty()) {
+        if (contextWindow.isEmpty()) {
             return "Beginning of conversation";
         }
-        
-        StringBuilder context = new StringBuilder();
-        // Get last 5 exchanges for context (or all if less than 5)
-        int startIndex = Math.max(0, conversationHistory.size() - 10);
-        
-        for (int i = startIndex; i < conversationHistory.size(); i++) {
-            context.append(conversationHistory.get(i)).append("\n");
-        }
-        
-        return context.toString().trim();
+        return contextWindow.render();
     }
 
     /**
-     * Adds a memory to the conversation context.
+     * Sets the memories rendered into every prompt. The engine renders them itself rather than
+     * handing them to the controller, since the combined template already embeds them.
      */
     public void addMemory(@Nonnull String memory) {
         try {
             validateInput(memory);
-            controller.setMemories(memory);
+            currentMemories = memory;
         } catch (Exception e) {
             Log.e(TAG, "Error adding memory", e);
         }
@@ -116,8 +471,7 @@ public class ChatsEngine implements AutoCloseable {
      */
     public void clearConversation() {
         try {
-            conversationHistory.clear();
-            controller.addToConversationHistory(conversationHistory);
+            contextWindow.clear();
         } catch (Exception e) {
             Log.e(TAG, "Error clearing conversation", e);
         }
@@ -127,7 +481,7 @@ public class ChatsEngine implements AutoCloseable {
      * Gets the current conversation history.
      */
     public List<String> getConversationHistory() {
-        return new ArrayList<>(conversationHistory);
+        return contextWindow.getRecentTurns();
     }
 
     /**
@@ -139,6 +493,13 @@ public class ChatsEngine implements AutoCloseable {
         }
     }
 
+    /**
+     * Cancels a single chat request by the ID returned from one of the send methods.
+     */
+    public boolean cancel(long requestId) {
+        return controller.cancelRequest(requestId);
+    }
+
     /**
      * Cancels any ongoing chat operations.
      */
@@ -157,7 +518,7 @@ public class ChatsEngine implements AutoCloseable {
     public void close() {
         try {
             controller.close();
-            conversationHistory.clear();
+            contextWindow.clear();
         } catch (Exception e) {
             Log.e(TAG, "Error closing ChatsEngine", e);
         }
@@ -46,11 +46,20 @@ public class Context {
      */
     @NonNull
     public static String getInstructionsPrompt(@NonNull String contextDetails) {
-        String processedContext = (contextDetails != null && !contextDetails.isBlank()) 
+        return String.format(CONTEXT_PROMPT_TEMPLATE, processContext(contextDetails));
+    }
+    
+    /**
+     * Applies the same trimming and default substitution as {@link #getInstructionsPrompt(String)}.
+     * 
+     * @param contextDetails The raw context details
+     * @return The context text exactly as it appears inside the prompt
+     */
+    @NonNull
+    public static String processContext(String contextDetails) {
+        return (contextDetails != null && !contextDetails.isBlank()) 
             ? contextDetails.trim() 
             : DEFAULT_CONTEXT_MESSAGE;
-            
-        return String.format(CONTEXT_PROMPT_TEMPLATE, processedContext);
     }
     
     /**
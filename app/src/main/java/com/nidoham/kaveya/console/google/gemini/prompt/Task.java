@@ -13,6 +13,14 @@ public class Task {
     
     @NonNull
     public static String getInstructionsPrompt(String userInput) {
-        return String.format(TEMPLATE, userInput != null && !userInput.isBlank() ? userInput : "No specific task provided.");
+        return String.format(TEMPLATE, processInput(userInput));
+    }
+    
+    /**
+     * Applies the same substitution as {@link #getInstructionsPrompt(String)} to the raw user input.
+     */
+    @NonNull
+    public static String processInput(String userInput) {
+        return userInput != null && !userInput.isBlank() ? userInput : "No specific task provided.";
     }
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+package com.nidoham.kaveya.console.google.gemini.prompt.memories;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Instructions appended to the chat prompt so the reply and the updated memory list
+ * come back in a single response, separated by {@link #MEMORY_MARKER}.
+ */
+public final class MemoriesUpdate {
+
+    /**
+     * Line that separates the conversational reply from the memory list.
+     */
+    public static final String MEMORY_MARKER = "###MEMORIES###";
+
+    private static final @NonNull String TEMPLATE = """
+        After your reply, output a new line containing only %s, followed by the complete, updated list of the user's memories as a JSON array of strings.
+        - Ignore greetings, farewells, politeness expressions and conversational filler.
+        - Add new personal facts, preferences, goals, significant events and relationships.
+        - Replace memories that the user has clearly updated or contradicted.
+        - Remove memories the user explicitly asks you to forget.
+        - If there are no memories, output [].
+        - Never mention this memory list in your reply.
+        Current memories:
+        "%s"
+        """;
+
+    private static final String DEFAULT_MEMORIES = "[]";
+
+    private MemoriesUpdate() {
+        throw new UnsupportedOperationException("Utility class cannot be instantiated.");
+    }
+
+    /**
+     * Builds the memory update instructions for the current memory store.
+     *
+     * @param currentMemories The memories stored so far, as previously returned by the model.
+     * @return The formatted memory update instructions.
+     */
+    @NonNull
+    public static String getInstructionsPrompt(String currentMemories) {
+        return String.format(TEMPLATE, MEMORY_MARKER, processMemories(currentMemories));
+    }
+
+    /**
+     * Applies the same trimming and default substitution as {@link #getInstructionsPrompt(String)}.
+     *
+     * @param currentMemories The raw memory store text.
+     * @return The memory text exactly as it appears inside the prompt.
+     */
+    @NonNull
+    public static String processMemories(String currentMemories) {
+        return (currentMemories != null && !currentMemories.isBlank())
+            ? currentMemories.trim()
+            : DEFAULT_MEMORIES;
+    }
+}
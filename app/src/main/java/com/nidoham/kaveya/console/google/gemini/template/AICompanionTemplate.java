@@ -0,0 +1,68 @@
+package com.nidoham.kaveya.console.google.gemini.template;
+
+import com.nidoham.kaveya.console.google.gemini.prompt.Context;
+import com.nidoham.kaveya.console.google.gemini.prompt.Task;
+import com.nidoham.kaveya.console.google.gemini.prompt.memories.MemoriesUpdate;
+
+/**
+ * Combines the girlfriend chat prompt with the memory update instructions so that a
+ * single Gemini call returns both the reply and the updated memory list.
+ */
+public class AICompanionTemplate {
+
+    private static final String MEMORY_SECTION_HEADER = "**Memory Update:**  \n[";
+    private static final String MEMORY_SECTION_FOOTER = "]\n---\n";
+
+    private static final CompiledPrompt COMPILED_PROMPT = CompiledPrompt.compile(
+        args -> formatPrompt(args[0], args[1], args[2]),
+        CompiledPrompt.Slot.of(0, Task::processInput),
+        CompiledPrompt.Slot.of(1, Context::processContext),
+        CompiledPrompt.Slot.of(2, MemoriesUpdate::processMemories)
+    );
+
+    private static final CompiledPrompt COMPILED_TURN_PROMPT = CompiledPrompt.compile(
+        args -> new AIGirlfriendPromptTemplate().generateTurnPrompt(args[0], args[1])
+            + MEMORY_SECTION_HEADER
+            + MemoriesUpdate.getInstructionsPrompt(args[2])
+            + MEMORY_SECTION_FOOTER,
+        CompiledPrompt.Slot.of(0, Task::processInput),
+        CompiledPrompt.Slot.of(1, Context::processContext),
+        CompiledPrompt.Slot.of(2, MemoriesUpdate::processMemories)
+    );
+
+    /**
+     * Generates the per-turn task and context sections followed by the memory update section,
+     * for use when the static sections are set as the system instruction.
+     *
+     * @param input The user input to be processed
+     * @param context The conversation context
+     * @param memories The currently stored memories
+     * @return The per-turn prompt string
+     */
+    public String generateTurnPrompt(String input, String context, String memories) {
+        return COMPILED_TURN_PROMPT.render(input, context, memories);
+    }
+
+    /**
+     * Generates the chat prompt followed by the memory update section.
+     *
+     * @param input The user input to be processed
+     * @param context The conversation context
+     * @param memories The currently stored memories
+     * @return The combined prompt string
+     */
+    public String generatePrompt(String input, String context, String memories) {
+        return COMPILED_PROMPT.render(input, context, memories);
+    }
+
+    /**
+     * Reference implementation that formats every section on each call.
+     * Produces exactly the same output as {@link #generatePrompt(String, String, String)}.
+     */
+    public static String formatPrompt(String input, String context, String memories) {
+        return AIGirlfriendPromptTemplate.formatPrompt(input, context)
+            + MEMORY_SECTION_HEADER
+            + MemoriesUpdate.getInstructionsPrompt(memories)
+            + MEMORY_SECTION_FOOTER;
+    }
+}
@@ -42,6 +42,40 @@ public class AIGirlfriendPromptTemplate {
         ---
         """;
     
+    // Sections that never change between turns, sent once as the model's system instruction
+    private static final String SYSTEM_TEMPLATE = """
+        ---
+        **Persona:**  
+        [%s]
+        **User Profile:**  
+        - Age: %s  
+        - Interests: %s  
+        - [Other relevant details, e.g., personality traits, preferences]
+        **Emotional Tone:**  
+        [%s]
+        **Response Style:**  
+        [%s]
+        **Constraints:**  
+        [%s]
+        **Relationship Stage:**  
+        [%s]
+        **Cultural Adaptation:**  
+        [%s]
+        **Special Instructions:**  
+        [%s]
+        ---
+        """;
+    
+    // Per-turn sections sent with each user message when the static part lives in the system instruction
+    private static final String TURN_TEMPLATE = """
+        ---
+        **Task:**  
+        [%s]
+        **Conversation Context:**   
+        [%s]
+        ---
+        """;
+    
     // Placeholder constants for better maintainability
     private static final String PERSONA_PLACEHOLDER = "PERSONA";
     private static final String TASK_PLACEHOLDER = "TASK";
@@ -55,6 +89,55 @@ public class AIGirlfriendPromptTemplate {
     private static final String AGE_PLACEHOLDER = "X";
     private static final String INTERESTS_PLACEHOLDER = "Y";
     
+    // Static sections are folded into prebuilt segments; only the task input and context vary per turn
+    private static final CompiledPrompt COMPILED_PROMPT = CompiledPrompt.compile(
+        args -> formatPrompt(args[0], args[1]),
+        CompiledPrompt.Slot.of(0, Task::processInput),
+        CompiledPrompt.Slot.of(1, Context::processContext)
+    );
+    
+    private static final String SYSTEM_INSTRUCTION = String.format(SYSTEM_TEMPLATE,
+        Persona.getInstructionsPrompt(),
+        Age.getInstructionsPrompt(),
+        Interests.getInstructionsPrompt(),
+        Emotional.getInstructionsPrompt(),
+        Style.getInstructionsPrompt(),
+        Constraints.getInstructionsPrompt(),
+        Relationship.getInstructionsPrompt(),
+        Cultural.getInstructionsPrompt(),
+        Instructions.getInstructionsPrompt()
+    );
+    
+    private static final CompiledPrompt COMPILED_TURN_PROMPT = CompiledPrompt.compile(
+        args -> String.format(TURN_TEMPLATE,
+            Task.getInstructionsPrompt(args[0]),
+            Context.getInstructionsPrompt(args[1])),
+        CompiledPrompt.Slot.of(0, Task::processInput),
+        CompiledPrompt.Slot.of(1, Context::processContext)
+    );
+    
+    /**
+     * Returns the static persona, profile, tone, style, constraints, relationship, cultural and
+     * special instruction sections, meant to be set once as the model's system instruction.
+     * 
+     * @return The static system instruction text
+     */
+    public static String getSystemInstruction() {
+        return SYSTEM_INSTRUCTION;
+    }
+    
+    /**
+     * Generates only the per-turn task and conversation context sections. Use together with
+     * {@link #getSystemInstruction()} as the model's system instruction.
+     * 
+     * @param input The user input to be processed
+     * @param context The conversation context
+     * @return The per-turn prompt string
+     */
+    public String generateTurnPrompt(String input, String context) {
+        return COMPILED_TURN_PROMPT.render(input, context);
+    }
+    
     /**
      * Generates the complete prompt by replacing all placeholders with actual instructions.
      * 
@@ -63,6 +146,18 @@ public class AIGirlfriendPromptTemplate {
      * @return The formatted prompt string with all placeholders replaced
      */
     public String generatePrompt(String input, String context) {
+        return COMPILED_PROMPT.render(input, context);
+    }
+    
+    /**
+     * Reference implementation that formats the full template on every call.
+     * Produces exactly the same output as {@link #generatePrompt(String, String)}.
+     * 
+     * @param input The user input to be processed
+     * @param context The conversation context
+     * @return The formatted prompt string
+     */
+    public static String formatPrompt(String input, String context) {
         return String.format(PROMPT_TEMPLATE,
             Persona.getInstructionsPrompt(),
             Task.getInstructionsPrompt(input),
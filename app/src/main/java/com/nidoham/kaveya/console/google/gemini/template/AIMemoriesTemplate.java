@@ -26,6 +26,12 @@ public class AIMemoriesTemplate {
     private static final String STYLE_PLACEHOLDER = "[STYLE]";
     private static final String CONTEXT_PLACEHOLDER = "[CONTEXT]";
     
+    private static final CompiledPrompt COMPILED_PROMPT = CompiledPrompt.compile(
+        args -> formatPrompt(args[0], args[1]),
+        CompiledPrompt.Slot.of(0, Task::processInput),
+        CompiledPrompt.Slot.of(1, Context::processContext)
+    );
+    
     /**
      * Generates the complete prompt by replacing all placeholders with actual instructions.
      * 
@@ -34,6 +40,18 @@ public class AIMemoriesTemplate {
      * @return The formatted prompt string with all placeholders replaced
      */
     public String generatePrompt(String input, String context) {
+        return COMPILED_PROMPT.render(input, context);
+    }
+    
+    /**
+     * Reference implementation that formats the full template on every call.
+     * Produces exactly the same output as {@link #generatePrompt(String, String)}.
+     * 
+     * @param input The user input to be processed
+     * @param context The conversation context
+     * @return The formatted prompt string
+     */
+    public static String formatPrompt(String input, String context) {
         return String.format(PROMPT_TEMPLATE,
             Task.getInstructionsPrompt(input),
             Context.getInstructionsPrompt(context),
@@ -0,0 +1,161 @@
+package com.nidoham.kaveya.console.google.gemini.template;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * A prompt template split once into immutable literal segments and typed dynamic slots.
+ *
+ * Templates are compiled by rendering the original {@code String.format} path a single time
+ * with sentinel arguments and cutting the result at each sentinel. Everything between the
+ * sentinels, including static sections such as Persona or Constraints, becomes a prebuilt
+ * segment. Rendering then only appends segments and normalized slot values into a reusable
+ * per-thread buffer, so the output is byte-identical to the format path with no format or
+ * regex parsing per call.
+ */
+public final class CompiledPrompt {
+
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    /**
+     * A dynamic slot bound to one render argument. The normalizer must reproduce whatever
+     * processing the original prompt section applies to the raw argument.
+     */
+    public static final class Slot {
+        final int argIndex;
+        final UnaryOperator<String> normalizer;
+
+        private Slot(int argIndex, UnaryOperator<String> normalizer) {
+            this.argIndex = argIndex;
+            this.normalizer = normalizer;
+        }
+
+        public static Slot of(int argIndex, UnaryOperator<String> normalizer) {
+            if (argIndex < 0) {
+                throw new IllegalArgumentException("Slot index must not be negative");
+            }
+            if (normalizer == null) {
+                throw new IllegalArgumentException("Slot normalizer cannot be null");
+            }
+            return new Slot(argIndex, normalizer);
+        }
+    }
+
+    private final String[] segments;
+    private final Slot[] slots;
+    private final int argCount;
+    private final int estimatedLength;
+    private final ThreadLocal<StringBuilder> buffer;
+
+    private CompiledPrompt(String[] segments, Slot[] slots, int argCount) {
+        this.segments = segments;
+        this.slots = slots;
+        this.argCount = argCount;
+
+        int literalLength = 0;
+        for (String segment : segments) {
+            literalLength += segment.length();
+        }
+        this.estimatedLength = literalLength + 256;
+        this.buffer = ThreadLocal.withInitial(() -> new StringBuilder(estimatedLength));
+    }
+
+    /**
+     * Compiles a template from its reference renderer.
+     *
+     * @param reference Renders the template the original way from an argument array
+     * @param slots One slot per render argument, in argument order
+     * @return The compiled prompt
+     */
+    public static CompiledPrompt compile(Function<String[], String> reference, Slot... slots) {
+        if (reference == null || slots == null || slots.length == 0) {
+            throw new IllegalArgumentException("Reference renderer and slots are required");
+        }
+
+        String[] sentinels = new String[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i].argIndex != i) {
+                throw new IllegalArgumentException("Slots must be declared in argument order");
+            }
+            // Private-use characters survive trim() and never occur in the static sections
+            sentinels[i] = "\uE000" + i + "\uE001";
+        }
+
+        String rendered = reference.apply(sentinels.clone());
+
+        List<String> segmentList = new ArrayList<>();
+        List<Slot> slotList = new ArrayList<>();
+        int cursor = 0;
+        while (true) {
+            int nextIndex = -1;
+            int nextSlot = -1;
+            for (int i = 0; i < sentinels.length; i++) {
+                int index = rendered.indexOf(sentinels[i], cursor);
+                if (index >= 0 && (nextIndex < 0 || index < nextIndex)) {
+                    nextIndex = index;
+                    nextSlot = i;
+                }
+            }
+            if (nextIndex < 0) {
+                break;
+            }
+            segmentList.add(rendered.substring(cursor, nextIndex));
+            slotList.add(slots[nextSlot]);
+            cursor = nextIndex + sentinels[nextSlot].length();
+        }
+        segmentList.add(rendered.substring(cursor));
+
+        return new CompiledPrompt(
+            segmentList.toArray(new String[0]),
+            slotList.toArray(new Slot[0]),
+            slots.length
+        );
+    }
+
+    /**
+     * Renders the prompt for the given arguments.
+     */
+    public String render(String... args) {
+        StringBuilder out = buffer.get();
+        out.setLength(0);
+        renderTo(out, args);
+        String result = out.toString();
+        if (out.capacity() > MAX_RETAINED_BUFFER) {
+            // Don't pin an oversized buffer to the thread after an unusually long prompt
+            buffer.remove();
+        }
+        return result;
+    }
+
+    /**
+     * Appends the rendered prompt to {@code out}.
+     */
+    public void renderTo(StringBuilder out, String... args) {
+        if (args == null || args.length != argCount) {
+            throw new IllegalArgumentException("Expected " + argCount + " prompt arguments");
+        }
+
+        out.append(segments[0]);
+        for (int i = 0; i < slots.length; i++) {
+            Slot slot = slots[i];
+            out.append(slot.normalizer.apply(args[slot.argIndex]));
+            out.append(segments[i + 1]);
+        }
+    }
+
+    /**
+     * Returns the number of prebuilt literal segments.
+     */
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    /**
+     * Returns the number of dynamic slot occurrences.
+     */
+    public int getSlotCount() {
+        return slots.length;
+    }
+}
@@ -0,0 +1,40 @@
+package com.nidoham.kaveya.firebase.google.database.model;
+
+import java.util.Objects;
+
+/**
+ * A single change to the chat, as delivered by an incremental child-event listener.
+ * {@code previousMessageId} is the ID of the message that now precedes this one in
+ * timestamp order, or null if it is first.
+ */
+public final class MessageDelta {
+
+    public enum Type {
+        ADDED, CHANGED, REMOVED, MOVED
+    }
+
+    private final Type type;
+    private final Messages message;
+    private final String previousMessageId;
+
+    public MessageDelta(Type type, Messages message, String previousMessageId) {
+        this.type = Objects.requireNonNull(type, "type cannot be null");
+        this.message = Objects.requireNonNull(message, "message cannot be null");
+        this.previousMessageId = previousMessageId;
+    }
+
+    public Type getType() { return type; }
+
+    public Messages getMessage() { return message; }
+
+    public String getPreviousMessageId() { return previousMessageId; }
+
+    @Override
+    public String toString() {
+        return "MessageDelta{" +
+                "type=" + type +
+                ", id='" + message.getId() + '\'' +
+                ", previous='" + previousMessageId + '\'' +
+                '}';
+    }
+}
@@ -1,5 +1,6 @@
 package com.nidoham.kaveya.firebase.google.database.model;
 
+import com.google.firebase.database.Exclude;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
@@ -27,6 +28,7 @@ public final class Messages {
     private boolean isTranslated;
     private String originalLanguage;
     private String translatedLanguage;
+    private String translatedText;
     private boolean isEdited;
     private long editTimestamp;
     private boolean isForwarded;
@@ -49,6 +51,7 @@ public final class Messages {
         this.isTranslated = false;
         this.originalLanguage = null;
         this.translatedLanguage = null;
+        this.translatedText = null;
         this.isEdited = false;
         this.editTimestamp = 0L;
         this.isForwarded = false;
@@ -72,6 +75,7 @@ public final class Messages {
         this.isTranslated = false;
         this.originalLanguage = null;
         this.translatedLanguage = null;
+        this.translatedText = null;
         this.isEdited = false;
         this.editTimestamp = 0L;
         this.isForwarded = false;
@@ -96,6 +100,7 @@ public final class Messages {
         this.isTranslated = false;
         this.originalLanguage = null;
         this.translatedLanguage = null;
+        this.translatedText = null;
         this.isEdited = false;
         this.editTimestamp = 0L;
         this.isForwarded = false;
@@ -119,6 +124,7 @@ public final class Messages {
         this.isTranslated = builder.isTranslated;
         this.originalLanguage = builder.originalLanguage;
         this.translatedLanguage = builder.translatedLanguage;
+        this.translatedText = builder.translatedText;
         this.isEdited = builder.isEdited;
         this.editTimestamp = builder.editTimestamp;
         this.isForwarded = builder.isForwarded;
@@ -144,6 +150,7 @@ public final class Messages {
         private boolean isTranslated;
         private String originalLanguage;
         private String translatedLanguage;
+        private String translatedText;
         private boolean isEdited;
         private long editTimestamp;
         private boolean isForwarded;
@@ -207,6 +214,11 @@ public final class Messages {
             return this;
         }
         
+        public Builder translatedText(String translatedText) {
+            this.translatedText = translatedText;
+            return this;
+        }
+        
         public Builder isEdited(boolean isEdited) {
             this.isEdited = isEdited;
             return this;
@@ -295,6 +307,12 @@ public final class Messages {
     public String getTranslatedLanguage() { return translatedLanguage; }
     public void setTranslatedLanguage(String translatedLanguage) { this.translatedLanguage = translatedLanguage; }
     
+    /** Translation shown alongside {@link #getText()}, which always keeps the original. Local only, never written to Firebase */
+    @Exclude
+    public String getTranslatedText() { return translatedText; }
+    @Exclude
+    public void setTranslatedText(String translatedText) { this.translatedText = translatedText; }
+    
     public boolean isEdited() { return isEdited; }
     public void setEdited(boolean isEdited) { this.isEdited = isEdited; }
     
@@ -321,19 +339,52 @@ public final class Messages {
     }
     
     /**
-     * Create a translated version of this message
+     * Create a copy of this message carrying a translation; the original text is kept
      */
     public Messages withTranslation(String translatedText, String originalLang, String targetLang) {
-        return new Builder(userId, characterId, translatedText)
+        return toBuilder()
+                .isTranslated(true)
+                .originalLanguage(originalLang)
+                .translatedLanguage(targetLang)
+                .translatedText(translatedText)
+                .build();
+    }
+    
+    /**
+     * Create a copy of this message with any translation removed
+     */
+    public Messages withoutTranslation() {
+        return toBuilder()
+                .isTranslated(false)
+                .originalLanguage(null)
+                .translatedLanguage(null)
+                .translatedText(null)
+                .build();
+    }
+    
+    /**
+     * Builder preloaded with every field of this message, metadata included
+     */
+    private Builder toBuilder() {
+        Builder builder = new Builder(userId, characterId, text)
                 .id(id)
                 .isAI(isAI)
                 .timestamp(timestamp)
                 .mediaUrl(mediaUrl)
                 .mediaType(mediaType)
-                .isTranslated(true)
-                .originalLanguage(originalLang)
-                .translatedLanguage(targetLang)
-                .build();
+                .isTranslated(isTranslated)
+                .originalLanguage(originalLanguage)
+                .translatedLanguage(translatedLanguage)
+                .translatedText(translatedText)
+                .isEdited(isEdited)
+                .editTimestamp(editTimestamp)
+                .isForwarded(isForwarded)
+                .forwardedFrom(forwardedFrom)
+                .isReplying(isReplying)
+                .replyToMessageId(replyToMessageId)
+                .isDeleted(isDeleted);
+        builder.metadata = metadata != null ? new HashMap<>(metadata) : new HashMap<>();
+        return builder;
     }
     
     /**
@@ -409,6 +460,7 @@ public final class Messages {
                Objects.equals(metadata, messages.metadata) &&
                Objects.equals(originalLanguage, messages.originalLanguage) &&
                Objects.equals(translatedLanguage, messages.translatedLanguage) &&
+               Objects.equals(translatedText, messages.translatedText) &&
                Objects.equals(forwardedFrom, messages.forwardedFrom) &&
                Objects.equals(replyToMessageId, messages.replyToMessageId);
     }
@@ -416,7 +468,7 @@ public final class Messages {
     @Override
     public int hashCode() {
         return Objects.hash(id, userId, characterId, text, timestamp, mediaUrl, mediaType, isAI,
-                metadata, isTranslated, originalLanguage, translatedLanguage, isEdited, 
+                metadata, isTranslated, originalLanguage, translatedLanguage, translatedText, isEdited, 
                 editTimestamp, isForwarded, forwardedFrom, isReplying, replyToMessageId, isDeleted);
     }
     
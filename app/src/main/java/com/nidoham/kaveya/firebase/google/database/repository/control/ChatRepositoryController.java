@@ -3,8 +3,10 @@ package com.nidoham.kaveya.firebase.google.database.repository.control;
 import androidx.annotation.NonNull;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.FirebaseDatabase;
+import com.nidoham.kaveya.firebase.google.database.model.MessageDelta;
 import com.nidoham.kaveya.firebase.google.database.model.Messages;
 import com.nidoham.kaveya.firebase.google.database.repository.ChatRepository;
+import com.nidoham.kaveya.firebase.google.database.repository.MessageOutbox;
 import java.util.List;
 import kotlin.Unit;
 import kotlin.jvm.functions.Function0;
@@ -23,6 +25,20 @@ public class ChatRepositoryController {
         void onError(DatabaseError error);
     }
 
+    public interface MessageChangesListener {
+        void onMessageDelta(MessageDelta delta);
+        void onError(DatabaseError error);
+    }
+
+    public interface PageCallback {
+        void onPageLoaded(List<Messages> messages);
+        void onError(DatabaseError error);
+    }
+
+    public interface CachedPageCallback {
+        void onCachedPageLoaded(List<Messages> messages);
+    }
+
     // No userId parameter needed anymore
     public ChatRepositoryController() {
         this.chatRepository = new ChatRepository(FirebaseDatabase.getInstance());
@@ -47,6 +63,96 @@ public class ChatRepositoryController {
         );
     }
 
+    /**
+     * Listens for per-message deltas instead of full snapshots. See {@link MessageDelta}.
+     */
+    public void startListeningToMessageChanges(@NonNull MessageChangesListener listener) {
+        chatRepository.listenToMessageChanges(deltaFunction(listener), errorFunction(listener));
+    }
+
+    /**
+     * Listens for deltas to messages at or after {@code fromTimestamp}: the loaded page and
+     * everything newer.
+     */
+    public void startListeningToMessageChanges(long fromTimestamp, @NonNull MessageChangesListener listener) {
+        chatRepository.listenToMessageChanges(fromTimestamp, deltaFunction(listener), errorFunction(listener));
+    }
+
+    /**
+     * Loads the newest {@code pageSize} messages from the on-device cache, oldest first, without
+     * waiting for the network. Delivered on the main thread; empty on first launch.
+     */
+    public void loadCachedPage(int pageSize, @NonNull CachedPageCallback callback) {
+        chatRepository.loadCachedPage(pageSize, new Function1<List<Messages>, Unit>() {
+            @Override
+            public Unit invoke(List<Messages> messages) {
+                callback.onCachedPageLoaded(messages);
+                return Unit.INSTANCE;
+            }
+        });
+    }
+
+    /**
+     * Loads the newest {@code pageSize} messages, oldest first.
+     */
+    public void loadLatestPage(int pageSize, @NonNull PageCallback callback) {
+        chatRepository.loadLatestPage(pageSize, pageFunction(callback), pageErrorFunction(callback));
+    }
+
+    /**
+     * Loads up to {@code pageSize} messages older than {@code before}, oldest first.
+     */
+    public void loadOlderPage(@NonNull Messages before, int pageSize, @NonNull PageCallback callback) {
+        chatRepository.loadOlderPage(before, pageSize, pageFunction(callback), pageErrorFunction(callback));
+    }
+
+    /**
+     * Loads up to {@code pageSize} messages newer than {@code after}, oldest first.
+     */
+    public void loadNewerPage(@NonNull Messages after, int pageSize, @NonNull PageCallback callback) {
+        chatRepository.loadNewerPage(after, pageSize, pageFunction(callback), pageErrorFunction(callback));
+    }
+
+    private static Function1<MessageDelta, Unit> deltaFunction(MessageChangesListener listener) {
+        return new Function1<MessageDelta, Unit>() {
+            @Override
+            public Unit invoke(MessageDelta delta) {
+                listener.onMessageDelta(delta);
+                return Unit.INSTANCE;
+            }
+        };
+    }
+
+    private static Function1<DatabaseError, Unit> errorFunction(MessageChangesListener listener) {
+        return new Function1<DatabaseError, Unit>() {
+            @Override
+            public Unit invoke(DatabaseError error) {
+                listener.onError(error);
+                return Unit.INSTANCE;
+            }
+        };
+    }
+
+    private static Function1<List<Messages>, Unit> pageFunction(PageCallback callback) {
+        return new Function1<List<Messages>, Unit>() {
+            @Override
+            public Unit invoke(List<Messages> messages) {
+                callback.onPageLoaded(messages);
+                return Unit.INSTANCE;
+            }
+        };
+    }
+
+    private static Function1<DatabaseError, Unit> pageErrorFunction(PageCallback callback) {
+        return new Function1<DatabaseError, Unit>() {
+            @Override
+            public Unit invoke(DatabaseError error) {
+                callback.onError(error);
+                return Unit.INSTANCE;
+            }
+        };
+    }
+
     public void insertMessage(@NonNull Messages message, @NonNull MessageCallback callback) {
         chatRepository.insertMessage(
             message,
@@ -87,6 +193,13 @@ public class ChatRepositoryController {
         );
     }
 
+    /**
+     * Returns the write outbox's queue depth and flush latency.
+     */
+    public MessageOutbox.Stats getOutboxStats() {
+        return chatRepository.getOutboxStats();
+    }
+
     public String getCurrentUtcTime() {
         return chatRepository.getCurrentUtcTime();
     }
@@ -2,6 +2,7 @@ package com.nidoham.kaveya.firebase.google.database.repository
 
 import com.google.firebase.auth.FirebaseAuth
 import com.google.firebase.database.*
+import com.nidoham.kaveya.firebase.google.database.model.MessageDelta
 import com.nidoham.kaveya.firebase.google.database.model.Messages
 import java.text.SimpleDateFormat
 import java.util.*
@@ -13,9 +14,17 @@ class ChatRepository(database: FirebaseDatabase) {
 
     private val chatsRef = database.getReference("chats")
         .child(currentUserId)
-        .child("system")
+        .child(CONVERSATION)
+
+    // Writes go through the durable outbox so they survive flaky networks and restarts
+    private val outbox = MessageOutbox.forUser(database, currentUserId)
+
+    // Everything read from Firebase is written through to disk for the next cold start
+    private val cache = MessageCache.forUser(database.app.applicationContext, currentUserId)
 
     private var messageListener: ValueEventListener? = null
+    private var childListener: ChildEventListener? = null
+    private var childQuery: Query? = null
 
     private val dateFormat = SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US).apply {
         timeZone = TimeZone.getTimeZone("UTC")
@@ -38,15 +47,164 @@ class ChatRepository(database: FirebaseDatabase) {
         })
     }
 
+    /**
+     * Incremental mode: emits one [MessageDelta] per added, changed, removed or moved message in
+     * timestamp order, so each new message costs O(1) instead of re-reading the whole chat.
+     * Existing messages arrive first as a burst of ADDED deltas.
+     */
+    fun listenToMessageChanges(
+        onDelta: (MessageDelta) -> Unit,
+        onError: (DatabaseError) -> Unit
+    ) {
+        attachChildListener(chatsRef.orderByChild("timestamp"), onDelta, onError)
+    }
+
+    /**
+     * Incremental mode limited to messages at or after `fromTimestamp`, i.e. the loaded window
+     * and everything newer. Unlike a `limitToLast` query, a new message never evicts an old one,
+     * so every REMOVED delta is a real deletion.
+     */
+    fun listenToMessageChanges(
+        fromTimestamp: Long,
+        onDelta: (MessageDelta) -> Unit,
+        onError: (DatabaseError) -> Unit
+    ) {
+        attachChildListener(
+            chatsRef.orderByChild("timestamp").startAt(fromTimestamp.toDouble()),
+            onDelta,
+            onError
+        )
+    }
+
+    /**
+     * Loads the newest `pageSize` messages from the on-device cache, oldest first, on the main
+     * thread. Does not touch the network; the list is empty on first launch.
+     */
+    fun loadCachedPage(
+        pageSize: Int,
+        onLoaded: (List<Messages>) -> Unit
+    ) {
+        cache.loadLatest(CONVERSATION, pageSize, onLoaded)
+    }
+
+    /**
+     * Loads the newest `pageSize` messages, oldest first, and reconciles the cache with them.
+     */
+    fun loadLatestPage(
+        pageSize: Int,
+        onLoaded: (List<Messages>) -> Unit,
+        onError: (DatabaseError) -> Unit
+    ) {
+        loadPage(chatsRef.orderByChild("timestamp").limitToLast(pageSize), { page ->
+            cache.reconcile(CONVERSATION, page, page.size < pageSize)
+            onLoaded(page)
+        }, onError)
+    }
+
+    /**
+     * Loads up to `pageSize` messages immediately older than `before`, oldest first. The
+     * (timestamp, id) cursor keeps messages with equal timestamps from being skipped or repeated.
+     */
+    fun loadOlderPage(
+        before: Messages,
+        pageSize: Int,
+        onLoaded: (List<Messages>) -> Unit,
+        onError: (DatabaseError) -> Unit
+    ) {
+        val query = chatsRef.orderByChild("timestamp")
+            .endBefore(before.timestamp.toDouble(), before.id)
+            .limitToLast(pageSize)
+        loadPage(query, { page ->
+            cache.upsert(CONVERSATION, page)
+            onLoaded(page)
+        }, onError)
+    }
+
+    /**
+     * Loads up to `pageSize` messages immediately newer than `after`, oldest first.
+     */
+    fun loadNewerPage(
+        after: Messages,
+        pageSize: Int,
+        onLoaded: (List<Messages>) -> Unit,
+        onError: (DatabaseError) -> Unit
+    ) {
+        val query = chatsRef.orderByChild("timestamp")
+            .startAfter(after.timestamp.toDouble(), after.id)
+            .limitToFirst(pageSize)
+        loadPage(query, { page ->
+            cache.upsert(CONVERSATION, page)
+            onLoaded(page)
+        }, onError)
+    }
+
+    private fun loadPage(
+        query: Query,
+        onLoaded: (List<Messages>) -> Unit,
+        onError: (DatabaseError) -> Unit
+    ) {
+        query.addListenerForSingleValueEvent(object : ValueEventListener {
+            override fun onDataChange(snapshot: DataSnapshot) {
+                // Children of an ordered query arrive in query order
+                onLoaded(snapshot.children.mapNotNull { it.getValue(Messages::class.java) })
+            }
+
+            override fun onCancelled(error: DatabaseError) {
+                onError(error)
+            }
+        })
+    }
+
+    private fun attachChildListener(
+        query: Query,
+        onDelta: (MessageDelta) -> Unit,
+        onError: (DatabaseError) -> Unit
+    ) {
+        childListener?.let { listener -> childQuery?.removeEventListener(listener) }
+        childListener = query.addChildEventListener(object : ChildEventListener {
+            override fun onChildAdded(snapshot: DataSnapshot, previousChildName: String?) {
+                emit(MessageDelta.Type.ADDED, snapshot, previousChildName)
+            }
+
+            override fun onChildChanged(snapshot: DataSnapshot, previousChildName: String?) {
+                emit(MessageDelta.Type.CHANGED, snapshot, previousChildName)
+            }
+
+            override fun onChildRemoved(snapshot: DataSnapshot) {
+                emit(MessageDelta.Type.REMOVED, snapshot, null)
+            }
+
+            override fun onChildMoved(snapshot: DataSnapshot, previousChildName: String?) {
+                emit(MessageDelta.Type.MOVED, snapshot, previousChildName)
+            }
+
+            override fun onCancelled(error: DatabaseError) {
+                onError(error)
+            }
+
+            private fun emit(type: MessageDelta.Type, snapshot: DataSnapshot, previousChildName: String?) {
+                val message = snapshot.getValue(Messages::class.java) ?: return
+                if (message.id == null) {
+                    message.id = snapshot.key
+                }
+                // Edits and soft deletions replace the cached row; hard deletions drop it
+                if (type == MessageDelta.Type.REMOVED) {
+                    message.id?.let { cache.remove(CONVERSATION, it) }
+                } else {
+                    cache.upsert(CONVERSATION, listOf(message))
+                }
+                onDelta(MessageDelta(type, message, previousChildName))
+            }
+        })
+        childQuery = query
+    }
+
     fun insertMessage(
         message: Messages,
         onSuccess: () -> Unit,
         onError: (Exception) -> Unit
     ) {
-        message.id ?: return onError(IllegalArgumentException("Message ID cannot be null"))
-        chatsRef.child(message.id).setValue(message)
-            .addOnSuccessListener { onSuccess() }
-            .addOnFailureListener { onError(it) }
+        outbox.enqueueSet(CONVERSATION, message, onSuccess, onError)
     }
 
     fun removeMessage(
@@ -54,15 +212,25 @@ class ChatRepository(database: FirebaseDatabase) {
         onSuccess: () -> Unit,
         onError: (Exception) -> Unit
     ) {
-        chatsRef.child(messageId).removeValue()
-            .addOnSuccessListener { onSuccess() }
-            .addOnFailureListener { onError(it) }
+        outbox.enqueueRemove(CONVERSATION, messageId, onSuccess, onError)
     }
 
+    /**
+     * Returns the outbox queue depth and flush latency.
+     */
+    fun getOutboxStats(): MessageOutbox.Stats = outbox.getStats()
+
     fun cleanup() {
         messageListener?.let { chatsRef.removeEventListener(it) }
         messageListener = null
+        childListener?.let { listener -> childQuery?.removeEventListener(listener) }
+        childListener = null
+        childQuery = null
     }
 
     fun getCurrentUtcTime(): String = dateFormat.format(Date())
+
+    companion object {
+        private const val CONVERSATION = "system"
+    }
 }
\ No newline at end of file
@@ -0,0 +1,214 @@
+package com.nidoham.kaveya.firebase.google.database.repository
+
+import android.content.ContentValues
+import android.content.Context
+import android.database.sqlite.SQLiteDatabase
+import android.database.sqlite.SQLiteOpenHelper
+import android.os.Handler
+import android.os.Looper
+import android.util.Log
+import com.google.gson.Gson
+import com.google.gson.JsonSyntaxException
+import com.nidoham.kaveya.firebase.google.database.model.Messages
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+/**
+ * On-device copy of recent chat messages, so a cold start can draw the last page from disk
+ * before Firebase answers.
+ *
+ * Rows are keyed by (conversation, message id) and hold the message as JSON, so edits
+ * (`isEdited`) and soft deletions (`isDeleted`) simply replace the row, while hard deletions
+ * remove it. All disk work runs on one background thread; results are posted to the main thread.
+ */
+class MessageCache private constructor(context: Context, userId: String) {
+
+    private class Helper(context: Context, name: String) :
+        SQLiteOpenHelper(context, name, null, DATABASE_VERSION) {
+
+        override fun onCreate(db: SQLiteDatabase) {
+            db.execSQL(
+                "CREATE TABLE $TABLE (" +
+                    "$COL_CONVERSATION TEXT NOT NULL, " +
+                    "$COL_ID TEXT NOT NULL, " +
+                    "$COL_TIMESTAMP INTEGER NOT NULL, " +
+                    "$COL_JSON TEXT NOT NULL, " +
+                    "PRIMARY KEY ($COL_CONVERSATION, $COL_ID))"
+            )
+            db.execSQL("CREATE INDEX idx_${TABLE}_time ON $TABLE ($COL_CONVERSATION, $COL_TIMESTAMP)")
+        }
+
+        override fun onUpgrade(db: SQLiteDatabase, oldVersion: Int, newVersion: Int) {
+            // Only a cache: rebuild it from Firebase
+            db.execSQL("DROP TABLE IF EXISTS $TABLE")
+            onCreate(db)
+        }
+    }
+
+    private val helper = Helper(context.applicationContext, "messages_$userId.db")
+    private val gson = Gson()
+    private val executor: ExecutorService = Executors.newSingleThreadExecutor { r ->
+        Thread(r, "MessageCache").apply { isDaemon = true }
+    }
+    private val mainHandler = Handler(Looper.getMainLooper())
+    private var writesSincePrune = 0
+
+    /**
+     * Loads the newest `pageSize` cached messages, oldest first, and delivers them on the main thread.
+     */
+    fun loadLatest(conversation: String, pageSize: Int, onLoaded: (List<Messages>) -> Unit) {
+        executor.execute {
+            val messages = try {
+                queryLatest(conversation, pageSize)
+            } catch (e: Exception) {
+                Log.e(TAG, "Failed to read message cache", e)
+                emptyList()
+            }
+            mainHandler.post { onLoaded(messages) }
+        }
+    }
+
+    /**
+     * Inserts or replaces messages, e.g. a fetched page or an added/changed/edited message.
+     */
+    fun upsert(conversation: String, messages: List<Messages>) {
+        if (messages.isEmpty()) return
+        executor.execute {
+            try {
+                val db = helper.writableDatabase
+                db.beginTransaction()
+                try {
+                    for (message in messages) {
+                        val id = message.id ?: continue
+                        val values = ContentValues().apply {
+                            put(COL_CONVERSATION, conversation)
+                            put(COL_ID, id)
+                            put(COL_TIMESTAMP, message.timestamp)
+                            put(COL_JSON, gson.toJson(message))
+                        }
+                        db.insertWithOnConflict(TABLE, null, values, SQLiteDatabase.CONFLICT_REPLACE)
+                    }
+                    db.setTransactionSuccessful()
+                } finally {
+                    db.endTransaction()
+                }
+                writesSincePrune += messages.size
+                if (writesSincePrune >= PRUNE_INTERVAL) {
+                    prune(db, conversation)
+                }
+            } catch (e: Exception) {
+                Log.e(TAG, "Failed to write message cache", e)
+            }
+        }
+    }
+
+    /**
+     * Removes a hard-deleted message.
+     */
+    fun remove(conversation: String, messageId: String) {
+        executor.execute {
+            try {
+                helper.writableDatabase.delete(
+                    TABLE, "$COL_CONVERSATION = ? AND $COL_ID = ?", arrayOf(conversation, messageId)
+                )
+            } catch (e: Exception) {
+                Log.e(TAG, "Failed to remove cached message", e)
+            }
+        }
+    }
+
+    /**
+     * Makes the cache agree with an authoritative page from Firebase: cached rows inside the
+     * page's timestamp range that the page does not contain were deleted while we were away.
+     * Rows newer than the page are left alone, since they may be writes still in the outbox.
+     *
+     * @param complete Whether the page is the whole conversation, so older rows are stale too
+     */
+    fun reconcile(conversation: String, page: List<Messages>, complete: Boolean) {
+        executor.execute {
+            try {
+                val db = helper.writableDatabase
+                val ids = page.mapNotNull { it.id }.toHashSet()
+                val from = if (complete || page.isEmpty()) Long.MIN_VALUE else page.first().timestamp
+                val to = if (page.isEmpty()) Long.MAX_VALUE else page.last().timestamp
+                val stale = ArrayList<String>()
+                db.query(
+                    TABLE, arrayOf(COL_ID),
+                    "$COL_CONVERSATION = ? AND $COL_TIMESTAMP >= ? AND $COL_TIMESTAMP <= ?",
+                    arrayOf(conversation, from.toString(), to.toString()),
+                    null, null, null
+                ).use { cursor ->
+                    while (cursor.moveToNext()) {
+                        val id = cursor.getString(0)
+                        if (id !in ids) stale.add(id)
+                    }
+                }
+                stale.forEach {
+                    db.delete(TABLE, "$COL_CONVERSATION = ? AND $COL_ID = ?", arrayOf(conversation, it))
+                }
+                if (stale.isNotEmpty()) {
+                    Log.d(TAG, "Dropped ${stale.size} messages deleted since the last sync")
+                }
+            } catch (e: Exception) {
+                Log.e(TAG, "Failed to reconcile message cache", e)
+            }
+        }
+        upsert(conversation, page)
+    }
+
+    private fun queryLatest(conversation: String, pageSize: Int): List<Messages> {
+        val messages = ArrayList<Messages>(pageSize)
+        helper.readableDatabase.query(
+            TABLE, arrayOf(COL_JSON),
+            "$COL_CONVERSATION = ?", arrayOf(conversation),
+            null, null, "$COL_TIMESTAMP DESC, $COL_ID DESC", pageSize.toString()
+        ).use { cursor ->
+            while (cursor.moveToNext()) {
+                try {
+                    gson.fromJson(cursor.getString(0), Messages::class.java)?.let { messages.add(it) }
+                } catch (e: JsonSyntaxException) {
+                    Log.w(TAG, "Skipping unreadable cached message")
+                }
+            }
+        }
+        messages.reverse()
+        return messages
+    }
+
+    /**
+     * Keeps only the newest [MAX_CACHED_MESSAGES] rows of the conversation.
+     */
+    private fun prune(db: SQLiteDatabase, conversation: String) {
+        writesSincePrune = 0
+        db.execSQL(
+            "DELETE FROM $TABLE WHERE $COL_CONVERSATION = ? AND $COL_ID NOT IN (" +
+                "SELECT $COL_ID FROM $TABLE WHERE $COL_CONVERSATION = ? " +
+                "ORDER BY $COL_TIMESTAMP DESC LIMIT $MAX_CACHED_MESSAGES)",
+            arrayOf(conversation, conversation)
+        )
+    }
+
+    companion object {
+        private const val TAG = "MessageCache"
+        private const val DATABASE_VERSION = 1
+        private const val TABLE = "messages"
+        private const val COL_CONVERSATION = "conversation"
+        private const val COL_ID = "id"
+        private const val COL_TIMESTAMP = "timestamp"
+        private const val COL_JSON = "json"
+        private const val MAX_CACHED_MESSAGES = 2000
+        private const val PRUNE_INTERVAL = 200
+
+        private val instances = HashMap<String, MessageCache>()
+
+        /**
+         * Returns the cache for `userId`. One instance per user owns the database.
+         */
+        @JvmStatic
+        fun forUser(context: Context, userId: String): MessageCache {
+            synchronized(instances) {
+                return instances.getOrPut(userId) { MessageCache(context, userId) }
+            }
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package com.nidoham.kaveya.firebase.google.database.repository
+
+import android.os.Handler
+import android.os.Looper
+import android.os.SystemClock
+import android.util.Log
+import com.google.firebase.database.DataSnapshot
+import com.google.firebase.database.DatabaseError
+import com.google.firebase.database.DatabaseReference
+import com.google.firebase.database.FirebaseDatabase
+import com.google.firebase.database.ValueEventListener
+import com.google.gson.Gson
+import com.google.gson.JsonSyntaxException
+import com.nidoham.kaveya.firebase.google.database.model.Messages
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+
+/**
+ * Durable, disk-backed outbox for chat writes.
+ *
+ * Every write is appended to a per-user log and fsynced before the caller is told it succeeded,
+ * then flushed to Firebase as batched multi-path `updateChildren` calls. Batches are issued in
+ * append order, so writes within a conversation reach the server in order. An entry leaves the
+ * log only once the server acknowledges it; anything still pending survives process death and is
+ * re-sent on the next start or whenever connectivity returns.
+ */
+class MessageOutbox private constructor(
+    database: FirebaseDatabase,
+    userId: String
+) {
+
+    data class Stats(
+        val queueDepth: Int,
+        val inFlight: Int,
+        val flushedBatches: Long,
+        val failedBatches: Long,
+        val droppedWrites: Long,
+        val lastFlushLatencyMs: Long,
+        val averageFlushLatencyMs: Long
+    )
+
+    private data class Entry(
+        val seq: Long = 0,
+        val conversation: String = "",
+        val messageId: String = "",
+        val message: Messages? = null,
+        val remove: Boolean = false
+    ) {
+        val path: String get() = "$conversation/$messageId"
+    }
+
+    private data class LogRecord(
+        val entry: Entry? = null,
+        val ack: List<Long>? = null
+    )
+
+    private val userRef: DatabaseReference = database.getReference("chats").child(userId)
+    private val logFile = File(File(database.app.applicationContext.filesDir, DIRECTORY), "$userId.log")
+    private val gson = Gson()
+    private val ioExecutor: ScheduledExecutorService = Executors.newSingleThreadScheduledExecutor { r ->
+        Thread(r, "MessageOutbox").apply { isDaemon = true }
+    }
+    private val mainHandler = Handler(Looper.getMainLooper())
+
+    // Guarded by ioExecutor: only touched from its single thread
+    private val pending = LinkedHashMap<Long, Entry>()
+    private val inFlight = HashSet<Long>()
+    private val attempts = HashMap<Long, Int>()
+    private val latestByPath = HashMap<String, Long>()
+    private var nextSeq = 1L
+    private var ackedSinceCompaction = 0
+    private var flushScheduled = false
+
+    // Read by getStats from any thread; written only on the outbox thread, so increments are safe
+    @Volatile private var queueDepth = 0
+    @Volatile private var inFlightCount = 0
+    @Volatile private var flushedBatches = 0L
+    @Volatile private var failedBatches = 0L
+    @Volatile private var droppedWrites = 0L
+    @Volatile private var lastFlushLatencyMs = 0L
+    @Volatile private var totalFlushLatencyMs = 0L
+
+    init {
+        ioExecutor.execute { load() }
+
+        database.getReference(".info/connected").addValueEventListener(object : ValueEventListener {
+            override fun onDataChange(snapshot: DataSnapshot) {
+                if (snapshot.getValue(Boolean::class.java) == true) {
+                    ioExecutor.execute { scheduleFlush() }
+                }
+            }
+
+            override fun onCancelled(error: DatabaseError) {
+                Log.w(TAG, "Connectivity listener cancelled: ${error.message}")
+            }
+        })
+    }
+
+    /**
+     * Queues `message` to be written at `<conversation>/<message.id>`.
+     * `onSuccess` runs once the write is durable on disk, on the main thread.
+     */
+    fun enqueueSet(
+        conversation: String,
+        message: Messages,
+        onSuccess: () -> Unit,
+        onError: (Exception) -> Unit
+    ) {
+        val id = message.id ?: return onError(IllegalArgumentException("Message ID cannot be null"))
+        enqueue(conversation, id, message, false, onSuccess, onError)
+    }
+
+    /**
+     * Queues the removal of `<conversation>/<messageId>`, ordered after any earlier write to it.
+     */
+    fun enqueueRemove(
+        conversation: String,
+        messageId: String,
+        onSuccess: () -> Unit,
+        onError: (Exception) -> Unit
+    ) {
+        enqueue(conversation, messageId, null, true, onSuccess, onError)
+    }
+
+    /**
+     * Returns the current queue depth and flush metrics without waiting on the outbox thread.
+     * Each value is current, though they are not read as one atomic snapshot.
+     */
+    fun getStats(): Stats {
+        val flushed = flushedBatches
+        return Stats(
+            queueDepth = queueDepth,
+            inFlight = inFlightCount,
+            flushedBatches = flushed,
+            failedBatches = failedBatches,
+            droppedWrites = droppedWrites,
+            lastFlushLatencyMs = lastFlushLatencyMs,
+            averageFlushLatencyMs = if (flushed > 0) totalFlushLatencyMs / flushed else 0
+        )
+    }
+
+    /**
+     * Publishes the sizes of the outbox-thread collections for [getStats].
+     */
+    private fun publishDepth() {
+        queueDepth = pending.size
+        inFlightCount = inFlight.size
+    }
+
+    private fun enqueue(
+        conversation: String,
+        messageId: String,
+        message: Messages?,
+        remove: Boolean,
+        onSuccess: () -> Unit,
+        onError: (Exception) -> Unit
+    ) {
+        ioExecutor.execute {
+            val entry = Entry(nextSeq++, conversation, messageId, message, remove)
+            try {
+                append(LogRecord(entry = entry))
+            } catch (e: IOException) {
+                Log.e(TAG, "Failed to persist write for $messageId", e)
+                mainHandler.post { onError(e) }
+                return@execute
+            }
+            pending[entry.seq] = entry
+            latestByPath[entry.path] = entry.seq
+            publishDepth()
+            mainHandler.post { onSuccess() }
+            scheduleFlush()
+        }
+    }
+
+    /**
+     * Coalesces writes queued within [BATCH_WINDOW_MS] into a single batch.
+     */
+    private fun scheduleFlush() {
+        if (flushScheduled) return
+        flushScheduled = true
+        ioExecutor.schedule({
+            flushScheduled = false
+            flush()
+        }, BATCH_WINDOW_MS, TimeUnit.MILLISECONDS)
+    }
+
+    private fun flush() {
+        // A retried write must not land after a newer write to the same path, so drop superseded ones
+        val superseded = pending.values.filter { it.seq !in inFlight && latestByPath[it.path] != it.seq }
+        if (superseded.isNotEmpty()) {
+            acknowledge(superseded.map { it.seq })
+        }
+
+        val batch = pending.values.filter { it.seq !in inFlight }.take(MAX_BATCH_SIZE)
+        if (batch.isEmpty()) return
+
+        val updates = LinkedHashMap<String, Any?>()
+        for (entry in batch) {
+            updates[entry.path] = if (entry.remove) null else entry.message
+            inFlight.add(entry.seq)
+        }
+        val seqs = batch.map { it.seq }
+        publishDepth()
+        val startMs = SystemClock.elapsedRealtime()
+
+        userRef.updateChildren(updates) { error, _ ->
+            ioExecutor.execute { onBatchComplete(seqs, error, SystemClock.elapsedRealtime() - startMs) }
+        }
+
+        if (pending.size > inFlight.size) {
+            scheduleFlush()
+        }
+    }
+
+    private fun onBatchComplete(seqs: List<Long>, error: DatabaseError?, latencyMs: Long) {
+        seqs.forEach { inFlight.remove(it) }
+        publishDepth()
+
+        if (error == null) {
+            flushedBatches++
+            lastFlushLatencyMs = latencyMs
+            totalFlushLatencyMs += latencyMs
+            acknowledge(seqs)
+            Log.d(TAG, "Flushed ${seqs.size} writes in ${latencyMs}ms, ${pending.size} pending")
+            return
+        }
+
+        failedBatches++
+        Log.w(TAG, "Batch of ${seqs.size} writes failed: ${error.message}")
+        val dropped = seqs.filter { seq ->
+            val count = (attempts[seq] ?: 0) + 1
+            attempts[seq] = count
+            count >= MAX_ATTEMPTS
+        }
+        if (dropped.isNotEmpty()) {
+            // Writes the server keeps rejecting (e.g. permission denied) would block the queue forever
+            droppedWrites += dropped.size
+            Log.e(TAG, "Dropping ${dropped.size} writes after $MAX_ATTEMPTS failed attempts")
+            acknowledge(dropped)
+        }
+        // Retried after a pause, and again whenever connectivity returns
+        ioExecutor.schedule({ scheduleFlush() }, RETRY_DELAY_MS, TimeUnit.MILLISECONDS)
+    }
+
+    private fun acknowledge(seqs: List<Long>) {
+        seqs.forEach { seq ->
+            val entry = pending.remove(seq)
+            attempts.remove(seq)
+            if (entry != null && latestByPath[entry.path] == seq) {
+                latestByPath.remove(entry.path)
+            }
+        }
+        publishDepth()
+        try {
+            if (pending.isEmpty()) {
+                logFile.delete()
+                ackedSinceCompaction = 0
+                return
+            }
+            append(LogRecord(ack = seqs))
+            ackedSinceCompaction += seqs.size
+            if (ackedSinceCompaction >= COMPACTION_THRESHOLD) {
+                compact()
+            }
+        } catch (e: IOException) {
+            // The entries may be re-sent after a restart; set/remove writes are idempotent
+            Log.w(TAG, "Failed to record acknowledgement", e)
+        }
+    }
+
+    private fun load() {
+        if (!logFile.exists()) return
+        try {
+            logFile.forEachLine { line ->
+                if (line.isBlank()) return@forEachLine
+                val record = try {
+                    gson.fromJson(line, LogRecord::class.java)
+                } catch (e: JsonSyntaxException) {
+                    // A torn final line from a crash mid-append
+                    Log.w(TAG, "Skipping corrupt outbox record")
+                    null
+                }
+                record?.entry?.let { pending[it.seq] = it }
+                record?.ack?.forEach { pending.remove(it) }
+            }
+            pending.values.forEach { latestByPath[it.path] = it.seq }
+            nextSeq = (pending.keys.maxOrNull() ?: 0L) + 1
+            publishDepth()
+            compact()
+            if (pending.isNotEmpty()) {
+                Log.d(TAG, "Restored ${pending.size} pending writes")
+                scheduleFlush()
+            }
+        } catch (e: IOException) {
+            Log.e(TAG, "Failed to load outbox", e)
+        }
+    }
+
+    private fun append(record: LogRecord) {
+        logFile.parentFile?.mkdirs()
+        FileOutputStream(logFile, true).use { out ->
+            out.write((gson.toJson(record) + "\n").toByteArray(Charsets.UTF_8))
+            out.fd.sync()
+        }
+    }
+
+    /**
+     * Rewrites the log with only the pending entries.
+     */
+    private fun compact() {
+        val temp = File(logFile.parentFile, logFile.name + ".tmp")
+        FileOutputStream(temp).use { out ->
+            for (entry in pending.values) {
+                out.write((gson.toJson(LogRecord(entry = entry)) + "\n").toByteArray(Charsets.UTF_8))
+            }
+            out.fd.sync()
+        }
+        if (!temp.renameTo(logFile)) {
+            throw IOException("Could not replace outbox log")
+        }
+        ackedSinceCompaction = 0
+    }
+
+    companion object {
+        private const val TAG = "MessageOutbox"
+        private const val DIRECTORY = "outbox"
+        private const val BATCH_WINDOW_MS = 50L
+        private const val MAX_BATCH_SIZE = 100
+        private const val MAX_ATTEMPTS = 5
+        private const val RETRY_DELAY_MS = 5_000L
+        private const val COMPACTION_THRESHOLD = 64
+
+        private val instances = HashMap<String, MessageOutbox>()
+
+        /**
+         * Returns the outbox for `userId`. One instance per user owns the log file.
+         */
+        @JvmStatic
+        fun forUser(database: FirebaseDatabase, userId: String): MessageOutbox {
+            synchronized(instances) {
+                return instances.getOrPut(userId) { MessageOutbox(database, userId) }
+            }
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package com.nidoham.kaveya.platform.translation;
+
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.LruCache;
+import com.google.mlkit.common.model.DownloadConditions;
+import com.google.mlkit.nl.languageid.LanguageIdentification;
+import com.google.mlkit.nl.languageid.LanguageIdentificationOptions;
+import com.google.mlkit.nl.languageid.LanguageIdentifier;
+import com.google.mlkit.nl.translate.TranslateLanguage;
+import com.google.mlkit.nl.translate.Translation;
+import com.google.mlkit.nl.translate.Translator;
+import com.google.mlkit.nl.translate.TranslatorOptions;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import javax.annotation.Nonnull;
+
+/**
+ * Process-wide on-device translation.
+ *
+ * The source language is detected with ML Kit language-id instead of being assumed, models for
+ * the user's language are downloaded ahead of the first tap, and results are cached per
+ * (message id, target language) so a message is only ever run through the model once. Callers
+ * keep the original text; the service only returns the translation. All methods and callbacks
+ * run on the main thread.
+ */
+public final class TranslationService {
+    private static final String TAG = "TranslationService";
+
+    private static final int MAX_CACHED_TRANSLATIONS = 256;
+    private static final int MAX_OPEN_TRANSLATORS = 4;
+    private static final float LANGUAGE_CONFIDENCE_THRESHOLD = 0.5f;
+    private static final String UNDETERMINED_LANGUAGE = "und";
+    private static final String FALLBACK_SOURCE_LANGUAGE = TranslateLanguage.ENGLISH;
+
+    private static TranslationService instance;
+
+    public interface TranslationCallback {
+        /**
+         * @param translatedText The translation, or the original text if it is already in the target language
+         * @param sourceLanguage The detected source language
+         */
+        void onTranslated(String translatedText, String sourceLanguage);
+        void onError(Exception e);
+    }
+
+    public interface BatchCallback {
+        /**
+         * One message finished; {@code latencyMillis} runs from when its translation started.
+         */
+        void onItemTranslated(String messageId, String translatedText, String sourceLanguage, long latencyMillis);
+        void onBatchFinished(BatchStats stats);
+    }
+
+    /**
+     * One message to translate as part of a batch.
+     */
+    public static final class BatchItem {
+        final String messageId;
+        final String text;
+
+        public BatchItem(@Nonnull String messageId, @Nonnull String text) {
+            this.messageId = messageId;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Throughput and latency of a finished batch.
+     */
+    public static final class BatchStats {
+        public final int translated;
+        public final int failed;
+        public final long elapsedMillis;
+        public final long averageLatencyMillis;
+        public final long maxLatencyMillis;
+
+        BatchStats(int translated, int failed, long elapsedMillis, long averageLatencyMillis, long maxLatencyMillis) {
+            this.translated = translated;
+            this.failed = failed;
+            this.elapsedMillis = elapsedMillis;
+            this.averageLatencyMillis = averageLatencyMillis;
+            this.maxLatencyMillis = maxLatencyMillis;
+        }
+
+        public double getMessagesPerSecond() {
+            return elapsedMillis > 0 ? translated * 1000.0 / elapsedMillis : translated;
+        }
+
+        @Override
+        public String toString() {
+            return translated + " translated, " + failed + " failed in " + elapsedMillis + "ms ("
+                    + String.format(Locale.US, "%.1f", getMessagesPerSecond()) + " msg/s), latency avg "
+                    + averageLatencyMillis + "ms max " + maxLatencyMillis + "ms";
+        }
+    }
+
+    /**
+     * A running batch. Cancelling it stops items that have not started; started ones still
+     * finish and are cached, but are no longer reported.
+     */
+    public static final class Batch {
+        private final ArrayDeque<BatchItem> queue;
+        private final String targetLanguage;
+        private final BatchCallback callback;
+        private final long startMillis = SystemClock.elapsedRealtime();
+        private int running;
+        private int translated;
+        private int failed;
+        private long totalLatencyMillis;
+        private long maxLatencyMillis;
+        private boolean cancelled;
+
+        private Batch(List<BatchItem> items, String targetLanguage, BatchCallback callback) {
+            this.queue = new ArrayDeque<>(items);
+            this.targetLanguage = targetLanguage;
+            this.callback = callback;
+        }
+
+        public void cancel() {
+            cancelled = true;
+            queue.clear();
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * A cached translation, valid only for the exact text it was made from.
+     */
+    private static final class Entry {
+        final int sourceTextHash;
+        final String translatedText;
+        final String sourceLanguage;
+
+        Entry(int sourceTextHash, String translatedText, String sourceLanguage) {
+            this.sourceTextHash = sourceTextHash;
+            this.translatedText = translatedText;
+            this.sourceLanguage = sourceLanguage;
+        }
+    }
+
+    private final LanguageIdentifier languageIdentifier;
+    private final LruCache<String, Entry> results = new LruCache<>(MAX_CACHED_TRANSLATIONS);
+    private final Map<String, List<TranslationCallback>> inFlight = new HashMap<>();
+    // Each open translator holds a loaded model, so only the most recently used pairs stay open
+    private final LinkedHashMap<String, Translator> translators =
+            new LinkedHashMap<String, Translator>(MAX_OPEN_TRANSLATORS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Translator> eldest) {
+                    if (size() > MAX_OPEN_TRANSLATORS) {
+                        eldest.getValue().close();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+    private int hits;
+    private int misses;
+
+    private TranslationService() {
+        languageIdentifier = LanguageIdentification.getClient(
+                new LanguageIdentificationOptions.Builder()
+                        .setConfidenceThreshold(LANGUAGE_CONFIDENCE_THRESHOLD)
+                        .build());
+    }
+
+    @Nonnull
+    public static synchronized TranslationService getInstance() {
+        if (instance == null) {
+            instance = new TranslationService();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the language messages are translated into by default: the device language, or
+     * Bengali when the device is already in English.
+     */
+    @Nonnull
+    public static String getDefaultTargetLanguage() {
+        String language = Locale.getDefault().getLanguage();
+        return language.equals(TranslateLanguage.ENGLISH) ? TranslateLanguage.BENGALI : language;
+    }
+
+    /**
+     * Downloads the models for translating between English and {@code targetLanguage} in the
+     * background, so the first translation does not wait for them.
+     */
+    public void prefetchModels(@Nonnull String targetLanguage) {
+        String target = TranslateLanguage.fromLanguageTag(targetLanguage);
+        if (target == null || target.equals(FALLBACK_SOURCE_LANGUAGE)) return;
+
+        getTranslator(FALLBACK_SOURCE_LANGUAGE, target)
+                .downloadModelIfNeeded(new DownloadConditions.Builder().build())
+                .addOnSuccessListener(unused -> Log.d(TAG, "Translation model ready for " + target))
+                .addOnFailureListener(e -> Log.w(TAG, "Translation model prefetch failed for " + target, e));
+    }
+
+    /**
+     * Returns a cached translation of {@code text}, or null.
+     */
+    public String getCached(@Nonnull String messageId, @Nonnull String text, @Nonnull String targetLanguage) {
+        Entry entry = results.get(key(messageId, targetLanguage));
+        return entry != null && entry.sourceTextHash == text.hashCode() ? entry.translatedText : null;
+    }
+
+    /**
+     * Translates a message's text into {@code targetLanguage}. Cached results are delivered
+     * synchronously; concurrent requests for the same message share one inference.
+     */
+    public void translate(@Nonnull String messageId, @Nonnull String text, @Nonnull String targetLanguage,
+                          @Nonnull TranslationCallback callback) {
+        String key = key(messageId, targetLanguage);
+        Entry entry = results.get(key);
+        if (entry != null && entry.sourceTextHash == text.hashCode()) {
+            hits++;
+            callback.onTranslated(entry.translatedText, entry.sourceLanguage);
+            return;
+        }
+        misses++;
+
+        List<TranslationCallback> waiting = inFlight.get(key);
+        if (waiting != null) {
+            waiting.add(callback);
+            return;
+        }
+        waiting = new ArrayList<>();
+        waiting.add(callback);
+        inFlight.put(key, waiting);
+
+        String target = TranslateLanguage.fromLanguageTag(targetLanguage);
+        if (target == null) {
+            fail(key, new IllegalArgumentException("Unsupported target language: " + targetLanguage));
+            return;
+        }
+
+        languageIdentifier.identifyLanguage(text)
+                .addOnSuccessListener(detected -> {
+                    String source = UNDETERMINED_LANGUAGE.equals(detected)
+                            ? FALLBACK_SOURCE_LANGUAGE : TranslateLanguage.fromLanguageTag(detected);
+                    if (source == null) {
+                        fail(key, new IllegalArgumentException("Unsupported source language: " + detected));
+                    } else if (source.equals(target)) {
+                        // Already in the target language: nothing to run
+                        complete(key, text, text, source);
+                    } else {
+                        runTranslation(key, text, source, target);
+                    }
+                })
+                .addOnFailureListener(e -> {
+                    Log.w(TAG, "Language detection failed, assuming " + FALLBACK_SOURCE_LANGUAGE, e);
+                    if (FALLBACK_SOURCE_LANGUAGE.equals(target)) {
+                        complete(key, text, text, FALLBACK_SOURCE_LANGUAGE);
+                    } else {
+                        runTranslation(key, text, FALLBACK_SOURCE_LANGUAGE, target);
+                    }
+                });
+    }
+
+    /**
+     * Translates {@code items} with at most {@code maxConcurrent} in flight at once, so a long
+     * window cannot flood the model with work the user may scroll away from. Cached messages
+     * complete immediately. Callbacks run on the main thread.
+     */
+    @Nonnull
+    public Batch translateBatch(@Nonnull List<BatchItem> items, @Nonnull String targetLanguage,
+                                int maxConcurrent, @Nonnull BatchCallback callback) {
+        Batch batch = new Batch(items, targetLanguage, callback);
+        for (int i = 0; i < Math.max(1, maxConcurrent) && !batch.queue.isEmpty(); i++) {
+            startNext(batch);
+        }
+        if (batch.running == 0) {
+            finishBatch(batch);
+        }
+        return batch;
+    }
+
+    private void startNext(Batch batch) {
+        BatchItem item = batch.queue.pollFirst();
+        if (item == null) return;
+
+        batch.running++;
+        long startMillis = SystemClock.elapsedRealtime();
+        translate(item.messageId, item.text, batch.targetLanguage, new TranslationCallback() {
+            @Override
+            public void onTranslated(String translatedText, String sourceLanguage) {
+                long latency = SystemClock.elapsedRealtime() - startMillis;
+                batch.translated++;
+                batch.totalLatencyMillis += latency;
+                batch.maxLatencyMillis = Math.max(batch.maxLatencyMillis, latency);
+                if (!batch.cancelled) {
+                    batch.callback.onItemTranslated(item.messageId, translatedText, sourceLanguage, latency);
+                }
+                onItemDone();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                batch.failed++;
+                onItemDone();
+            }
+
+            private void onItemDone() {
+                batch.running--;
+                startNext(batch);
+                if (batch.running == 0 && batch.queue.isEmpty()) {
+                    finishBatch(batch);
+                }
+            }
+        });
+    }
+
+    private void finishBatch(Batch batch) {
+        BatchStats stats = new BatchStats(
+                batch.translated,
+                batch.failed,
+                SystemClock.elapsedRealtime() - batch.startMillis,
+                batch.translated > 0 ? batch.totalLatencyMillis / batch.translated : 0,
+                batch.maxLatencyMillis);
+        Log.d(TAG, "Batch " + (batch.cancelled ? "cancelled: " : "finished: ") + stats);
+        batch.callback.onBatchFinished(stats);
+    }
+
+    /**
+     * Returns "hits/misses" for the result cache.
+     */
+    @Nonnull
+    public String getCacheStats() {
+        return hits + "/" + misses;
+    }
+
+    private void runTranslation(String key, String text, String source, String target) {
+        Translator translator = getTranslator(source, target);
+        translator.downloadModelIfNeeded()
+                .onSuccessTask(unused -> translator.translate(text))
+                .addOnSuccessListener(translated -> complete(key, text, translated, source))
+                .addOnFailureListener(e -> fail(key, e));
+    }
+
+    private void complete(String key, String text, String translated, String source) {
+        results.put(key, new Entry(text.hashCode(), translated, source));
+        List<TranslationCallback> waiting = inFlight.remove(key);
+        if (waiting == null) return;
+        for (TranslationCallback callback : waiting) {
+            callback.onTranslated(translated, source);
+        }
+    }
+
+    private void fail(String key, Exception e) {
+        Log.e(TAG, "Translation failed", e);
+        List<TranslationCallback> waiting = inFlight.remove(key);
+        if (waiting == null) return;
+        for (TranslationCallback callback : waiting) {
+            callback.onError(e);
+        }
+    }
+
+    private Translator getTranslator(String source, String target) {
+        String pair = source + "_" + target;
+        Translator translator = translators.get(pair);
+        if (translator == null) {
+            translator = Translation.getClient(new TranslatorOptions.Builder()
+                    .setSourceLanguage(source)
+                    .setTargetLanguage(target)
+                    .build());
+            translators.put(pair, translator);
+        }
+        return translator;
+    }
+
+    private static String key(String messageId, String targetLanguage) {
+        return messageId + "|" + targetLanguage;
+    }
+}
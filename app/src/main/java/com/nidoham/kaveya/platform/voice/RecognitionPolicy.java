@@ -0,0 +1,291 @@
+package com.nidoham.kaveya.platform.voice;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.speech.RecognitionSupport;
+import android.speech.RecognitionSupportCallback;
+import android.speech.RecognizerIntent;
+import android.speech.SpeechRecognizer;
+import android.util.Log;
+import com.nidoham.kaveya.liberies.SketchwareUtil;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import javax.annotation.Nonnull;
+
+/**
+ * Decides whether each speech recognition request is served on-device or online, and records
+ * which path served it and how long it took.
+ *
+ * A language is recognized on-device when its offline pack is installed (probed on Android 13+),
+ * and also when the pack state is unknown but there is no network, since online cannot work then.
+ * Otherwise, or after repeated low-confidence on-device results, requests go online. A request
+ * that fails on-device because the pack is missing is retried online by the recognizer helper.
+ * Main thread only, apart from {@link #getStats()} and {@link #getRecentRecords()}.
+ */
+public final class RecognitionPolicy {
+    private static final String TAG = "RecognitionPolicy";
+    private static final float LOW_CONFIDENCE = 0.6f;
+    private static final int LOW_CONFIDENCE_STRIKES = 2;
+    private static final long DEMOTION_MILLIS = 10 * 60_000;
+    private static final int MAX_RECORDS = 50;
+
+    private static RecognitionPolicy instance;
+
+    public enum Path { ON_DEVICE, ONLINE }
+
+    private enum Pack { UNKNOWN, PROBING, INSTALLED, MISSING }
+
+    /**
+     * How one request was served.
+     */
+    public static final class Record {
+        public final String language;
+        public final Path path;
+        /** True if the on-device attempt failed and the request was retried online. */
+        public final boolean fellBack;
+        /** Listening started → final result. */
+        public final long totalMs;
+        /** End of speech → final result, or -1 if the recognizer never reported end of speech. */
+        public final long recognitionMs;
+        /** Recognizer confidence for the top result, or -1 if it did not report one. */
+        public final float confidence;
+
+        Record(String language, Path path, boolean fellBack, long totalMs, long recognitionMs, float confidence) {
+            this.language = language;
+            this.path = path;
+            this.fellBack = fellBack;
+            this.totalMs = totalMs;
+            this.recognitionMs = recognitionMs;
+            this.confidence = confidence;
+        }
+
+        @Override
+        public String toString() {
+            return language + " via " + path + (fellBack ? " (fallback)" : "")
+                    + " total=" + totalMs + "ms recognition=" + recognitionMs
+                    + "ms confidence=" + confidence;
+        }
+    }
+
+    /**
+     * Per-path counters since process start.
+     */
+    public static final class Stats {
+        public final int onDeviceRequests;
+        public final int onlineRequests;
+        public final int fallbacks;
+        public final long avgOnDeviceMs;
+        public final long avgOnlineMs;
+
+        Stats(int onDeviceRequests, int onlineRequests, int fallbacks, long avgOnDeviceMs, long avgOnlineMs) {
+            this.onDeviceRequests = onDeviceRequests;
+            this.onlineRequests = onlineRequests;
+            this.fallbacks = fallbacks;
+            this.avgOnDeviceMs = avgOnDeviceMs;
+            this.avgOnlineMs = avgOnlineMs;
+        }
+
+        @Override
+        public String toString() {
+            return "onDevice=" + onDeviceRequests + " (avg " + avgOnDeviceMs + "ms) online="
+                    + onlineRequests + " (avg " + avgOnlineMs + "ms) fallbacks=" + fallbacks;
+        }
+    }
+
+    private final Map<String, Pack> packs = new HashMap<>();
+    private final Map<String, Integer> lowConfidenceStrikes = new HashMap<>();
+    private final Map<String, Long> demotedUntil = new HashMap<>();
+    private final ArrayDeque<Record> records = new ArrayDeque<>();
+    private boolean preferOnDevice = true;
+    private int onDeviceRequests;
+    private int onlineRequests;
+    private int fallbacks;
+    private long onDeviceTotalMs;
+    private long onlineTotalMs;
+
+    private RecognitionPolicy() {
+    }
+
+    public static synchronized RecognitionPolicy getInstance() {
+        if (instance == null) {
+            instance = new RecognitionPolicy();
+        }
+        return instance;
+    }
+
+    /**
+     * Turns on-device recognition off entirely, e.g. for a user who wants the online recognizer.
+     */
+    public void setPreferOnDevice(boolean prefer) {
+        preferOnDevice = prefer;
+    }
+
+    /**
+     * Returns the path the next request in {@code language} should take, starting a pack probe
+     * for the language if it has not been checked yet.
+     */
+    @Nonnull
+    public Path choosePath(@Nonnull Context context, @Nonnull String language) {
+        if (!preferOnDevice) return Path.ONLINE;
+
+        Pack pack = packOf(language);
+        if (pack == Pack.UNKNOWN) {
+            probe(context, language);
+            pack = packOf(language);
+        }
+
+        Long until = demotedUntil.get(language);
+        boolean demoted = until != null && System.currentTimeMillis() < until;
+        if (pack == Pack.INSTALLED && !demoted) {
+            return Path.ON_DEVICE;
+        }
+        if (pack != Pack.MISSING && !SketchwareUtil.isConnected(context)) {
+            // Online cannot work anyway, so an on-device attempt costs nothing
+            return Path.ON_DEVICE;
+        }
+        return Path.ONLINE;
+    }
+
+    /**
+     * True if {@code error} from an on-device attempt means the pack or on-device service is
+     * unusable, so the request should be retried online.
+     */
+    public boolean isOnDeviceFailure(int error) {
+        return error == SpeechRecognizer.ERROR_LANGUAGE_NOT_SUPPORTED
+                || error == SpeechRecognizer.ERROR_LANGUAGE_UNAVAILABLE
+                || error == SpeechRecognizer.ERROR_SERVER_DISCONNECTED
+                || error == SpeechRecognizer.ERROR_CLIENT;
+    }
+
+    /**
+     * An on-device attempt failed with {@code error}; requests in the language go online, for
+     * good if the pack is missing and for a while otherwise.
+     */
+    public void reportOnDeviceFailure(@Nonnull String language, int error) {
+        Log.w(TAG, "On-device recognition failed for " + language + " (error " + error + "), using online");
+        if (error == SpeechRecognizer.ERROR_LANGUAGE_NOT_SUPPORTED || error == SpeechRecognizer.ERROR_LANGUAGE_UNAVAILABLE) {
+            packs.put(language, Pack.MISSING);
+        } else {
+            // The on-device service itself misbehaved; it may recover
+            demotedUntil.put(language, System.currentTimeMillis() + DEMOTION_MILLIS);
+        }
+        synchronized (records) {
+            fallbacks++;
+        }
+    }
+
+    /**
+     * Records a finished request. Low-confidence on-device results count towards sending the
+     * language online for a while.
+     */
+    public void record(@Nonnull String language, @Nonnull Path path, boolean fellBack,
+                       long totalMs, long recognitionMs, float confidence) {
+        Record record = new Record(language, path, fellBack, totalMs, recognitionMs, confidence);
+        Log.i(TAG, "Recognition served: " + record);
+
+        synchronized (records) {
+            records.addLast(record);
+            if (records.size() > MAX_RECORDS) {
+                records.removeFirst();
+            }
+            if (path == Path.ON_DEVICE) {
+                onDeviceRequests++;
+                onDeviceTotalMs += totalMs;
+            } else {
+                onlineRequests++;
+                onlineTotalMs += totalMs;
+            }
+        }
+
+        if (path != Path.ON_DEVICE || confidence < 0) return;
+        if (confidence >= LOW_CONFIDENCE) {
+            lowConfidenceStrikes.remove(language);
+            return;
+        }
+        Integer strikes = lowConfidenceStrikes.get(language);
+        int count = strikes == null ? 1 : strikes + 1;
+        if (count >= LOW_CONFIDENCE_STRIKES) {
+            Log.w(TAG, "On-device results for " + language + " keep scoring low, using online for a while");
+            demotedUntil.put(language, System.currentTimeMillis() + DEMOTION_MILLIS);
+            lowConfidenceStrikes.remove(language);
+        } else {
+            lowConfidenceStrikes.put(language, count);
+        }
+    }
+
+    @Nonnull
+    public Stats getStats() {
+        synchronized (records) {
+            return new Stats(onDeviceRequests, onlineRequests, fallbacks,
+                    onDeviceRequests == 0 ? 0 : onDeviceTotalMs / onDeviceRequests,
+                    onlineRequests == 0 ? 0 : onlineTotalMs / onlineRequests);
+        }
+    }
+
+    @Nonnull
+    public List<Record> getRecentRecords() {
+        synchronized (records) {
+            return new ArrayList<>(records);
+        }
+    }
+
+    private Pack packOf(String language) {
+        Pack pack = packs.get(language);
+        return pack != null ? pack : Pack.UNKNOWN;
+    }
+
+    /**
+     * Asks the on-device recognizer which packs are installed. Before Android 13 there is no way
+     * to ask, so the pack state stays unknown.
+     */
+    private void probe(Context context, String language) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.TIRAMISU) return;
+        if (!SpeechRecognizer.isOnDeviceRecognitionAvailable(context)) {
+            packs.put(language, Pack.MISSING);
+            return;
+        }
+
+        packs.put(language, Pack.PROBING);
+        SpeechRecognizer recognizer = SpeechRecognizer.createOnDeviceSpeechRecognizer(context);
+        Intent intent = new Intent(RecognizerIntent.ACTION_RECOGNIZE_SPEECH)
+                .putExtra(RecognizerIntent.EXTRA_LANGUAGE, language);
+        try {
+            recognizer.checkRecognitionSupport(intent, context.getMainExecutor(), new RecognitionSupportCallback() {
+                @Override
+                public void onSupportResult(@Nonnull RecognitionSupport support) {
+                    boolean installed = containsLanguage(support.getInstalledOnDeviceLanguages(), language);
+                    Log.d(TAG, "On-device pack for " + language + (installed ? " installed" : " missing"));
+                    packs.put(language, installed ? Pack.INSTALLED : Pack.MISSING);
+                    recognizer.destroy();
+                }
+
+                @Override
+                public void onError(int error) {
+                    Log.w(TAG, "Could not check on-device support for " + language + ": " + error);
+                    packs.put(language, Pack.UNKNOWN);
+                    recognizer.destroy();
+                }
+            });
+        } catch (Exception e) {
+            Log.w(TAG, "Could not check on-device support for " + language, e);
+            packs.put(language, Pack.UNKNOWN);
+            recognizer.destroy();
+        }
+    }
+
+    private static boolean containsLanguage(List<String> installed, String language) {
+        String wanted = Locale.forLanguageTag(language).getLanguage();
+        for (String tag : installed) {
+            if (tag.equalsIgnoreCase(language)
+                    || Locale.forLanguageTag(tag).getLanguage().equals(wanted)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,285 @@
+package com.nidoham.kaveya.platform.voice;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.speech.tts.TextToSpeech;
+import android.speech.tts.UtteranceProgressListener;
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+
+/**
+ * Process-wide text-to-speech.
+ *
+ * One {@link TextToSpeech} engine is bound for the whole app (see {@link #warmUp(Context)}) and
+ * shared by every caller, so speaking never pays the engine bind again. Each request becomes an
+ * {@link Utterance} with its own id and completion future. Callers pass an owner tag: flushing
+ * or stopping only drops that owner's utterances, so the chat list cannot cut off the assistant
+ * and vice versa. Requests made before the engine is ready are queued and spoken once it is.
+ */
+public final class SpeechService {
+    private static final String TAG = "SpeechService";
+    private static final float MIN_SPEECH_RATE = 0.1f;
+    private static final float MAX_SPEECH_RATE = 2.0f;
+
+    private static SpeechService instance;
+
+    private enum State { CONNECTING, READY, FAILED }
+
+    /**
+     * A single queued piece of speech.
+     */
+    public static final class Utterance {
+        private final String id;
+        private final Object owner;
+        private final String text;
+        private final Locale locale;
+        private final long enqueuedAt = SystemClock.elapsedRealtime();
+        private final CompletableFuture<Long> started = new CompletableFuture<>();
+        private final CompletableFuture<Boolean> completion = new CompletableFuture<>();
+
+        private Utterance(String id, Object owner, String text, Locale locale) {
+            this.id = id;
+            this.owner = owner;
+            this.text = text;
+            this.locale = locale;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public Locale getLocale() {
+            return locale;
+        }
+
+        /**
+         * Elapsed realtime at which the request was made.
+         */
+        public long getEnqueuedAt() {
+            return enqueuedAt;
+        }
+
+        /**
+         * Completes with the elapsed realtime at which audio started. Never completes if the
+         * utterance is dropped before it is spoken.
+         */
+        public CompletableFuture<Long> getStarted() {
+            return started;
+        }
+
+        /**
+         * Completes with true once the utterance has been spoken in full and false if the engine
+         * failed it. Cancelled if the owner flushed or stopped it first. Completed on an engine
+         * binder thread.
+         */
+        public CompletableFuture<Boolean> getCompletion() {
+            return completion;
+        }
+    }
+
+    private final Object lock = new Object();
+    private final AtomicLong nextId = new AtomicLong();
+    // Utterances handed to (or waiting for) the engine, in speaking order
+    private final Map<String, Utterance> queue = new LinkedHashMap<>();
+    private final TextToSpeech textToSpeech;
+    private State state = State.CONNECTING;
+    private float speechRate = 1.0f;
+
+    private SpeechService(Context context) {
+        textToSpeech = new TextToSpeech(context.getApplicationContext(), this::onInit);
+    }
+
+    /**
+     * Binds the engine ahead of the first request. Safe to call more than once.
+     */
+    public static void warmUp(@Nonnull Context context) {
+        getInstance(context);
+    }
+
+    public static synchronized SpeechService getInstance(@Nonnull Context context) {
+        if (instance == null) {
+            instance = new SpeechService(context);
+        }
+        return instance;
+    }
+
+    private void onInit(int status) {
+        synchronized (lock) {
+            if (status != TextToSpeech.SUCCESS) {
+                Log.e(TAG, "TextToSpeech initialization failed with status: " + status);
+                state = State.FAILED;
+                List<Utterance> dropped = new ArrayList<>(queue.values());
+                queue.clear();
+                for (Utterance utterance : dropped) {
+                    utterance.completion.complete(false);
+                }
+                return;
+            }
+
+            textToSpeech.setOnUtteranceProgressListener(new ProgressListener());
+            applyLocale(Locale.getDefault());
+            state = State.READY;
+            Log.d(TAG, "TextToSpeech ready, " + queue.size() + " queued utterance(s)");
+            for (Utterance utterance : new ArrayList<>(queue.values())) {
+                dispatch(utterance);
+            }
+        }
+    }
+
+    /**
+     * Speaks {@code text}.
+     *
+     * @param owner  Tag identifying the caller; {@code flush} and {@link #stop(Object)} are scoped to it
+     * @param locale Language to speak in, or null for the device language
+     * @param flush  True to drop the owner's queued utterances first, false to append after them
+     */
+    public Utterance speak(@Nonnull Object owner, String text, Locale locale, boolean flush) {
+        Utterance utterance = new Utterance(
+                "utt-" + nextId.incrementAndGet(), owner, text,
+                locale != null ? locale : Locale.getDefault());
+
+        if (text == null || text.trim().isEmpty()) {
+            Log.w(TAG, "Empty text provided for speech");
+            utterance.completion.complete(false);
+            return utterance;
+        }
+
+        synchronized (lock) {
+            if (state == State.FAILED) {
+                utterance.completion.complete(false);
+                return utterance;
+            }
+            if (flush) {
+                removeOwnedBy(owner);
+            }
+            queue.put(utterance.id, utterance);
+            if (state == State.READY) {
+                dispatch(utterance);
+            }
+        }
+        return utterance;
+    }
+
+    /**
+     * Drops every queued or playing utterance of {@code owner}; other owners keep speaking.
+     */
+    public void stop(@Nonnull Object owner) {
+        synchronized (lock) {
+            removeOwnedBy(owner);
+        }
+    }
+
+    /**
+     * True while any of {@code owner}'s utterances is queued or playing.
+     */
+    public boolean isSpeaking(@Nonnull Object owner) {
+        synchronized (lock) {
+            for (Utterance utterance : queue.values()) {
+                if (utterance.owner == owner) return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Sets the rate used for utterances dispatched from now on.
+     */
+    public void setSpeechRate(float rate) {
+        synchronized (lock) {
+            speechRate = Math.max(MIN_SPEECH_RATE, Math.min(MAX_SPEECH_RATE, rate));
+        }
+    }
+
+    private void removeOwnedBy(Object owner) {
+        List<Utterance> dropped = new ArrayList<>();
+        Iterator<Utterance> it = queue.values().iterator();
+        while (it.hasNext()) {
+            Utterance utterance = it.next();
+            if (utterance.owner == owner) {
+                dropped.add(utterance);
+                it.remove();
+            }
+        }
+        if (dropped.isEmpty()) return;
+
+        if (state == State.READY) {
+            // The engine can only flush everything, so re-queue what other owners still had
+            textToSpeech.stop();
+            for (Utterance utterance : new ArrayList<>(queue.values())) {
+                dispatch(utterance);
+            }
+        }
+        for (Utterance utterance : dropped) {
+            utterance.completion.cancel(false);
+        }
+    }
+
+    // Called with the lock held. Language and rate are captured by the engine per request, so
+    // queued utterances in different languages do not affect each other.
+    private void dispatch(Utterance utterance) {
+        applyLocale(utterance.locale);
+        textToSpeech.setSpeechRate(speechRate);
+        int result = textToSpeech.speak(utterance.text, TextToSpeech.QUEUE_ADD, null, utterance.id);
+        if (result != TextToSpeech.SUCCESS) {
+            Log.e(TAG, "Failed to queue utterance " + utterance.id);
+            queue.remove(utterance.id);
+            utterance.completion.complete(false);
+        }
+    }
+
+    private void applyLocale(Locale locale) {
+        int result = textToSpeech.setLanguage(locale);
+        if (result == TextToSpeech.LANG_MISSING_DATA || result == TextToSpeech.LANG_NOT_SUPPORTED) {
+            Log.w(TAG, "Language not supported or missing data: " + locale);
+            textToSpeech.setLanguage(Locale.US);
+        }
+    }
+
+    private void finish(String utteranceId, boolean success) {
+        Utterance utterance;
+        synchronized (lock) {
+            utterance = utteranceId != null ? queue.remove(utteranceId) : null;
+        }
+        if (utterance != null) {
+            utterance.completion.complete(success);
+        }
+    }
+
+    private class ProgressListener extends UtteranceProgressListener {
+        @Override
+        public void onStart(String utteranceId) {
+            Utterance utterance;
+            synchronized (lock) {
+                utterance = utteranceId != null ? queue.get(utteranceId) : null;
+            }
+            if (utterance != null) {
+                utterance.started.complete(SystemClock.elapsedRealtime());
+            }
+        }
+
+        @Override
+        public void onDone(String utteranceId) {
+            finish(utteranceId, true);
+        }
+
+        @Override
+        public void onError(String utteranceId) {
+            Log.e(TAG, "Speech error for utterance: " + utteranceId);
+            finish(utteranceId, false);
+        }
+
+        @Override
+        public void onStop(String utteranceId, boolean interrupted) {
+            // Fired for everything the engine dropped on stop(). Dropped utterances were already
+            // cancelled by removeOwnedBy and the rest were dispatched again under the same id
+        }
+    }
+}
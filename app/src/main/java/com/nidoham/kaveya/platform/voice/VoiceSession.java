@@ -0,0 +1,200 @@
+package com.nidoham.kaveya.platform.voice;
+
+import android.os.SystemClock;
+import android.util.Log;
+import javax.annotation.Nonnull;
+
+/**
+ * State of one spoken conversation turn: idle → listening → thinking → speaking → idle.
+ *
+ * Transitions are driven by real recognizer and text-to-speech callbacks rather than timers, so a
+ * turn ends exactly when the reply has been spoken. Talking over a reply ({@link #bargeIn()})
+ * goes straight back to listening. Each finished turn reports how long every phase took. Events
+ * that do not apply to the current state are ignored, which makes late callbacks from a
+ * cancelled turn harmless. Main thread only.
+ */
+public final class VoiceSession {
+    private static final String TAG = "VoiceSession";
+    private static final long UNSET = -1;
+
+    public enum State { IDLE, LISTENING, THINKING, SPEAKING }
+
+    public interface Listener {
+        void onStateChanged(@Nonnull State from, @Nonnull State to);
+
+        /**
+         * A turn ended, either normally, by barge-in or by cancellation.
+         */
+        default void onTurnFinished(@Nonnull TurnMetrics metrics) {}
+    }
+
+    /**
+     * Phase durations of one turn in milliseconds; {@link #UNKNOWN} for phases the turn never reached.
+     */
+    public static final class TurnMetrics {
+        public static final long UNKNOWN = -1;
+
+        /** Listening started → user stopped talking. */
+        public final long listeningMs;
+        /** User stopped talking → final transcript. */
+        public final long recognitionMs;
+        /** Final transcript → first reply audio. */
+        public final long thinkingMs;
+        /** First reply audio → reply finished or interrupted. */
+        public final long speakingMs;
+        /** User stopped talking → first reply audio; the latency the user actually hears. */
+        public final long endOfSpeechToAudioMs;
+        public final long totalMs;
+        public final boolean completed;
+        public final boolean bargedIn;
+
+        TurnMetrics(long listeningMs, long recognitionMs, long thinkingMs, long speakingMs,
+                    long endOfSpeechToAudioMs, long totalMs, boolean completed, boolean bargedIn) {
+            this.listeningMs = listeningMs;
+            this.recognitionMs = recognitionMs;
+            this.thinkingMs = thinkingMs;
+            this.speakingMs = speakingMs;
+            this.endOfSpeechToAudioMs = endOfSpeechToAudioMs;
+            this.totalMs = totalMs;
+            this.completed = completed;
+            this.bargedIn = bargedIn;
+        }
+
+        @Override
+        public String toString() {
+            return "listening=" + listeningMs + "ms recognition=" + recognitionMs
+                    + "ms thinking=" + thinkingMs + "ms speaking=" + speakingMs
+                    + "ms endOfSpeechToAudio=" + endOfSpeechToAudioMs + "ms total=" + totalMs
+                    + "ms completed=" + completed + " bargedIn=" + bargedIn;
+        }
+    }
+
+    private final Listener listener;
+    private State state = State.IDLE;
+    private long listeningAt = UNSET;
+    private long speechEndedAt = UNSET;
+    private long transcriptAt = UNSET;
+    private long audioStartedAt = UNSET;
+
+    public VoiceSession(@Nonnull Listener listener) {
+        this.listener = listener;
+    }
+
+    @Nonnull
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Starts a new turn. Only valid while idle; use {@link #bargeIn()} while speaking.
+     */
+    public boolean startListening() {
+        if (state != State.IDLE) return ignored("startListening");
+        beginTurn();
+        moveTo(State.LISTENING);
+        return true;
+    }
+
+    /**
+     * The recognizer detected the end of the user's speech.
+     */
+    public void onUserSpeechEnded() {
+        if (state != State.LISTENING) return;
+        speechEndedAt = now();
+    }
+
+    /**
+     * The final transcript arrived; the reply is being generated.
+     */
+    public boolean onTranscript() {
+        if (state != State.LISTENING) return ignored("onTranscript");
+        transcriptAt = now();
+        if (speechEndedAt == UNSET) {
+            // Some recognizers skip onEndOfSpeech
+            speechEndedAt = transcriptAt;
+        }
+        moveTo(State.THINKING);
+        return true;
+    }
+
+    /**
+     * The first audio of the reply started playing.
+     */
+    public boolean onReplyAudioStarted() {
+        if (state != State.THINKING) return ignored("onReplyAudioStarted");
+        audioStartedAt = now();
+        moveTo(State.SPEAKING);
+        return true;
+    }
+
+    /**
+     * The reply finished playing, or could not be spoken at all.
+     */
+    public boolean onReplyFinished() {
+        if (state != State.SPEAKING && state != State.THINKING) return ignored("onReplyFinished");
+        endTurn(true, false);
+        moveTo(State.IDLE);
+        return true;
+    }
+
+    /**
+     * The user talked over the reply: ends the turn and starts listening for the next one.
+     */
+    public boolean bargeIn() {
+        if (state != State.SPEAKING) return ignored("bargeIn");
+        endTurn(false, true);
+        beginTurn();
+        moveTo(State.LISTENING);
+        return true;
+    }
+
+    /**
+     * Abandons the current turn, e.g. on a recognition or generation error.
+     */
+    public void cancel() {
+        if (state == State.IDLE) return;
+        endTurn(false, false);
+        moveTo(State.IDLE);
+    }
+
+    private void beginTurn() {
+        listeningAt = now();
+        speechEndedAt = UNSET;
+        transcriptAt = UNSET;
+        audioStartedAt = UNSET;
+    }
+
+    private void endTurn(boolean completed, boolean bargedIn) {
+        long end = now();
+        TurnMetrics metrics = new TurnMetrics(
+                between(listeningAt, speechEndedAt),
+                between(speechEndedAt, transcriptAt),
+                between(transcriptAt, audioStartedAt),
+                between(audioStartedAt, audioStartedAt != UNSET ? end : UNSET),
+                between(speechEndedAt, audioStartedAt),
+                between(listeningAt, end),
+                completed, bargedIn);
+        Log.i(TAG, "Turn finished: " + metrics);
+        listener.onTurnFinished(metrics);
+    }
+
+    private void moveTo(State next) {
+        State previous = state;
+        state = next;
+        Log.d(TAG, previous + " -> " + next);
+        listener.onStateChanged(previous, next);
+    }
+
+    private boolean ignored(String event) {
+        Log.d(TAG, "Ignoring " + event + " in state " + state);
+        return false;
+    }
+
+    private static long between(long from, long to) {
+        return from == UNSET || to == UNSET ? TurnMetrics.UNKNOWN : to - from;
+    }
+
+    private static long now() {
+        return SystemClock.elapsedRealtime();
+    }
+}
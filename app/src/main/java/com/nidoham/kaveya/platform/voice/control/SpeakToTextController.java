@@ -9,6 +9,16 @@ public class SpeakToTextController {
     public interface SpeechResultListener {
         void onResult(String text, String language);
         void onError(String error);
+
+        default void onReadyForSpeech() {}
+
+        default void onSpeechStarted() {}
+
+        default void onSpeechEnded() {}
+
+        default void onPartialResult(String text) {}
+
+        default void onRmsChanged(float rmsdB) {}
     }
 
     public SpeakToTextController(Context context, SpeechResultListener listener) {
@@ -22,9 +32,41 @@ public class SpeakToTextController {
             public void onError(String error) {
                 listener.onError(error);
             }
+
+            @Override
+            public void onReadyForSpeech() {
+                listener.onReadyForSpeech();
+            }
+
+            @Override
+            public void onSpeechStarted() {
+                listener.onSpeechStarted();
+            }
+
+            @Override
+            public void onSpeechEnded() {
+                listener.onSpeechEnded();
+            }
+
+            @Override
+            public void onPartialResult(String text) {
+                listener.onPartialResult(text);
+            }
+
+            @Override
+            public void onRmsChanged(float rmsdB) {
+                listener.onRmsChanged(rmsdB);
+            }
         });
     }
 
+    /**
+     * Enables interim transcripts through {@link SpeechResultListener#onPartialResult(String)}.
+     */
+    public void setPartialResultsEnabled(boolean enabled) {
+        speakToTextHelper.setPartialResultsEnabled(enabled);
+    }
+
     public void startListening() {
         speakToTextHelper.startListening("bn-BD"); // Default to Bangla (Bangladesh)
     }
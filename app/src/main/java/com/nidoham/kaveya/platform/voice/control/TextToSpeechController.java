@@ -2,6 +2,7 @@ package com.nidoham.kaveya.platform.voice.control;
 
 import android.content.Context;
 import android.util.Log;
+import com.nidoham.kaveya.platform.voice.kotlin.SentenceStreamSpeaker;
 import com.nidoham.kaveya.platform.voice.kotlin.TextToSpeechHandler;
 
 public class TextToSpeechController {
@@ -9,9 +10,16 @@ public class TextToSpeechController {
     private static final float DEFAULT_SPEECH_RATE = 1.0f;
 
     private final TextToSpeechHandler ttsHandler;
+    private SentenceStreamSpeaker replyStream;
 
     public interface SpeechCompletionListener {
         void onSpeechCompleted(boolean success);
+
+        /**
+         * Audio started playing for the text passed to {@link #speak(String)}, or for the first
+         * sentence of a streaming reply.
+         */
+        default void onSpeechStarted() {}
     }
 
     /**
@@ -21,10 +29,20 @@ public class TextToSpeechController {
      * @param listener Optional listener to receive speech completion callbacks.
      */
     public TextToSpeechController(Context context, SpeechCompletionListener listener) {
-        this.ttsHandler = new TextToSpeechHandler(context, success -> {
-            if (listener != null) {
-                listener.onSpeechCompleted(success);
-                Log.d(TAG, "Speech completed with success: " + success);
+        this.ttsHandler = new TextToSpeechHandler(context, new TextToSpeechHandler.SpeechCallback() {
+            @Override
+            public void onSpeechCompleted(boolean success) {
+                if (listener != null) {
+                    listener.onSpeechCompleted(success);
+                    Log.d(TAG, "Speech completed with success: " + success);
+                }
+            }
+
+            @Override
+            public void onSpeechStarted() {
+                if (listener != null) {
+                    listener.onSpeechStarted();
+                }
             }
         });
         ttsHandler.setSpeechRate(DEFAULT_SPEECH_RATE);
@@ -59,6 +77,39 @@ public class TextToSpeechController {
         }
     }
 
+    /**
+     * Starts speaking a reply that is still being generated. Feed it with
+     * {@link #appendStreamingSpeech(String)} and close it with {@link #finishStreamingSpeech()};
+     * the completion listener fires once, after the last sentence. Main thread only.
+     */
+    public void startStreamingSpeech() {
+        replyStream = ttsHandler.startStream();
+        Log.d(TAG, "Streaming speech started");
+    }
+
+    /**
+     * Adds the next piece of the streaming reply. Complete sentences are spoken right away.
+     *
+     * @param delta The newly generated text.
+     */
+    public void appendStreamingSpeech(String delta) {
+        if (replyStream == null || delta == null) {
+            return;
+        }
+        replyStream.append(delta);
+    }
+
+    /**
+     * Marks the streaming reply as complete and speaks any trailing partial sentence.
+     */
+    public void finishStreamingSpeech() {
+        if (replyStream == null) {
+            return;
+        }
+        replyStream.finish();
+        replyStream = null;
+    }
+
     /**
      * Sets the speech rate.
      *
@@ -71,18 +122,20 @@ public class TextToSpeechController {
     }
 
     /**
-     * Stops any ongoing speech.
+     * Stops any ongoing speech started by this controller.
      */
     public void stop() {
+        replyStream = null;
         ttsHandler.stop();
         Log.d(TAG, "Speech stopped");
     }
 
     /**
-     * Releases TextToSpeech resources. Must be called when the controller is no longer needed
-     * (e.g., in onDestroy).
+     * Stops this controller's speech and releases its language identifier. The shared engine stays
+     * bound for other callers. Must be called when the controller is no longer needed (e.g., in onDestroy).
      */
     public void shutdown() {
+        replyStream = null;
         ttsHandler.shutdown();
         Log.d(TAG, "TextToSpeechController shut down");
     }
@@ -0,0 +1,247 @@
+package com.nidoham.kaveya.platform.voice.kotlin
+
+import android.os.Handler
+import android.os.Looper
+import android.os.SystemClock
+import android.util.Log
+import androidx.annotation.VisibleForTesting
+import com.google.mlkit.nl.languageid.LanguageIdentifier
+import com.nidoham.kaveya.platform.voice.SpeechService
+import java.util.ArrayDeque
+import java.util.Locale
+import java.util.concurrent.CancellationException
+
+/**
+ * Speaks a reply while it is still streaming in.
+ *
+ * Text passed to [append] is cut into sentences; each complete sentence gets its own language-id
+ * pass and is queued on the [SpeechService] behind the previous one, so audio starts after the
+ * first sentence instead of after the whole reply. Sentences are spoken in arrival order even if
+ * their language detection finishes out of order. Call [finish] once the reply is complete.
+ * All methods and listener callbacks run on the main thread.
+ */
+class SentenceStreamSpeaker internal constructor(
+    private val speechService: SpeechService,
+    private val owner: Any,
+    private val languageIdentifier: LanguageIdentifier,
+    private val listener: Listener?
+) {
+    interface Listener {
+        /**
+         * The first sentence started playing, [latencyMs] after the stream was opened.
+         */
+        fun onFirstAudio(latencyMs: Long)
+
+        /**
+         * Every sentence has been spoken. Not called if the stream was cancelled.
+         */
+        fun onFinished(success: Boolean)
+    }
+
+    private class Chunk(val text: String) {
+        var locale: Locale? = null
+    }
+
+    private val mainHandler = Handler(Looper.getMainLooper())
+    private val buffer = StringBuilder()
+    // Sentences waiting for language detection, in speaking order
+    private val pending = ArrayDeque<Chunk>()
+    private val openedAt = SystemClock.elapsedRealtime()
+    private var lastLocale: Locale = Locale.US
+    private var chunkCount = 0
+    private var speaking = 0
+    private var finished = false
+    private var cancelled = false
+    private var reported = false
+    private var success = true
+
+    /**
+     * Adds the next piece of the reply; any sentences it completes are queued for speech.
+     */
+    fun append(delta: String) {
+        if (finished || cancelled || delta.isEmpty()) return
+        buffer.append(delta)
+
+        var start = 0
+        var end = nextBoundary(buffer, start)
+        while (end > 0) {
+            enqueue(buffer.substring(start, end))
+            start = end
+            end = nextBoundary(buffer, start)
+        }
+        buffer.delete(0, start)
+    }
+
+    /**
+     * Marks the reply as complete and speaks whatever is left in the buffer.
+     */
+    fun finish() {
+        if (finished || cancelled) return
+        enqueue(buffer.toString())
+        buffer.setLength(0)
+        finished = true
+        maybeReportFinished()
+    }
+
+    /**
+     * Drops unspoken sentences and stops the owner's speech.
+     */
+    fun cancel() {
+        if (cancelled) return
+        cancelled = true
+        pending.clear()
+        buffer.setLength(0)
+        speechService.stop(owner)
+    }
+
+    private fun enqueue(text: String) {
+        val trimmed = text.trim()
+        if (trimmed.isEmpty()) return
+
+        val chunk = Chunk(trimmed)
+        pending.add(chunk)
+        languageIdentifier.identifyLanguage(trimmed)
+            .addOnSuccessListener { languageCode ->
+                chunk.locale = if (languageCode != "und") Locale(languageCode) else lastLocale
+                drain()
+            }
+            .addOnFailureListener { exception ->
+                Log.w(TAG, "Language detection failed for chunk", exception)
+                chunk.locale = lastLocale
+                drain()
+            }
+    }
+
+    private fun drain() {
+        while (!cancelled) {
+            val locale = pending.peekFirst()?.locale ?: break
+            val chunk = pending.removeFirst()
+            lastLocale = locale
+            speak(chunk.text, locale)
+        }
+        maybeReportFinished()
+    }
+
+    private fun speak(text: String, locale: Locale) {
+        // The first sentence replaces anything this owner was still saying; the rest append
+        val first = chunkCount == 0
+        chunkCount++
+        speaking++
+        val utterance = speechService.speak(owner, text, locale, first)
+        Log.d(TAG, "Queued sentence ${utterance.id} ($locale, ${text.length} chars)")
+
+        if (first) {
+            utterance.started.thenAccept { startedAt ->
+                mainHandler.post {
+                    if (!cancelled) listener?.onFirstAudio(startedAt - openedAt)
+                }
+            }
+        }
+        utterance.completion.whenComplete { done, error ->
+            mainHandler.post {
+                speaking--
+                if (error is CancellationException) {
+                    cancelled = true
+                } else if (error != null || done != true) {
+                    success = false
+                }
+                maybeReportFinished()
+            }
+        }
+    }
+
+    private fun maybeReportFinished() {
+        if (reported || cancelled || !finished || pending.isNotEmpty() || speaking > 0) return
+        reported = true
+        Log.d(TAG, "Stream spoken in $chunkCount sentence(s), success: $success")
+        listener?.onFinished(success && chunkCount > 0)
+    }
+
+    companion object {
+        private const val TAG = "SentenceStreamSpeaker"
+        private const val MAX_CHUNK_CHARS = 240
+        private const val TERMINATORS = ".!?।…"
+        private const val CLOSERS = "\"')]”’"
+        private const val OPENERS = "\"'([“‘"
+        // Words whose trailing period does not end the sentence, lower case and without that period
+        private val ABBREVIATIONS = setOf("e.g", "i.e", "mr", "mrs", "ms", "dr", "vs")
+
+        /**
+         * Returns the end index (exclusive) of the first sentence in [text] starting at [from], or
+         * -1 if it does not yet hold a complete one.
+         */
+        @VisibleForTesting
+        internal fun nextBoundary(text: CharSequence, from: Int): Int {
+            var i = from
+            while (i < text.length) {
+                val c = text[i]
+                if (c == '\n') return i + 1
+                if (c in TERMINATORS) {
+                    var j = i + 1
+                    while (j < text.length && text[j] in CLOSERS) j++
+                    // Wait for the next character: the period in "3.5" is not a sentence end
+                    if (j >= text.length) return -1
+                    if (!text[j].isWhitespace()) {
+                        i++
+                        continue
+                    }
+                    if (c != '.') return j + 1
+                    val word = wordStart(text, from, i)
+                    if (isInitial(text, word, i)) {
+                        // "J. R. Tolkien" continues but "Plan A. Next" does not; wait to see which
+                        if (j + 2 >= text.length) return -1
+                        if (!isInitialRun(text, from, word, j + 1)) return j + 1
+                    } else if (!isAbbreviation(text, word, i)) {
+                        return j + 1
+                    }
+                }
+                i++
+            }
+            if (text.length - from >= MAX_CHUNK_CHARS) {
+                // No sentence end in sight; break at a word so the engine is never starved
+                var space = minOf(from + MAX_CHUNK_CHARS, text.length - 1)
+                while (space > from && text[space] != ' ') space--
+                return if (space > from) space + 1 else from + MAX_CHUNK_CHARS
+            }
+            return -1
+        }
+
+        /**
+         * Returns where the word ending at [dot] starts, past any opening quotes or brackets.
+         */
+        private fun wordStart(text: CharSequence, from: Int, dot: Int): Int {
+            var start = dot
+            while (start > from && !text[start - 1].isWhitespace()) start--
+            while (start < dot && text[start] in OPENERS) start++
+            return start
+        }
+
+        /**
+         * True if the period at [dot] closes an abbreviation such as "e.g." or "Dr.", rather than
+         * a sentence.
+         */
+        private fun isAbbreviation(text: CharSequence, start: Int, dot: Int): Boolean {
+            return text.subSequence(start, dot).toString().lowercase(Locale.ROOT) in ABBREVIATIONS
+        }
+
+        /**
+         * True if the word before [dot] is a single capital that could be an initial. "I" is
+         * excluded since "So did I." is far more common than an initial I.
+         */
+        private fun isInitial(text: CharSequence, start: Int, dot: Int): Boolean {
+            return dot - start == 1 && text[start].isUpperCase() && text[start] != 'I'
+        }
+
+        /**
+         * True if the initial starting at [start] is part of a run such as "J. R. R.": the word at
+         * [next] or the word before it is an initial too. A lone capital like "Plan A." is not.
+         */
+        private fun isInitialRun(text: CharSequence, from: Int, start: Int, next: Int): Boolean {
+            if (text[next].isUpperCase() && text[next + 1] == '.') return true
+            val previousDot = start - 2
+            if (previousDot <= from || text[start - 1] != ' ' || text[previousDot] != '.') return false
+            val previous = wordStart(text, from, previousDot)
+            return isInitial(text, previous, previousDot)
+        }
+    }
+}
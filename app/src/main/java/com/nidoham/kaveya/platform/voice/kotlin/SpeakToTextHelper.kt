@@ -2,71 +2,128 @@ package com.nidoham.kaveya.platform.voice.kotlin
 
 import android.content.Context
 import android.content.Intent
+import android.os.Build
 import android.os.Bundle
+import android.os.SystemClock
 import android.speech.RecognitionListener
 import android.speech.RecognizerIntent
 import android.speech.SpeechRecognizer
 import android.util.Log
 import com.google.mlkit.nl.languageid.LanguageIdentification
 import com.google.mlkit.nl.languageid.LanguageIdentificationOptions
+import com.nidoham.kaveya.platform.voice.RecognitionPolicy
 
 class SpeakToTextHelper(private val context: Context, private val callback: SpeechCallback) {
-    private val speechRecognizer: SpeechRecognizer = SpeechRecognizer.createSpeechRecognizer(context)
     private val languageIdentifier = LanguageIdentification.getClient(
         LanguageIdentificationOptions.Builder()
             .setConfidenceThreshold(0.7f)
             .build()
     )
+    private val policy = RecognitionPolicy.getInstance()
+
+    /**
+     * Streaming mode: when true, the recognizer reports interim transcripts through
+     * [SpeechCallback.onPartialResult] while the user is still talking. Applies from the next
+     * [startListening].
+     */
+    var partialResultsEnabled = false
+
+    // The request in flight: which path serves it and when its phases happened
+    private var requestLanguage = DEFAULT_LANGUAGE
+    private var requestPath = RecognitionPolicy.Path.ONLINE
+    private var requestStartedAt = 0L
+    private var speechEndedAt = 0L
+    private var speechBegan = false
+    private var fellBack = false
+    private var stoppedByUser = false
 
     interface SpeechCallback {
         fun onSpeechResult(text: String, language: String)
         fun onError(error: String)
-    }
 
-    init {
-        setupSpeechRecognizer()
+        /** The recognizer is listening. */
+        fun onReadyForSpeech() {}
+
+        /** The user started talking. */
+        fun onSpeechStarted() {}
+
+        /** The user stopped talking; the final result follows. */
+        fun onSpeechEnded() {}
+
+        /** Interim transcript of what has been said so far; only in streaming mode. */
+        fun onPartialResult(text: String) {}
+
+        /** Input level in dB, many times per second. Keep it cheap: no posting or allocation. */
+        fun onRmsChanged(rmsdB: Float) {}
     }
 
-    private fun setupSpeechRecognizer() {
-        speechRecognizer.setRecognitionListener(object : RecognitionListener {
-            override fun onReadyForSpeech(params: Bundle?) {
-                Log.d(TAG, "Ready for speech")
-            }
+    private val recognitionListener = object : RecognitionListener {
+        override fun onReadyForSpeech(params: Bundle?) {
+            Log.d(TAG, "Ready for speech")
+            callback.onReadyForSpeech()
+        }
 
-            override fun onBeginningOfSpeech() {
-                Log.d(TAG, "Speech began")
-            }
+        override fun onBeginningOfSpeech() {
+            Log.d(TAG, "Speech began")
+            speechBegan = true
+            callback.onSpeechStarted()
+        }
+
+        override fun onRmsChanged(rmsdB: Float) {
+            callback.onRmsChanged(rmsdB)
+        }
+        override fun onBufferReceived(buffer: ByteArray?) {}
+        override fun onEndOfSpeech() {
+            Log.d(TAG, "Speech ended")
+            speechEndedAt = SystemClock.elapsedRealtime()
+            callback.onSpeechEnded()
+        }
 
-            override fun onRmsChanged(rmsdB: Float) {}
-            override fun onBufferReceived(buffer: ByteArray?) {}
-            override fun onEndOfSpeech() {
-                Log.d(TAG, "Speech ended")
+        override fun onError(error: Int) {
+            if (requestPath == RecognitionPolicy.Path.ON_DEVICE && !fellBack && !speechBegan
+                && !stoppedByUser && policy.isOnDeviceFailure(error)) {
+                // Nothing was heard yet, so the user does not notice the retry
+                policy.reportOnDeviceFailure(requestLanguage, error)
+                fellBack = true
+                listen(RecognitionPolicy.Path.ONLINE)
+                return
             }
 
-            override fun onError(error: Int) {
-                val errorMsg = when (error) {
-                    SpeechRecognizer.ERROR_NO_MATCH -> "No speech match found"
-                    SpeechRecognizer.ERROR_SPEECH_TIMEOUT -> "Speech timeout"
-                    SpeechRecognizer.ERROR_RECOGNIZER_BUSY -> "Recognizer busy"
-                    SpeechRecognizer.ERROR_INSUFFICIENT_PERMISSIONS -> "Insufficient permissions"
-                    else -> "Speech recognition error: $error"
-                }
-                Log.e(TAG, errorMsg)
-                callback.onError(errorMsg)
+            val errorMsg = when (error) {
+                SpeechRecognizer.ERROR_NO_MATCH -> "No speech match found"
+                SpeechRecognizer.ERROR_SPEECH_TIMEOUT -> "Speech timeout"
+                SpeechRecognizer.ERROR_RECOGNIZER_BUSY -> "Recognizer busy"
+                SpeechRecognizer.ERROR_INSUFFICIENT_PERMISSIONS -> "Insufficient permissions"
+                else -> "Speech recognition error: $error"
             }
+            Log.e(TAG, errorMsg)
+            callback.onError(errorMsg)
+        }
+
+        override fun onResults(results: Bundle?) {
+            recordRequest(results)
+            val matches = results?.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION)
+            matches?.firstOrNull()?.let { text ->
+                Log.d(TAG, "Recognized text: $text")
+                identifyLanguage(text)
+            } ?: callback.onError("No speech results")
+        }
 
-            override fun onResults(results: Bundle?) {
-                val matches = results?.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION)
-                matches?.firstOrNull()?.let { text ->
-                    Log.d(TAG, "Recognized text: $text")
-                    identifyLanguage(text)
-                } ?: callback.onError("No speech results")
+        override fun onPartialResults(partialResults: Bundle?) {
+            val text = partialResults?.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION)?.firstOrNull()
+            if (!text.isNullOrBlank()) {
+                callback.onPartialResult(text)
             }
+        }
+        override fun onEvent(eventType: Int, params: Bundle?) {}
+    }
 
-            override fun onPartialResults(partialResults: Bundle?) {}
-            override fun onEvent(eventType: Int, params: Bundle?) {}
-        })
+    private val speechRecognizer: SpeechRecognizer = SpeechRecognizer.createSpeechRecognizer(context).apply {
+        setRecognitionListener(recognitionListener)
     }
+    // Dedicated on-device recognizer (Android 12+), created on the first on-device request
+    private var onDeviceRecognizer: SpeechRecognizer? = null
+    private var activeRecognizer: SpeechRecognizer = speechRecognizer
 
     private fun identifyLanguage(text: String) {
         languageIdentifier.identifyLanguage(text)
@@ -81,35 +138,83 @@ class SpeakToTextHelper(private val context: Context, private val callback: Spee
             }
     }
 
-    fun startListening(languageCode: String? = "bn-BD") {
+    private fun recordRequest(results: Bundle?) {
+        val now = SystemClock.elapsedRealtime()
+        val confidence = results?.getFloatArray(SpeechRecognizer.CONFIDENCE_SCORES)?.firstOrNull() ?: -1f
+        policy.record(
+            requestLanguage, requestPath, fellBack,
+            now - requestStartedAt,
+            if (speechEndedAt > 0) now - speechEndedAt else -1,
+            confidence
+        )
+    }
+
+    /**
+     * Starts listening. The [RecognitionPolicy] picks on-device or online recognition for the
+     * language; a failed on-device attempt is retried online before anything is reported.
+     */
+    fun startListening(languageCode: String? = DEFAULT_LANGUAGE) {
+        requestLanguage = languageCode ?: DEFAULT_LANGUAGE
+        fellBack = false
+        listen(policy.choosePath(context, requestLanguage))
+    }
+
+    private fun listen(path: RecognitionPolicy.Path) {
+        val onDevice = path == RecognitionPolicy.Path.ON_DEVICE
+        requestPath = path
+        requestStartedAt = SystemClock.elapsedRealtime()
+        speechEndedAt = 0L
+        speechBegan = false
+        stoppedByUser = false
+        activeRecognizer = if (onDevice) onDeviceRecognizer() ?: speechRecognizer else speechRecognizer
+
         val intent = Intent(RecognizerIntent.ACTION_RECOGNIZE_SPEECH).apply {
             putExtra(RecognizerIntent.EXTRA_LANGUAGE_MODEL, RecognizerIntent.LANGUAGE_MODEL_FREE_FORM)
-            putExtra(RecognizerIntent.EXTRA_LANGUAGE, languageCode ?: "bn-BD")
-            putExtra(RecognizerIntent.EXTRA_LANGUAGE_PREFERENCE, languageCode ?: "bn-BD")
+            putExtra(RecognizerIntent.EXTRA_LANGUAGE, requestLanguage)
+            putExtra(RecognizerIntent.EXTRA_LANGUAGE_PREFERENCE, requestLanguage)
             putExtra(RecognizerIntent.EXTRA_MAX_RESULTS, 1)
-            putExtra(RecognizerIntent.EXTRA_PREFER_OFFLINE, false) // Prefer online for better accuracy
+            putExtra(RecognizerIntent.EXTRA_PARTIAL_RESULTS, partialResultsEnabled)
+            putExtra(RecognizerIntent.EXTRA_PREFER_OFFLINE, onDevice)
         }
         try {
-            speechRecognizer.startListening(intent)
-            Log.d(TAG, "Started listening with language: ${languageCode ?: "bn-BD"}")
+            activeRecognizer.startListening(intent)
+            Log.d(TAG, "Started listening with language: $requestLanguage via $path")
         } catch (e: Exception) {
             Log.e(TAG, "Error starting speech recognition", e)
             callback.onError("Failed to start speech recognition")
         }
     }
 
+    /**
+     * Returns the dedicated on-device recognizer, or null before Android 12 or when the device
+     * has none; the default recognizer with EXTRA_PREFER_OFFLINE is used then.
+     */
+    private fun onDeviceRecognizer(): SpeechRecognizer? {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S) return null
+        onDeviceRecognizer?.let { return it }
+        if (!SpeechRecognizer.isOnDeviceRecognitionAvailable(context)) return null
+        return SpeechRecognizer.createOnDeviceSpeechRecognizer(context).also {
+            it.setRecognitionListener(recognitionListener)
+            onDeviceRecognizer = it
+        }
+    }
+
     fun stopListening() {
-        speechRecognizer.stopListening()
+        stoppedByUser = true
+        activeRecognizer.stopListening()
         Log.d(TAG, "Stopped listening")
     }
 
     fun destroy() {
         speechRecognizer.destroy()
+        onDeviceRecognizer?.destroy()
+        onDeviceRecognizer = null
         languageIdentifier.close()
         Log.d(TAG, "SpeechRecognizer and language identifier destroyed")
     }
 
     companion object {
         private const val TAG = "SpeakToTextHelper"
+        private const val DEFAULT_LANGUAGE = "bn-BD"
     }
-}
\ No newline at end of file
+}
@@ -1,16 +1,20 @@
 package com.nidoham.kaveya.platform.voice.kotlin
 
 import android.content.Context
-import android.speech.tts.TextToSpeech
-import android.speech.tts.UtteranceProgressListener
 import android.util.Log
 import com.google.mlkit.nl.languageid.LanguageIdentification
 import com.google.mlkit.nl.languageid.LanguageIdentificationOptions
+import com.nidoham.kaveya.platform.voice.SpeechService
 import java.util.Locale
 
+/**
+ * Speaks text through the shared [SpeechService] after detecting its language. Each handler is
+ * its own owner on the shared engine, so [stop] and [shutdown] only affect its own speech.
+ */
 class TextToSpeechHandler(context: Context, private val callback: SpeechCallback? = null) {
-    private var textToSpeech: TextToSpeech? = null
-    private var isInitialized = false
+    private val speechService = SpeechService.getInstance(context)
+    private var isShutdown = false
+    private var activeStream: SentenceStreamSpeaker? = null
     private val languageIdentifier = LanguageIdentification.getClient(
         LanguageIdentificationOptions.Builder()
             .setConfidenceThreshold(0.7f)
@@ -19,46 +23,15 @@ class TextToSpeechHandler(context: Context, private val callback: SpeechCallback
 
     interface SpeechCallback {
         fun onSpeechCompleted(success: Boolean)
-    }
-
-    init {
-        textToSpeech = TextToSpeech(context) { status ->
-            if (status == TextToSpeech.SUCCESS) {
-                val result = textToSpeech?.setLanguage(Locale.US)
-                if (result == TextToSpeech.LANG_MISSING_DATA || result == TextToSpeech.LANG_NOT_SUPPORTED) {
-                    Log.e(TAG, "Default language (US English) not supported or missing data")
-                } else {
-                    isInitialized = true
-                    setupUtteranceListener()
-                    Log.d(TAG, "TextToSpeech initialized successfully")
-                }
-            } else {
-                Log.e(TAG, "TextToSpeech initialization failed with status: $status")
-            }
-        }
-    }
 
-    private fun setupUtteranceListener() {
-        textToSpeech?.setOnUtteranceProgressListener(object : UtteranceProgressListener() {
-            override fun onStart(utteranceId: String?) {
-                Log.d(TAG, "Speech started for utterance: $utteranceId")
-            }
-
-            override fun onDone(utteranceId: String?) {
-                Log.d(TAG, "Speech completed successfully for utterance: $utteranceId")
-                callback?.onSpeechCompleted(true)
-            }
-
-            override fun onError(utteranceId: String?) {
-                Log.e(TAG, "Speech error for utterance: $utteranceId")
-                callback?.onSpeechCompleted(false)
-            }
-        })
+        /** Audio for the requested text started playing. */
+        fun onSpeechStarted() {}
     }
 
     fun speak(text: String) {
-        if (!isInitialized) {
-            Log.e(TAG, "TextToSpeech not initialized")
+        cancelStream()
+        if (isShutdown) {
+            Log.e(TAG, "TextToSpeechHandler already shut down")
             callback?.onSpeechCompleted(false)
             return
         }
@@ -73,51 +46,73 @@ class TextToSpeechHandler(context: Context, private val callback: SpeechCallback
             .addOnSuccessListener { languageCode ->
                 val locale = if (languageCode != "und") Locale(languageCode) else Locale.US
                 Log.d(TAG, "Detected language: $languageCode")
-                setLanguage(locale)
-                textToSpeech?.speak(text, TextToSpeech.QUEUE_FLUSH, null, "SpeechUtterance")
+                enqueue(text, locale)
             }
             .addOnFailureListener { exception ->
                 Log.e(TAG, "Language detection failed", exception)
-                setLanguage(Locale.US)
-                textToSpeech?.speak(text, TextToSpeech.QUEUE_FLUSH, null, "SpeechUtterance")
+                enqueue(text, Locale.US)
             }
     }
 
-    fun setSpeechRate(rate: Float) {
-        if (isInitialized) {
-            textToSpeech?.setSpeechRate(rate.coerceIn(0.1f, 2.0f))
-        } else {
-            Log.e(TAG, "Cannot set speech rate: TextToSpeech not initialized")
+    private fun enqueue(text: String, locale: Locale) {
+        if (isShutdown) return
+        val utterance = speechService.speak(this, text, locale, true)
+        Log.d(TAG, "Queued utterance ${utterance.id}")
+        utterance.started.thenAccept { callback?.onSpeechStarted() }
+        utterance.completion.thenAccept { success ->
+            Log.d(TAG, "Utterance ${utterance.id} finished, success: $success")
+            callback?.onSpeechCompleted(success)
         }
     }
 
-    private fun setLanguage(locale: Locale) {
-        if (isInitialized) {
-            val result = textToSpeech?.setLanguage(locale)
-            if (result == TextToSpeech.LANG_MISSING_DATA || result == TextToSpeech.LANG_NOT_SUPPORTED) {
-                Log.e(TAG, "Language not supported or missing data: $locale")
-                textToSpeech?.setLanguage(Locale.US)
-            } else {
-                Log.d(TAG, "Language set to: $locale")
-            }
+    /**
+     * Opens a pipelined reply: text fed to the returned speaker is spoken sentence by sentence
+     * as it arrives. Replaces any stream still open on this handler. [callback] is told once
+     * the whole reply has been spoken.
+     */
+    fun startStream(): SentenceStreamSpeaker {
+        cancelStream()
+        val stream = SentenceStreamSpeaker(speechService, this, languageIdentifier,
+            object : SentenceStreamSpeaker.Listener {
+                override fun onFirstAudio(latencyMs: Long) {
+                    Log.d(TAG, "First audio ${latencyMs}ms after the reply started streaming")
+                    callback?.onSpeechStarted()
+                }
+
+                override fun onFinished(success: Boolean) {
+                    callback?.onSpeechCompleted(success)
+                }
+            })
+        if (isShutdown) {
+            Log.e(TAG, "TextToSpeechHandler already shut down")
+            stream.cancel()
         } else {
-            Log.e(TAG, "Cannot set language: TextToSpeech not initialized")
+            activeStream = stream
         }
+        return stream
+    }
+
+    fun setSpeechRate(rate: Float) {
+        speechService.setSpeechRate(rate.coerceIn(0.1f, 2.0f))
     }
 
     fun stop() {
-        if (isInitialized) {
-            textToSpeech?.stop()
-        }
+        cancelStream()
+        speechService.stop(this)
+    }
+
+    private fun cancelStream() {
+        activeStream?.cancel()
+        activeStream = null
     }
 
     fun shutdown() {
-        textToSpeech?.stop()
-        textToSpeech?.shutdown()
-        textToSpeech = null
-        isInitialized = false
+        // The engine is shared by the whole app and stays bound; only drop our own speech
+        cancelStream()
+        speechService.stop(this)
+        isShutdown = true
         languageIdentifier.close()
-        Log.d(TAG, "TextToSpeech and language identifier shut down")
+        Log.d(TAG, "TextToSpeechHandler and language identifier shut down")
     }
 
     companion object {
@@ -17,6 +17,38 @@ public class VoiceRecognition {
         void onSpeechResult(String text, String language);
         void onSpeechError(String error);
         void onSpeechCompleted(boolean success);
+
+        /**
+         * The recognizer is ready and listening.
+         */
+        default void onListeningReady() {}
+
+        /**
+         * The user started talking. Also fires while a reply is playing if the recognizer is armed.
+         */
+        default void onUserSpeechStarted() {}
+
+        /**
+         * The user stopped talking; the final result follows.
+         */
+        default void onUserSpeechEnded() {}
+
+        /**
+         * Text-to-speech audio started playing.
+         */
+        default void onSpeechStarted() {}
+
+        /**
+         * Interim transcript while the user is still talking. Only called in streaming mode,
+         * see {@link #setStreamingEnabled(boolean)}.
+         */
+        default void onPartialResult(String text) {}
+
+        /**
+         * Microphone level in dB while the recognizer listens. Called many times per second, so
+         * implementations should hand the value on without posting or allocating.
+         */
+        default void onRmsChanged(float rmsdB) {}
     }
 
     /**
@@ -38,11 +70,44 @@ public class VoiceRecognition {
                 Log.e(TAG, "Speech recognition error: " + error);
                 callback.onSpeechError(error);
             }
+
+            @Override
+            public void onReadyForSpeech() {
+                callback.onListeningReady();
+            }
+
+            @Override
+            public void onSpeechStarted() {
+                callback.onUserSpeechStarted();
+            }
+
+            @Override
+            public void onSpeechEnded() {
+                callback.onUserSpeechEnded();
+            }
+
+            @Override
+            public void onPartialResult(String text) {
+                callback.onPartialResult(text);
+            }
+
+            @Override
+            public void onRmsChanged(float rmsdB) {
+                callback.onRmsChanged(rmsdB);
+            }
         });
 
-        ttsController = new TextToSpeechController(context, success -> {
-            Log.d(TAG, "TTS completed with success: " + success);
-            callback.onSpeechCompleted(success);
+        ttsController = new TextToSpeechController(context, new TextToSpeechController.SpeechCompletionListener() {
+            @Override
+            public void onSpeechCompleted(boolean success) {
+                Log.d(TAG, "TTS completed with success: " + success);
+                callback.onSpeechCompleted(success);
+            }
+
+            @Override
+            public void onSpeechStarted() {
+                callback.onSpeechStarted();
+            }
         });
 
         // Set default speech rate
@@ -67,6 +132,17 @@ public class VoiceRecognition {
         sttController.startListening(languageCode);
     }
 
+    /**
+     * Enables streaming recognition: interim transcripts are delivered through
+     * {@link VoiceCallback#onPartialResult(String)} from the next {@link #startListening()}.
+     *
+     * @param enabled True to stream partial results.
+     */
+    public void setStreamingEnabled(boolean enabled) {
+        Log.d(TAG, "Streaming recognition " + (enabled ? "enabled" : "disabled"));
+        sttController.setPartialResultsEnabled(enabled);
+    }
+
     /**
      * Stops speech recognition.
      */
@@ -85,6 +161,31 @@ public class VoiceRecognition {
         ttsController.speak(text);
     }
 
+    /**
+     * Starts speaking a reply while it streams in, one sentence at a time. Main thread only.
+     */
+    public void beginReply() {
+        Log.d(TAG, "Beginning streamed reply");
+        ttsController.startStreamingSpeech();
+    }
+
+    /**
+     * Adds the next piece of the streamed reply.
+     *
+     * @param delta The newly generated text.
+     */
+    public void appendReply(String delta) {
+        ttsController.appendStreamingSpeech(delta);
+    }
+
+    /**
+     * Marks the streamed reply as complete; speech completion is reported once it has all been spoken.
+     */
+    public void finishReply() {
+        Log.d(TAG, "Finishing streamed reply");
+        ttsController.finishStreamingSpeech();
+    }
+
     /**
      * Sets the speech rate for text-to-speech.
      *
@@ -95,6 +196,14 @@ public class VoiceRecognition {
         ttsController.setSpeechRate(rate);
     }
 
+    /**
+     * Stops text-to-speech only; recognition keeps running. Used when the user talks over a reply.
+     */
+    public void stopSpeaking() {
+        Log.d(TAG, "Stopping TTS");
+        ttsController.stop();
+    }
+
     /**
      * Stops any ongoing speech (both recognition and TTS).
      */
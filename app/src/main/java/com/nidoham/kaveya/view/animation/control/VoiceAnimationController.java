@@ -57,6 +57,16 @@ public class VoiceAnimationController {
         voiceAnimationView.setAmplitude(amplitude);
     }
 
+    /**
+     * Feeds a speech recognizer RMS level. Lock-free and allocation-free, so it can be called
+     * straight from {@code RecognitionListener.onRmsChanged}.
+     *
+     * @param rmsdB Input level in dB as reported by the recognizer.
+     */
+    public void offerRmsDb(float rmsdB) {
+        voiceAnimationView.offerRmsDb(rmsdB);
+    }
+
     /**
      * Sets custom colors for the animation.
      *
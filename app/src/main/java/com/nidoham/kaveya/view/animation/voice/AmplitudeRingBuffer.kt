@@ -0,0 +1,68 @@
+package com.nidoham.kaveya.view.animation.voice
+
+/**
+ * Lock-free single-producer/single-consumer queue of amplitude samples.
+ *
+ * [offer] is called for every RMS callback, which `RecognitionListener` delivers on the main
+ * thread, and the animation frame calls [drainPeak], also on the main thread; neither side
+ * blocks or allocates. The producer may also be a background thread: each index is only written
+ * by its own side and published through a volatile write, so no locks or CAS loops are needed.
+ * When the consumer falls behind, new samples are dropped rather than overwriting unread ones.
+ */
+class AmplitudeRingBuffer(capacity: Int) {
+    private val samples: FloatArray
+    private val mask: Int
+
+    // Next slot to write; written by the producer only
+    @Volatile
+    private var head = 0L
+
+    // Next slot to read; written by the consumer only
+    @Volatile
+    private var tail = 0L
+
+    init {
+        require(capacity > 0) { "Capacity must be positive" }
+        var size = 1
+        while (size < capacity) size = size shl 1
+        samples = FloatArray(size)
+        mask = size - 1
+    }
+
+    /**
+     * Producer side. Returns false if the buffer is full and the sample was dropped.
+     */
+    fun offer(value: Float): Boolean {
+        val h = head
+        if (h - tail >= samples.size) return false
+        samples[(h and mask.toLong()).toInt()] = value
+        head = h + 1 // Publishes the sample
+        return true
+    }
+
+    /**
+     * Consumer side. Consumes every pending sample and returns the largest, or [fallback] if
+     * nothing arrived since the last call.
+     */
+    fun drainPeak(fallback: Float): Float {
+        var t = tail
+        val h = head
+        if (t == h) return fallback
+        var peak = samples[(t and mask.toLong()).toInt()]
+        t++
+        while (t < h) {
+            val sample = samples[(t and mask.toLong()).toInt()]
+            if (sample > peak) peak = sample
+            t++
+        }
+        tail = h
+        return peak
+    }
+
+    /**
+     * Consumer side. Discards pending samples, e.g. ones recorded before the animation started.
+     */
+    fun clear() {
+        tail = head
+    }
+}
@@ -10,6 +10,7 @@ import android.graphics.Shader
 import android.util.AttributeSet
 import android.view.View
 import android.view.animation.AccelerateDecelerateInterpolator
+import androidx.annotation.VisibleForTesting
 import androidx.core.content.ContextCompat
 import kotlin.math.min
 import kotlin.math.sin
@@ -29,7 +30,14 @@ class VoiceAnimationView @JvmOverloads constructor(
     private var glowRadius = 100f
     private var pulseAnimator: ValueAnimator? = null
     private var rippleAnimator: ValueAnimator? = null
-    private val ripples = mutableListOf<Ripple>()
+    // Fixed ripple pool: a slot with alpha <= 0 is free. Plain arrays keep frames allocation-free.
+    private val rippleRadius = FloatArray(MAX_RIPPLES)
+    private val rippleAlpha = FloatArray(MAX_RIPPLES)
+    private var nextRippleSlot = 0
+    private var activeRipples = 0
+    private var lastFrameTime = 0L
+    private var lastRippleTime = 0L
+    private val amplitudeFeed = AmplitudeRingBuffer(AMPLITUDE_BUFFER_SIZE)
     private var amplitude = 0f
     private var isAnimating = false
     private var isUserMode = false
@@ -122,9 +130,17 @@ class VoiceAnimationView @JvmOverloads constructor(
         invalidate()
     }
 
-    /** Sets the amplitude externally (e.g., from microphone input). */
+    /**
+     * Sets the amplitude externally (e.g., from microphone input). Safe to call from any single
+     * producer thread; the value is picked up on the next animation frame.
+     */
     fun setAmplitude(value: Float) {
-        amplitude = value.coerceIn(0f, 100f)
+        amplitudeFeed.offer(value.coerceIn(0f, 100f))
+    }
+
+    /** Feeds a recognizer RMS level in dB, as reported by `RecognitionListener.onRmsChanged`. */
+    fun offerRmsDb(rmsdB: Float) {
+        setAmplitude((rmsdB - MIN_RMS_DB) / (MAX_RMS_DB - MIN_RMS_DB) * 100f)
     }
 
     override fun onSizeChanged(w: Int, h: Int, oldw: Int, oldh: Int) {
@@ -138,9 +154,11 @@ class VoiceAnimationView @JvmOverloads constructor(
         canvas.translate(width / 2f, height / 2f)
         canvas.scale(scale, scale)
         canvas.drawCircle(0f, 0f, glowRadius, glowPaint)
-        for (ripple in ripples) {
-            ripplePaint.alpha = ripple.alpha.toInt() // Convert Float to Int for Paint.alpha
-            canvas.drawCircle(0f, 0f, ripple.radius, ripplePaint)
+        for (i in 0 until MAX_RIPPLES) {
+            val alpha = rippleAlpha[i]
+            if (alpha <= 0f) continue
+            ripplePaint.alpha = alpha.toInt()
+            canvas.drawCircle(0f, 0f, rippleRadius[i], ripplePaint)
         }
         canvas.drawCircle(0f, 0f, coreRadius, corePaint)
     }
@@ -154,84 +172,143 @@ class VoiceAnimationView @JvmOverloads constructor(
     }
 
     private fun startAnimation(duration: Long, isUser: Boolean) {
-        stopAnimation()
+        cancelAnimators()
         isUserMode = isUser
         isAddingRipples = true
+        // Samples recorded before this animation (e.g. while the AI spoke) are stale
+        amplitudeFeed.clear()
         setColors(isUser)
         startAnimationInternal(duration)
     }
 
     private fun startAnimationInternal(duration: Long) {
         isAnimating = true
-        pulseAnimator = ValueAnimator.ofFloat(minCoreRadius, maxCoreRadius).apply {
+        // Animate the fraction rather than a float value so frames do not box an animatedValue
+        pulseAnimator = ValueAnimator.ofFloat(0f, 1f).apply {
             this.duration = duration
             repeatCount = ValueAnimator.INFINITE
             repeatMode = ValueAnimator.REVERSE
             interpolator = AccelerateDecelerateInterpolator()
             addUpdateListener { animation ->
-                coreRadius = animation.animatedValue as Float
+                coreRadius = minCoreRadius + (maxCoreRadius - minCoreRadius) * animation.animatedFraction
                 invalidate()
             }
             start()
         }
+        startRippleAnimator()
+    }
 
+    private fun startRippleAnimator() {
+        lastFrameTime = 0L
+        lastRippleTime = -RIPPLE_INTERVAL_MS
         rippleAnimator = ValueAnimator.ofFloat(0f, 1f).apply {
-            this.duration = 100 // Slower ripple addition (was 50ms)
+            this.duration = 1000
             repeatCount = ValueAnimator.INFINITE
-            addUpdateListener {
-                if (!isUserMode || isAddingRipples) { // Only simulate amplitude in AI mode or if adding ripples
-                    amplitude = if (isUserMode) {
-                        amplitude // Use externally set value in user mode
-                    } else {
-                        val time = System.currentTimeMillis() % 1000 / 1000f
-                        (sin(time * 2 * Math.PI) * 50f + 50f).toFloat()
-                    }
-                }
-
-                if (isAddingRipples) {
-                    val rippleRadius = 50f + amplitude * 0.5f
-                    ripples.add(Ripple(rippleRadius, 100f)) // Use Float literal
-                }
-
-                val iterator = ripples.iterator()
-                while (iterator.hasNext()) {
-                    val ripple = iterator.next()
-                    ripple.radius += 2f
-                    ripple.alpha -= 1.5f // Slower fade for longer-lasting ripples
-                    if (ripple.alpha <= 0) {
-                        iterator.remove()
-                    }
-                }
-
-                glowRadius = 100f + amplitude * 0.3f
-                glowPaint.alpha = (50 + amplitude * 0.5f).toInt().coerceAtMost(100)
-                invalidate()
-            }
+            addUpdateListener { animation -> onRippleFrame(animation.currentPlayTime) }
             start()
         }
     }
 
+    @VisibleForTesting
+    internal fun onRippleFrame(playTime: Long) {
+        val elapsed = (playTime - lastFrameTime).coerceIn(0L, MAX_FRAME_STEP_MS)
+        lastFrameTime = playTime
+        val steps = elapsed / FRAME_MS
+
+        if (isAddingRipples) {
+            amplitude = if (isUserMode) {
+                // Newest microphone level, decaying when the recognizer goes quiet
+                amplitudeFeed.drainPeak(amplitude * AMPLITUDE_DECAY)
+            } else {
+                val time = playTime % 1000 / 1000f
+                (sin(time * 2 * Math.PI) * 50f + 50f).toFloat()
+            }
+
+            if (playTime - lastRippleTime >= RIPPLE_INTERVAL_MS) {
+                lastRippleTime = playTime
+                spawnRipple(50f + amplitude * 0.5f)
+            }
+        }
+
+        for (i in 0 until MAX_RIPPLES) {
+            if (rippleAlpha[i] <= 0f) continue
+            rippleRadius[i] += 2f * steps
+            rippleAlpha[i] -= 1.5f * steps // Slower fade for longer-lasting ripples
+            if (rippleAlpha[i] <= 0f) {
+                rippleAlpha[i] = 0f
+                activeRipples--
+            }
+        }
+
+        glowRadius = 100f + amplitude * 0.3f
+        glowPaint.alpha = (50 + amplitude * 0.5f).toInt().coerceAtMost(100)
+
+        if (!isAddingRipples && activeRipples == 0) {
+            // Stopped and the last ripple has faded out
+            rippleAnimator?.cancel()
+            rippleAnimator = null
+            resetIdleState()
+        }
+        invalidate()
+    }
+
+    /** Takes the next pool slot; when every slot is busy the oldest ripple is recycled. */
+    private fun spawnRipple(radius: Float) {
+        val slot = nextRippleSlot
+        nextRippleSlot = (slot + 1) % MAX_RIPPLES
+        if (rippleAlpha[slot] <= 0f) activeRipples++
+        rippleRadius[slot] = radius
+        rippleAlpha[slot] = 100f
+    }
+
     fun stopAnimation() {
         pulseAnimator?.cancel()
-        rippleAnimator?.cancel()
         pulseAnimator = null
-        rippleAnimator = null
         isAddingRipples = false // Stop adding new ripples, let existing ones fade
-        if (ripples.isEmpty()) { // Reset only if no ripples remain
-            coreRadius = minCoreRadius
-            glowRadius = 100f
-            glowPaint.alpha = 50
-            isAnimating = false
+        if (activeRipples == 0) {
+            rippleAnimator?.cancel()
+            rippleAnimator = null
+            resetIdleState()
+        } else if (rippleAnimator == null) {
+            startRippleAnimator()
         }
         invalidate()
     }
 
+    private fun cancelAnimators() {
+        pulseAnimator?.cancel()
+        rippleAnimator?.cancel()
+        pulseAnimator = null
+        rippleAnimator = null
+    }
+
+    private fun resetIdleState() {
+        coreRadius = minCoreRadius
+        glowRadius = 100f
+        glowPaint.alpha = 50
+        amplitude = 0f
+        isAnimating = false
+    }
+
     override fun onDetachedFromWindow() {
         super.onDetachedFromWindow()
-        stopAnimation()
+        cancelAnimators()
+        rippleAlpha.fill(0f)
+        activeRipples = 0
+        isAddingRipples = false
+        resetIdleState()
     }
 
     fun isAnimating(): Boolean = isAnimating
 
-    private data class Ripple(var radius: Float, var alpha: Float)
-}
\ No newline at end of file
+    companion object {
+        private const val MAX_RIPPLES = 24 // A ripple lives ~1.1s and one spawns every 50ms
+        private const val RIPPLE_INTERVAL_MS = 50L
+        private const val FRAME_MS = 16f // Ripples grow and fade per 60Hz frame, whatever the refresh rate
+        private const val MAX_FRAME_STEP_MS = 100L
+        private const val AMPLITUDE_BUFFER_SIZE = 64
+        private const val AMPLITUDE_DECAY = 0.9f
+        private const val MIN_RMS_DB = -2f
+        private const val MAX_RMS_DB = 10f
+    }
+}
@@ -0,0 +1,140 @@
+package com.nidoham.kaveya.console.google.gemini.api;
+
+import com.nidoham.kaveya.console.google.gemini.control.GeminiDispatcher;
+import com.nidoham.kaveya.console.google.gemini.control.GeminiStatusException;
+import com.nidoham.kaveya.console.google.gemini.control.GeminiTransport;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nonnull;
+
+/**
+ * Local stand-in for the Gemini endpoint, for testing retries, the circuit breaker and
+ * hedging offline. Pass it to
+ * {@link com.nidoham.kaveya.console.google.gemini.control.GeminiController#GeminiController(String, long,
+ * com.nidoham.kaveya.console.google.gemini.control.ResiliencePolicy, GeminiTransport)}.
+ *
+ * Each call consumes the next scripted step, or repeats the default step once the script is
+ * empty. Streaming calls deliver a successful reply word by word.
+ */
+public class FakeGeminiBackend implements GeminiTransport {
+
+    private static final long STREAM_CHUNK_INTERVAL_MS = 20;
+
+    /**
+     * One scripted response: a reply or an HTTP failure, after a latency.
+     */
+    public static final class Step {
+        final long latencyMillis;
+        final String reply;
+        final int statusCode;
+        final long retryAfterMillis;
+
+        private Step(long latencyMillis, String reply, int statusCode, long retryAfterMillis) {
+            this.latencyMillis = latencyMillis;
+            this.reply = reply;
+            this.statusCode = statusCode;
+            this.retryAfterMillis = retryAfterMillis;
+        }
+
+        public static Step reply(@Nonnull String reply, long latencyMillis) {
+            return new Step(latencyMillis, reply, 200, GeminiStatusException.NO_RETRY_HINT);
+        }
+
+        public static Step failure(int statusCode, long latencyMillis) {
+            return new Step(latencyMillis, null, statusCode, GeminiStatusException.NO_RETRY_HINT);
+        }
+
+        public static Step failure(int statusCode, long retryAfterMillis, long latencyMillis) {
+            return new Step(latencyMillis, null, statusCode, retryAfterMillis);
+        }
+    }
+
+    private final Deque<Step> script = new ArrayDeque<>();
+    private final AtomicInteger callCount = new AtomicInteger();
+    private volatile Step defaultStep = Step.reply("Fake reply", 50);
+
+    /**
+     * Queues steps to be served in order.
+     */
+    public synchronized FakeGeminiBackend enqueue(@Nonnull Step... steps) {
+        for (Step step : steps) {
+            script.addLast(step);
+        }
+        return this;
+    }
+
+    /**
+     * Sets the step served once the script is exhausted.
+     */
+    public FakeGeminiBackend setDefaultStep(@Nonnull Step step) {
+        this.defaultStep = step;
+        return this;
+    }
+
+    /**
+     * Returns how many calls the backend has received.
+     */
+    public int getCallCount() {
+        return callCount.get();
+    }
+
+    private synchronized Step nextStep() {
+        Step step = script.pollFirst();
+        return step != null ? step : defaultStep;
+    }
+
+    @Nonnull
+    @Override
+    public GeminiApiHandler.RequestHandle send(@Nonnull String userInput,
+                                               @Nonnull GeminiApiHandler.GeminiStreamCallback callback,
+                                               boolean streaming) {
+        callCount.incrementAndGet();
+        Step step = nextStep();
+        GeminiDispatcher dispatcher = GeminiDispatcher.getInstance();
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        long startNanos = System.nanoTime();
+
+        AtomicReference<ScheduledFuture<?>> task = new AtomicReference<>();
+
+        task.set(dispatcher.schedule(() -> {
+            if (cancelled.get()) return;
+            if (step.reply == null) {
+                callback.onError(new GeminiStatusException(step.statusCode, step.retryAfterMillis, "fake failure"));
+            } else if (!streaming) {
+                callback.onSuccess(step.reply);
+            } else {
+                streamChunk(step.reply.split("(?<= )"), 0, startNanos, System.nanoTime(), callback, cancelled, task);
+            }
+        }, step.latencyMillis, TimeUnit.MILLISECONDS));
+
+        return () -> {
+            cancelled.set(true);
+            task.get().cancel(false);
+        };
+    }
+
+    /**
+     * Delivers one word and schedules the next, so a stream never blocks the shared timer thread.
+     */
+    private void streamChunk(String[] words, int index, long startNanos, long firstTokenNanos,
+                             GeminiApiHandler.GeminiStreamCallback callback, AtomicBoolean cancelled,
+                             AtomicReference<ScheduledFuture<?>> task) {
+        if (cancelled.get()) return;
+        if (index < words.length) {
+            callback.onPartial(words[index]);
+            task.set(GeminiDispatcher.getInstance().schedule(
+                    () -> streamChunk(words, index + 1, startNanos, firstTokenNanos, callback, cancelled, task),
+                    STREAM_CHUNK_INTERVAL_MS, TimeUnit.MILLISECONDS));
+            return;
+        }
+        long endNanos = System.nanoTime();
+        callback.onLatency(TimeUnit.NANOSECONDS.toMillis(firstTokenNanos - startNanos),
+                TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos));
+        callback.onSuccess(String.join("", words));
+    }
+}
@@ -0,0 +1,67 @@
+package com.nidoham.kaveya.console.google.gemini.control;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(3, 60_000);
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertTrue(breaker.allowRequest());
+
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+        assertEquals(1, breaker.getRejectedCount());
+    }
+
+    @Test
+    public void successResetsFailureCount() {
+        CircuitBreaker breaker = new CircuitBreaker(2, 60_000);
+        breaker.recordFailure();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void halfOpenGrantsSingleProbe() throws Exception {
+        CircuitBreaker breaker = openBreaker();
+
+        assertEquals(CircuitBreaker.Permit.PROBE, breaker.acquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertEquals(CircuitBreaker.Permit.REJECTED, breaker.acquire());
+
+        breaker.releaseProbe();
+        assertEquals(CircuitBreaker.Permit.PROBE, breaker.acquire());
+    }
+
+    @Test
+    public void probeOutcomeClosesOrReopens() throws Exception {
+        CircuitBreaker closing = openBreaker();
+        assertEquals(CircuitBreaker.Permit.PROBE, closing.acquire());
+        closing.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, closing.getState());
+        assertEquals(CircuitBreaker.Permit.ALLOWED, closing.acquire());
+
+        CircuitBreaker reopening = openBreaker();
+        assertEquals(CircuitBreaker.Permit.PROBE, reopening.acquire());
+        reopening.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, reopening.getState());
+        assertEquals(CircuitBreaker.Permit.REJECTED, reopening.acquire());
+    }
+
+    private static CircuitBreaker openBreaker() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(1, 20);
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Thread.sleep(40);
+        return breaker;
+    }
+}
@@ -0,0 +1,261 @@
+package com.nidoham.kaveya.console.google.gemini.control;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.nidoham.kaveya.console.google.gemini.api.FakeGeminiBackend;
+import com.nidoham.kaveya.console.google.gemini.api.FakeGeminiBackend.Step;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Retry, hedging and circuit breaker behaviour of {@link GeminiController}, run against
+ * {@link FakeGeminiBackend} instead of the real API.
+ */
+public class GeminiControllerResilienceTest {
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private final FakeGeminiBackend backend = new FakeGeminiBackend();
+    private GeminiController controller;
+
+    @After
+    public void tearDown() {
+        if (controller != null) {
+            controller.close();
+        }
+    }
+
+    @Test
+    public void retriesRetryableStatusesUntilSuccess() throws Exception {
+        backend.enqueue(Step.failure(503, 5), Step.failure(429, 5), Step.reply("ok", 5));
+        controller = controller(new ResiliencePolicy.Builder()
+                .setMaxAttempts(3)
+                .setBackoff(1, 5)
+                .setCircuitBreaker(null)
+                .build());
+
+        Outcome outcome = new Outcome();
+        controller.generateResponse("hi", outcome);
+        outcome.await();
+
+        assertEquals("ok", outcome.reply);
+        assertEquals(3, backend.getCallCount());
+    }
+
+    @Test
+    public void doesNotRetryClientErrors() throws Exception {
+        backend.enqueue(Step.failure(400, 5));
+        controller = controller(new ResiliencePolicy.Builder()
+                .setMaxAttempts(3)
+                .setBackoff(1, 5)
+                .setCircuitBreaker(null)
+                .build());
+
+        Outcome outcome = new Outcome();
+        controller.generateResponse("hi", outcome);
+        outcome.await();
+
+        assertTrue(outcome.error instanceof GeminiStatusException);
+        assertEquals(400, ((GeminiStatusException) outcome.error).getStatusCode());
+        assertEquals(1, backend.getCallCount());
+    }
+
+    @Test
+    public void givesUpAfterMaxAttempts() throws Exception {
+        backend.setDefaultStep(Step.failure(503, 5));
+        controller = controller(new ResiliencePolicy.Builder()
+                .setMaxAttempts(2)
+                .setBackoff(1, 5)
+                .setCircuitBreaker(null)
+                .build());
+
+        Outcome outcome = new Outcome();
+        controller.generateResponse("hi", outcome);
+        outcome.await();
+
+        assertTrue(outcome.error instanceof GeminiStatusException);
+        assertEquals(2, backend.getCallCount());
+    }
+
+    @Test
+    public void waitsForRetryAfterHint() throws Exception {
+        backend.enqueue(Step.failure(429, 300, 5), Step.reply("ok", 5));
+        controller = controller(new ResiliencePolicy.Builder()
+                .setMaxAttempts(2)
+                .setBackoff(1, 1)
+                .setCircuitBreaker(null)
+                .build());
+
+        Outcome outcome = new Outcome();
+        long start = System.nanoTime();
+        controller.generateResponse("hi", outcome);
+        outcome.await();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals("ok", outcome.reply);
+        assertTrue("Retried after " + elapsedMillis + "ms", elapsedMillis >= 300);
+    }
+
+    @Test
+    public void streamRetriesBeforeFirstDelta() throws Exception {
+        backend.enqueue(Step.failure(503, 5), Step.reply("hello streamed world", 5));
+        controller = controller(new ResiliencePolicy.Builder()
+                .setMaxAttempts(2)
+                .setBackoff(1, 5)
+                .setCircuitBreaker(null)
+                .build());
+
+        Outcome outcome = new Outcome();
+        controller.generateResponseStream("hi", outcome);
+        outcome.await();
+
+        assertEquals("hello streamed world", outcome.reply);
+        assertEquals("hello streamed world", outcome.partials.toString());
+        assertEquals(2, backend.getCallCount());
+    }
+
+    @Test
+    public void hedgedAttemptAnswersSlowRequest() throws Exception {
+        backend.enqueue(Step.reply("slow", 2_000), Step.reply("fast", 5));
+        controller = controller(new ResiliencePolicy.Builder()
+                .setMaxAttempts(2)
+                .setHedgeDelay(50)
+                .setCircuitBreaker(null)
+                .build());
+
+        Outcome outcome = new Outcome();
+        long start = System.nanoTime();
+        controller.generateResponse("hi", outcome);
+        outcome.await();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals("fast", outcome.reply);
+        assertEquals(2, backend.getCallCount());
+        assertTrue("Answered after " + elapsedMillis + "ms", elapsedMillis < 2_000);
+    }
+
+    @Test
+    public void openBreakerFailsFast() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(2, 60_000);
+        backend.setDefaultStep(Step.failure(503, 5));
+        controller = controller(new ResiliencePolicy.Builder()
+                .setMaxAttempts(1)
+                .setCircuitBreaker(breaker)
+                .build());
+
+        for (int i = 0; i < 2; i++) {
+            Outcome failed = new Outcome();
+            controller.generateResponse("hi", failed);
+            failed.await();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        Outcome rejected = new Outcome();
+        assertEquals(GeminiController.NO_REQUEST, controller.generateResponse("hi", rejected));
+        rejected.await();
+
+        assertTrue(rejected.error instanceof RejectedExecutionException);
+        assertEquals(2, backend.getCallCount());
+    }
+
+    @Test
+    public void successfulProbeClosesBreaker() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 50);
+        backend.enqueue(Step.failure(503, 5), Step.reply("ok", 5));
+        controller = controller(new ResiliencePolicy.Builder()
+                .setMaxAttempts(1)
+                .setCircuitBreaker(breaker)
+                .build());
+
+        Outcome failed = new Outcome();
+        controller.generateResponse("hi", failed);
+        failed.await();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        Thread.sleep(100);
+        Outcome probe = new Outcome();
+        controller.generateResponse("hi", probe);
+        probe.await();
+
+        assertEquals("ok", probe.reply);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void cancellingAnotherRequestKeepsTheProbe() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 50);
+        backend.enqueue(
+                Step.reply("bystander", 2_000), // Sent while the breaker is still closed
+                Step.failure(503, 5),           // Opens the breaker
+                Step.reply("probe", 1_000));    // The half-open probe
+        controller = controller(new ResiliencePolicy.Builder()
+                .setMaxAttempts(1)
+                .setCircuitBreaker(breaker)
+                .build());
+
+        Outcome bystander = new Outcome();
+        long bystanderId = controller.generateResponse("hi", bystander);
+        Outcome failed = new Outcome();
+        controller.generateResponse("hi", failed);
+        failed.await();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        Thread.sleep(100);
+        Outcome probe = new Outcome();
+        controller.generateResponse("hi", probe);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        // The bystander never held the probe, so cancelling it must not free the slot
+        assertTrue(controller.cancelRequest(bystanderId));
+        bystander.await();
+        assertTrue(bystander.error instanceof CancellationException);
+
+        Outcome second = new Outcome();
+        controller.generateResponse("hi", second);
+        second.await();
+        assertTrue(second.error instanceof RejectedExecutionException);
+        assertEquals(3, backend.getCallCount());
+
+        probe.await();
+        assertEquals("probe", probe.reply);
+        assertNull(probe.error);
+    }
+
+    private GeminiController controller(ResiliencePolicy policy) {
+        return new GeminiController("test", TIMEOUT_SECONDS, policy, backend);
+    }
+
+    private static final class Outcome implements GeminiController.GeminiCallback {
+        private final CountDownLatch settled = new CountDownLatch(1);
+        final StringBuffer partials = new StringBuffer();
+        volatile String reply;
+        volatile Throwable error;
+
+        @Override
+        public void onPartial(@Nonnull String delta) {
+            partials.append(delta);
+        }
+
+        @Override
+        public void onSuccess(@Nonnull String result) {
+            reply = result;
+            settled.countDown();
+        }
+
+        @Override
+        public void onError(@Nonnull Throwable throwable) {
+            error = throwable;
+            settled.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue("Request never settled", settled.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+    }
+}
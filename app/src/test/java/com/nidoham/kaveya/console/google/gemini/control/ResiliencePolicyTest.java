@@ -0,0 +1,62 @@
+package com.nidoham.kaveya.console.google.gemini.control;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import org.junit.Test;
+
+public class ResiliencePolicyTest {
+
+    @Test
+    public void builtPolicyIgnoresLaterBuilderChanges() {
+        ResiliencePolicy.Builder builder = new ResiliencePolicy.Builder()
+                .setMaxAttempts(2)
+                .setHedgeDelay(100);
+        ResiliencePolicy first = builder.build();
+
+        ResiliencePolicy second = builder.setMaxAttempts(5).setHedgeDelay(0).setCircuitBreaker(null).build();
+
+        assertEquals(2, first.getMaxAttempts());
+        assertTrue(first.isHedgingEnabled());
+        assertEquals(5, second.getMaxAttempts());
+        assertFalse(second.isHedgingEnabled());
+        assertNull(second.getCircuitBreaker());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsZeroAttempts() {
+        new ResiliencePolicy.Builder().setMaxAttempts(0).build();
+    }
+
+    @Test
+    public void classifiesRetryableErrors() {
+        ResiliencePolicy policy = ResiliencePolicy.DEFAULT;
+        assertTrue(policy.isRetryable(new GeminiStatusException(429, "quota")));
+        assertTrue(policy.isRetryable(new GeminiStatusException(503, "unavailable")));
+        assertTrue(policy.isRetryable(new RuntimeException(new IOException("reset"))));
+        assertFalse(policy.isRetryable(new GeminiStatusException(400, "bad request")));
+        assertFalse(policy.isRetryable(new CancellationException()));
+    }
+
+    @Test
+    public void readsRetryAfterHints() {
+        assertEquals(1_500, ResiliencePolicy.getRetryAfterMillis(new GeminiStatusException(429, 1_500, "slow down")));
+        assertEquals(2_000, ResiliencePolicy.getRetryAfterMillis(new RuntimeException("{\"retryDelay\": \"2s\"}")));
+        assertEquals(3_000, ResiliencePolicy.getRetryAfterMillis(new RuntimeException("Retry-After: 3")));
+        assertEquals(0, ResiliencePolicy.getRetryAfterMillis(new RuntimeException("no hint")));
+    }
+
+    @Test
+    public void backoffStaysWithinBoundsButHonoursHint() {
+        ResiliencePolicy policy = new ResiliencePolicy.Builder().setBackoff(100, 400).build();
+        for (int attempt = 1; attempt <= 6; attempt++) {
+            long delay = policy.getRetryDelayMillis(attempt, new GeminiStatusException(503, "down"));
+            assertTrue("Delay " + delay, delay >= 0 && delay <= 400);
+        }
+        assertTrue(policy.getRetryDelayMillis(1, new GeminiStatusException(429, 5_000, "quota")) >= 5_000);
+    }
+}
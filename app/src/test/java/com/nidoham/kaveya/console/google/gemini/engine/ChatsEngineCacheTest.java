@@ -0,0 +1,106 @@
+package com.nidoham.kaveya.console.google.gemini.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.nidoham.kaveya.console.google.gemini.api.FakeGeminiBackend;
+import com.nidoham.kaveya.console.google.gemini.api.FakeGeminiBackend.Step;
+import com.nidoham.kaveya.console.google.gemini.control.GeminiController;
+import com.nidoham.kaveya.console.google.gemini.control.ResiliencePolicy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Response cache behaviour of {@link ChatsEngine#sendCachedMessage}: repeated reactions and
+ * greetings are answered without another model call.
+ */
+public class ChatsEngineCacheTest {
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private final FakeGeminiBackend backend = new FakeGeminiBackend();
+    private ChatsEngine engine;
+
+    @Before
+    public void setUp() {
+        backend.setDefaultStep(Step.reply("Aww, thank you!", 5));
+        engine = new ChatsEngine(ChatsEngine.PromptMode.SYSTEM_INSTRUCTION,
+                new GeminiController("test", TIMEOUT_SECONDS, ResiliencePolicy.NONE, backend));
+    }
+
+    @After
+    public void tearDown() {
+        engine.close();
+    }
+
+    @Test
+    public void repeatedReactionHitsTheCache() throws Exception {
+        Reply first = send("❤️", "reaction");
+        first.await();
+        assertEquals(1, backend.getCallCount());
+
+        // The same emoji on another message, after the conversation moved on
+        Reply turn = new Reply();
+        engine.sendMessage("How was your day?", turn);
+        turn.await();
+        Reply second = send("❤️", "reaction");
+
+        assertEquals(ChatsEngine.CACHED_REQUEST, second.requestId);
+        assertEquals(first.response, second.response);
+        assertEquals(1L, engine.getResponseCache().getHitCount());
+    }
+
+    @Test
+    public void repeatedGreetingHitsAfterMemoriesChange() throws Exception {
+        send("Hi!", "greeting").await();
+        engine.addMemory("[\"Likes mangoes\"]");
+
+        Reply second = send("hi", "greeting");
+
+        assertEquals(ChatsEngine.CACHED_REQUEST, second.requestId);
+        assertEquals(1, backend.getCallCount());
+    }
+
+    @Test
+    public void differentKindsOfTurnDoNotShareEntries() throws Exception {
+        send("hi", "greeting").await();
+        Reply reaction = send("hi", "reaction");
+        reaction.await();
+
+        assertEquals(2, backend.getCallCount());
+        assertNull(reaction.error);
+    }
+
+    private Reply send(String message, String fingerprint) {
+        Reply reply = new Reply();
+        reply.requestId = engine.sendCachedMessage(message, fingerprint, reply);
+        return reply;
+    }
+
+    private static final class Reply implements ChatsEngine.ChatCallback {
+        private final CountDownLatch settled = new CountDownLatch(1);
+        volatile long requestId;
+        volatile String response;
+        volatile Throwable error;
+
+        @Override
+        public void onResponse(@Nonnull String result) {
+            response = result;
+            settled.countDown();
+        }
+
+        @Override
+        public void onError(@Nonnull Throwable throwable) {
+            error = throwable;
+            settled.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue("Reply never arrived", settled.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.nidoham.kaveya.firebase.google.database.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class MessagesTest {
+
+    @Test
+    public void translationCopiesKeepEveryOtherField() {
+        Messages original = new Messages.Builder("user", "character", "Hello")
+                .id("m1")
+                .isAI(true)
+                .timestamp(1_000L)
+                .addMetadata("mood", "happy")
+                .isEdited(true)
+                .editTimestamp(2_000L)
+                .isForwarded(true)
+                .forwardedFrom("friend")
+                .isReplying(true)
+                .replyToMessageId("m0")
+                .build();
+
+        Messages translated = original.withTranslation("হ্যালো", "en", "bn");
+        assertSameMessage(original, translated);
+        assertTrue(translated.isTranslated());
+        assertEquals("হ্যালো", translated.getTranslatedText());
+        assertEquals("en", translated.getOriginalLanguage());
+        assertEquals("bn", translated.getTranslatedLanguage());
+
+        Messages restored = translated.withoutTranslation();
+        assertSameMessage(original, restored);
+        assertFalse(restored.isTranslated());
+        assertNull(restored.getTranslatedText());
+        assertNull(restored.getOriginalLanguage());
+        assertNull(restored.getTranslatedLanguage());
+    }
+
+    @Test
+    public void copiesDoNotShareMetadata() {
+        Messages original = new Messages.Builder("user", "character", "Hello")
+                .addMetadata("mood", "happy")
+                .build();
+
+        Messages translated = original.withTranslation("হ্যালো", "en", "bn");
+        translated.addMetadata("mood", "sad");
+
+        assertEquals("happy", original.getMetadata("mood"));
+    }
+
+    private static void assertSameMessage(Messages expected, Messages actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getUserId(), actual.getUserId());
+        assertEquals(expected.getCharacterId(), actual.getCharacterId());
+        assertEquals(expected.getText(), actual.getText());
+        assertEquals(expected.isAI(), actual.isAI());
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.getMediaUrl(), actual.getMediaUrl());
+        assertEquals(expected.getMediaType(), actual.getMediaType());
+        assertEquals(expected.getMetadata(), actual.getMetadata());
+        assertEquals(expected.isEdited(), actual.isEdited());
+        assertEquals(expected.getEditTimestamp(), actual.getEditTimestamp());
+        assertEquals(expected.isForwarded(), actual.isForwarded());
+        assertEquals(expected.getForwardedFrom(), actual.getForwardedFrom());
+        assertEquals(expected.isReplying(), actual.isReplying());
+        assertEquals(expected.getReplyToMessageId(), actual.getReplyToMessageId());
+        assertEquals(expected.isDeleted(), actual.isDeleted());
+    }
+}
@@ -0,0 +1,65 @@
+package com.nidoham.kaveya.platform.voice.kotlin
+
+import com.nidoham.kaveya.platform.voice.kotlin.SentenceStreamSpeaker.Companion.nextBoundary
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class SentenceStreamSpeakerBoundaryTest {
+
+    @Test
+    fun splitsAfterTerminatorAndSpace() {
+        val text = "Hello there! How are you?"
+        assertEquals("Hello there! ".length, nextBoundary(text, 0))
+    }
+
+    @Test
+    fun waitsForTheCharacterAfterATerminator() {
+        assertEquals(-1, nextBoundary("It costs 3.", 0))
+        assertEquals(-1, nextBoundary("It costs 3.5 taka", 0))
+    }
+
+    @Test
+    fun abbreviationsDoNotEndASentence() {
+        val text = "Bring fruit, e.g. mangoes, and ask Dr. Rahman. Then rest."
+        assertEquals("Bring fruit, e.g. mangoes, and ask Dr. Rahman. ".length, nextBoundary(text, 0))
+        assertEquals(-1, nextBoundary("That is, i.e. the rest", 0))
+    }
+
+    @Test
+    fun runsOfInitialsDoNotEndASentence() {
+        assertEquals(-1, nextBoundary("Written by J. R. R. Tolkien", 0))
+        val text = "Read J. R. R. Tolkien. Then sleep."
+        assertEquals("Read J. R. R. Tolkien. ".length, nextBoundary(text, 0))
+    }
+
+    @Test
+    fun loneCapitalBeforeAPeriodEndsASentence() {
+        assertEquals("Plan A. ".length, nextBoundary("Plan A. Next step.", 0))
+        assertEquals("I got a B. ".length, nextBoundary("I got a B. Then I cried.", 0))
+    }
+
+    @Test
+    fun waitsToTellAnInitialFromASentenceEnd() {
+        assertEquals(-1, nextBoundary("Plan A. N", 0))
+    }
+
+    @Test
+    fun closingQuotesStayWithTheirSentence() {
+        val text = "She said \"yes.\" Then left."
+        assertEquals("She said \"yes.\" ".length, nextBoundary(text, 0))
+    }
+
+    @Test
+    fun pronounIIsStillASentenceEnd() {
+        val text = "So did I. Then we left."
+        assertEquals("So did I. ".length, nextBoundary(text, 0))
+    }
+
+    @Test
+    fun longRunBreaksAtAWord() {
+        val text = "word ".repeat(60)
+        val end = nextBoundary(text, 0)
+        assertEquals(' ', text[end - 1])
+        assertEquals(true, end in 1..240)
+    }
+}
@@ -0,0 +1,63 @@
+package com.nidoham.kaveya.view.animation.voice
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class AmplitudeRingBufferTest {
+
+    @Test
+    fun drainReturnsPeakOfPendingSamples() {
+        val buffer = AmplitudeRingBuffer(8)
+        buffer.offer(10f)
+        buffer.offer(40f)
+        buffer.offer(25f)
+
+        assertEquals(40f, buffer.drainPeak(-1f), 0f)
+        // Everything was consumed
+        assertEquals(-1f, buffer.drainPeak(-1f), 0f)
+    }
+
+    @Test
+    fun dropsSamplesWhenFull() {
+        val buffer = AmplitudeRingBuffer(3) // Rounded up to 4 slots
+        for (i in 1..4) {
+            assertTrue(buffer.offer(i.toFloat()))
+        }
+        assertFalse(buffer.offer(99f))
+
+        // The unread samples survived; the dropped one never arrived
+        assertEquals(4f, buffer.drainPeak(-1f), 0f)
+        assertTrue(buffer.offer(5f))
+    }
+
+    @Test
+    fun keepsWorkingAcrossWraparound() {
+        val buffer = AmplitudeRingBuffer(4)
+        for (round in 0 until 10) {
+            buffer.offer(round.toFloat())
+            buffer.offer(round + 0.5f)
+            assertEquals(round + 0.5f, buffer.drainPeak(-1f), 0f)
+        }
+    }
+
+    @Test
+    fun clearDiscardsPendingSamples() {
+        val buffer = AmplitudeRingBuffer(4)
+        buffer.offer(50f)
+        buffer.offer(60f)
+        buffer.clear()
+
+        assertEquals(-1f, buffer.drainPeak(-1f), 0f)
+        // Space freed by clear is usable again
+        for (i in 1..4) {
+            assertTrue(buffer.offer(i.toFloat()))
+        }
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun rejectsNonPositiveCapacity() {
+        AmplitudeRingBuffer(0)
+    }
+}